@@ -0,0 +1,74 @@
+/*
+ * CastDiscoveryRouteBenchmark
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.discovery.provider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.robolectric.Robolectric;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one MediaRouter route callback for a known device. An unchanged route reuses the
+ * decoded CastDevice; new extras have to be decoded again. Compare gc.alloc.rate.norm of the
+ * two benchmarks for the allocation saved by the decoded route cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CastDiscoveryRouteBenchmark {
+
+    private SimulatedMediaRouter router;
+
+    private CastDiscoveryProvider provider;
+
+    private String deviceId;
+
+    @Setup
+    public void setUp() {
+        router = new SimulatedMediaRouter();
+        provider = router.createProvider(Robolectric.application);
+        provider.start();
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        deviceId = router.addDevice();
+    }
+
+    @TearDown
+    public void tearDown() {
+        provider.reset();
+    }
+
+    @Benchmark
+    public void unchangedRoute() {
+        router.reportUnchangedRoute(deviceId);
+    }
+
+    @Benchmark
+    public void newExtras() {
+        router.reportNewExtras(deviceId);
+    }
+}
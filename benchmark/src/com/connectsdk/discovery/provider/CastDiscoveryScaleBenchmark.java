@@ -0,0 +1,91 @@
+/*
+ * CastDiscoveryScaleBenchmark
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.discovery.provider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.robolectric.Robolectric;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discovery of many simulated devices. Every invocation starts with an empty provider, so the
+ * score is the time to find all devices or to process the whole random event stream, with the
+ * listener calls included. Divide by the device or event count for the cost of one route event;
+ * gc.alloc.rate.norm divided the same way is the allocation per event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CastDiscoveryScaleBenchmark {
+
+    static final int RANDOM_EVENTS = 20000;
+
+    static final int RANDOM_MAX_DEVICES = 500;
+
+    @Param({"100", "2000"})
+    public int devices;
+
+    private SimulatedMediaRouter router;
+
+    private ManualTimer timer;
+
+    private CastDiscoveryProvider provider;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        router = new SimulatedMediaRouter();
+        timer = new ManualTimer();
+        provider = router.createProvider(Robolectric.application, timer);
+        provider.start();
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        provider.reset();
+    }
+
+    @Benchmark
+    public int addDevices() {
+        for (int i = 0; i < devices; i++) {
+            router.addDevice();
+        }
+        Robolectric.runUiThreadTasks();
+        return provider.foundServices.size();
+    }
+
+    @Benchmark
+    public int randomEvents() {
+        router.runRandomScript(new Random(42), RANDOM_EVENTS, RANDOM_MAX_DEVICES);
+        timer.advance(provider.routeRemoveInterval);
+        Robolectric.runUiThreadTasks();
+        return provider.foundServices.size();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * BenchmarkCastService
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import com.connectsdk.service.capability.listeners.ResponseListener;
+import com.connectsdk.service.command.ServiceCommandError;
+import com.connectsdk.service.config.ServiceConfig;
+import com.connectsdk.service.config.ServiceDescription;
+import com.google.android.gms.cast.Cast;
+import com.google.android.gms.cast.CastDevice;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.cast.RemoteMediaPlayer;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * CastService connected to in-memory fakes through the CastClient, createApiClient and
+ * createMediaPlayer seams, so commands and events run without a Cast device.
+ *
+ * GoogleApiClient, PendingResult and MediaStatus are abstract or final in Play Services, so
+ * they are stub-only mocks, which don't record invocations. Their small constant cost is
+ * measured by CastServiceCommandBenchmark.baseline.
+ */
+class BenchmarkCastService extends CastService {
+
+    static final ResponseListener<Object> NO_LISTENER = new ResponseListener<Object>() {
+
+        @Override
+        public void onSuccess(Object object) {
+        }
+
+        @Override
+        public void onError(ServiceCommandError error) {
+        }
+    };
+
+    final GoogleApiClient apiClient;
+
+    final FakeRemoteMediaPlayer mediaPlayer = new FakeRemoteMediaPlayer();
+
+    BenchmarkCastService() {
+        this(new ServiceDescription(ID, "benchmark", "127.0.0.1"));
+    }
+
+    private BenchmarkCastService(ServiceDescription serviceDescription) {
+        super(serviceDescription, new ServiceConfig(serviceDescription));
+        serviceDescription.setDevice(Mockito.mock(CastDevice.class, Mockito.withSettings().stubOnly()));
+
+        apiClient = Mockito.mock(GoogleApiClient.class, Mockito.withSettings().stubOnly());
+        Mockito.when(apiClient.isConnected()).thenReturn(true);
+
+        mCastClient = new FakeCastClient();
+    }
+
+    /**
+     * Connects the service to the fakes the same way a real connection does.
+     */
+    void connectToFakes() {
+        connect();
+        GoogleApiClient.ConnectionCallbacks connectionCallbacks = mConnectionCallbacks;
+        connectionCallbacks.onConnected(null);
+        connected = true;
+    }
+
+    /**
+     * Delivers a volume change from the Cast device.
+     */
+    void onVolumeChanged() {
+        Cast.Listener castListener = mCastClientListener;
+        castListener.onVolumeChanged();
+    }
+
+    void setPlayerState(int playerState) {
+        MediaStatus status = Mockito.mock(MediaStatus.class, Mockito.withSettings().stubOnly());
+        Mockito.when(status.getPlayerState()).thenReturn(playerState);
+        mediaPlayer.mediaStatus = status;
+    }
+
+    @Override
+    protected GoogleApiClient createApiClient() {
+        return apiClient;
+    }
+
+    @Override
+    protected RemoteMediaPlayer createMediaPlayer() {
+        return mediaPlayer;
+    }
+
+    static class FakeCastClient extends CastClient {
+        final PendingResult<Cast.ApplicationConnectionResult> pendingJoin =
+                Mockito.mock(PendingResult.class, Mockito.withSettings().stubOnly());
+
+        volatile float volume = 0.5f;
+        volatile boolean mute;
+
+        @Override
+        public PendingResult<Cast.ApplicationConnectionResult> joinApplication(
+                GoogleApiClient mApiClient) {
+            return pendingJoin;
+        }
+
+        @Override
+        public void setMessageReceivedCallbacks(GoogleApiClient mApiClient, String namespace,
+                RemoteMediaPlayer mMediaPlayer) {
+        }
+
+        @Override
+        public void removeMessageReceivedCallbacks(GoogleApiClient mApiClient,
+                String namespace) {
+        }
+
+        @Override
+        public void setVolume(GoogleApiClient mApiClient, float volume) {
+            this.volume = volume;
+        }
+
+        @Override
+        public double getVolume(GoogleApiClient mApiClient) {
+            return volume;
+        }
+
+        @Override
+        public boolean isMute(GoogleApiClient mApiClient) {
+            return mute;
+        }
+    }
+
+    static class FakeRemoteMediaPlayer extends RemoteMediaPlayer {
+        // every media command succeeds as soon as its callback is set
+        final PendingResult<MediaChannelResult> completed = createCompletedResult();
+
+        volatile MediaStatus mediaStatus;
+
+        OnStatusUpdatedListener statusUpdatedListener;
+        OnMetadataUpdatedListener metadataUpdatedListener;
+
+        @Override
+        public void setOnStatusUpdatedListener(OnStatusUpdatedListener listener) {
+            statusUpdatedListener = listener;
+        }
+
+        @Override
+        public void setOnMetadataUpdatedListener(OnMetadataUpdatedListener listener) {
+            metadataUpdatedListener = listener;
+        }
+
+        @Override
+        public MediaStatus getMediaStatus() {
+            return mediaStatus;
+        }
+
+        @Override
+        public PendingResult<MediaChannelResult> play(GoogleApiClient apiClient) {
+            return completed;
+        }
+
+        @Override
+        public PendingResult<MediaChannelResult> pause(GoogleApiClient apiClient) {
+            return completed;
+        }
+
+        private static PendingResult<MediaChannelResult> createCompletedResult() {
+            final MediaChannelResult result = Mockito.mock(MediaChannelResult.class,
+                    Mockito.withSettings().stubOnly());
+            Mockito.when(result.getStatus()).thenReturn(new Status(0));
+
+            PendingResult<MediaChannelResult> pendingResult = Mockito.mock(PendingResult.class,
+                    Mockito.withSettings().stubOnly());
+            Mockito.doAnswer(new Answer<Void>() {
+
+                @Override
+                public Void answer(InvocationOnMock invocation) {
+                    ((ResultCallback<MediaChannelResult>) invocation.getArguments()[0]).onResult(result);
+                    return null;
+                }
+            }).when(pendingResult).setResultCallback(Mockito.any(ResultCallback.class));
+            return pendingResult;
+        }
+    }
+}
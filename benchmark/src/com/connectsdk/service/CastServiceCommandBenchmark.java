@@ -0,0 +1,103 @@
+/*
+ * CastServiceCommandBenchmark
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.robolectric.Robolectric;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of CastService commands on a connected service, including the delivery of the
+ * result on the UI thread. Run with the GC profiler to get the allocation per command.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CastServiceCommandBenchmark {
+
+    private BenchmarkCastService service;
+
+    private CastCommandQueue queue;
+
+    private CastService.ConnectionListener noop;
+
+    private float volume;
+
+    @Setup
+    public void setUp() {
+        service = new BenchmarkCastService();
+        service.connectToFakes();
+
+        queue = new CastCommandQueue();
+        noop = new CastService.ConnectionListener() {
+
+            @Override
+            public void onConnected() {
+            }
+        };
+    }
+
+    /**
+     * Cost of the GoogleApiClient mock, which every command pays once.
+     */
+    @Benchmark
+    public boolean baseline() {
+        return service.apiClient.isConnected();
+    }
+
+    @Benchmark
+    public void play() {
+        service.play(BenchmarkCastService.NO_LISTENER);
+        Robolectric.runUiThreadTasks();
+    }
+
+    @Benchmark
+    public void playWithMetrics() {
+        service.getCommandMetrics().setEnabled(true);
+        service.play(BenchmarkCastService.NO_LISTENER);
+        Robolectric.runUiThreadTasks();
+        service.getCommandMetrics().setEnabled(false);
+    }
+
+    @Benchmark
+    public void setVolume() {
+        // a new level every time, so the coalescer sends every command
+        volume = volume >= 1 ? 0 : volume + 0.001f;
+        service.setVolume(volume, BenchmarkCastService.NO_LISTENER);
+        service.volumeCoalescer.onVolumeChanged(volume);
+        Robolectric.runUiThreadTasks();
+    }
+
+    /**
+     * A command which waits for the connection and runs when it's ready.
+     */
+    @Benchmark
+    public void queuedCommand() {
+        queue.add(noop, BenchmarkCastService.NO_LISTENER);
+        queue.runAll();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * CastServiceFanOutBenchmark
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import com.connectsdk.service.capability.MediaControl.PlayStateListener;
+import com.connectsdk.service.capability.MediaControl.PlayStateStatus;
+import com.connectsdk.service.capability.VolumeControl.MuteListener;
+import com.connectsdk.service.capability.VolumeControl.VolumeListener;
+import com.connectsdk.service.command.ServiceCommandError;
+import com.google.android.gms.cast.MediaStatus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.robolectric.Robolectric;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one status or volume event for a growing number of subscribed listeners, from the
+ * Cast callback to the last listener on the UI thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CastServiceFanOutBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int listeners;
+
+    private BenchmarkCastService service;
+
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+
+        service = new BenchmarkCastService();
+        service.connectToFakes();
+        service.setPlayerState(MediaStatus.PLAYER_STATE_PLAYING);
+
+        for (int i = 0; i < listeners; i++) {
+            service.subscribePlayState(new PlayStateListener() {
+
+                @Override
+                public void onSuccess(PlayStateStatus status) {
+                    CastServiceFanOutBenchmark.this.blackhole.consume(status);
+                }
+
+                @Override
+                public void onError(ServiceCommandError error) {
+                }
+            });
+            service.subscribeVolume(new VolumeListener() {
+
+                @Override
+                public void onSuccess(Float volume) {
+                    CastServiceFanOutBenchmark.this.blackhole.consume(volume);
+                }
+
+                @Override
+                public void onError(ServiceCommandError error) {
+                }
+            });
+            service.subscribeMute(new MuteListener() {
+
+                @Override
+                public void onSuccess(Boolean mute) {
+                    CastServiceFanOutBenchmark.this.blackhole.consume(mute);
+                }
+
+                @Override
+                public void onError(ServiceCommandError error) {
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public void statusUpdated() {
+        service.mediaPlayer.statusUpdatedListener.onStatusUpdated();
+        Robolectric.runUiThreadTasks();
+    }
+
+    @Benchmark
+    public void volumeChanged() {
+        service.onVolumeChanged();
+        Robolectric.runUiThreadTasks();
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * CastDeviceCache
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.discovery.provider;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.connectsdk.core.Util;
+import com.connectsdk.service.CastService;
+import com.connectsdk.service.config.ServiceDescription;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Small binary file with the Cast devices that were found during the previous discovery
+ * sessions. CastDiscoveryProvider reads it on start to report known devices before MediaRouter
+ * finds them again.
+ *
+ * File layout: magic, version, entry count and then a fixed sequence of fields per entry. A file
+ * with an unknown magic or version is ignored and deleted.
+ */
+class CastDeviceCache {
+    static final String FILE_NAME = "connectsdk_cast_devices.cache";
+
+    static final int VERSION = 1;
+
+    static final int MAX_ENTRIES = 64;
+
+    static final long MAX_ENTRY_AGE = 7L * 24 * 60 * 60 * 1000;
+
+    private static final int MAGIC = 0x43415354;
+
+    private static ExecutorService executor;
+
+    private final File file;
+
+    private final AtomicReference<List<Entry>> pendingWrite = new AtomicReference<List<Entry>>();
+
+    interface LoadListener {
+        void onLoaded(List<Entry> entries);
+    }
+
+    static class Entry {
+        final String uuid;
+        final String ipAddress;
+        final int port;
+        final String friendlyName;
+        final String modelName;
+        final String modelNumber;
+        final long lastDetection;
+
+        Entry(String uuid, String ipAddress, int port, String friendlyName, String modelName,
+              String modelNumber, long lastDetection) {
+            this.uuid = uuid;
+            this.ipAddress = ipAddress;
+            this.port = port;
+            this.friendlyName = friendlyName;
+            this.modelName = modelName;
+            this.modelNumber = modelNumber;
+            this.lastDetection = lastDetection;
+        }
+
+        static Entry fromServiceDescription(ServiceDescription service) {
+            return new Entry(service.getUUID(), service.getIpAddress(), service.getPort(),
+                    service.getFriendlyName(), service.getModelName(), service.getModelNumber(),
+                    service.getLastDetection());
+        }
+
+        ServiceDescription toServiceDescription() {
+            ServiceDescription service =
+                    new CastServiceDescription(CastService.ID, uuid, ipAddress);
+            service.setFriendlyName(friendlyName);
+            service.setModelName(modelName);
+            service.setModelNumber(modelNumber);
+            service.setPort(port);
+            service.setServiceID(CastService.ID);
+            service.setLastDetection(lastDetection);
+            return service;
+        }
+    }
+
+    CastDeviceCache(Context context) {
+        this(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    CastDeviceCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the cached entries in the background and posts them to the listener on the UI
+     * thread. Reads and writes share one thread, so a load sees the saves requested before it.
+     */
+    void loadAsync(final LoadListener listener) {
+        getExecutor().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                final List<Entry> entries = load();
+                Util.runOnUI(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        listener.onLoaded(entries);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Reads the cached entries. Returns an empty list if there is no cache or it can't be used.
+     */
+    List<Entry> load() {
+        if (file == null || !file.exists()) {
+            return Collections.emptyList();
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Log.w(Util.T, "Discarding Cast device cache with unknown format");
+                in.close();
+                in = null;
+                delete();
+                return Collections.emptyList();
+            }
+
+            int count = Math.min(in.readInt(), MAX_ENTRIES);
+            long oldest = System.currentTimeMillis() - MAX_ENTRY_AGE;
+            List<Entry> entries = new ArrayList<Entry>(count);
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(in.readUTF(), in.readUTF(), in.readInt(),
+                        readNullableString(in), readNullableString(in), readNullableString(in),
+                        in.readLong());
+                if (entry.lastDetection >= oldest) {
+                    entries.add(entry);
+                }
+            }
+            return entries;
+        } catch (IOException e) {
+            Log.w(Util.T, "Unable to read Cast device cache", e);
+            return Collections.emptyList();
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores the services in the background. Only the latest set is written when several saves
+     * are requested before the writer gets to them.
+     */
+    void save(Collection<ServiceDescription> services) {
+        List<Entry> entries = new ArrayList<Entry>(Math.min(services.size(), MAX_ENTRIES));
+        for (ServiceDescription service : services) {
+            if (entries.size() == MAX_ENTRIES) {
+                break;
+            }
+            if (service.getUUID() != null && service.getIpAddress() != null) {
+                entries.add(Entry.fromServiceDescription(service));
+            }
+        }
+
+        if (pendingWrite.getAndSet(entries) == null) {
+            getExecutor().execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    write(pendingWrite.getAndSet(null));
+                }
+            });
+        }
+    }
+
+    /**
+     * Deletes the cache in the background. The delete runs on the writer thread, so a write
+     * which is in progress can't bring the file back.
+     */
+    void clear() {
+        pendingWrite.set(null);
+        getExecutor().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                delete();
+            }
+        });
+    }
+
+    private void delete() {
+        if (file != null && file.exists() && !file.delete()) {
+            Log.w(Util.T, "Unable to delete Cast device cache");
+        }
+    }
+
+    void write(List<Entry> entries) {
+        if (entries == null || file == null) {
+            return;
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.uuid);
+                out.writeUTF(entry.ipAddress);
+                out.writeInt(entry.port);
+                writeNullableString(out, entry.friendlyName);
+                writeNullableString(out, entry.modelName);
+                writeNullableString(out, entry.modelNumber);
+                out.writeLong(entry.lastDetection);
+            }
+            out.close();
+            out = null;
+
+            if (!tmpFile.renameTo(file)) {
+                Log.w(Util.T, "Unable to replace Cast device cache");
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            Log.w(Util.T, "Unable to write Cast device cache", e);
+            tmpFile.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "CastDeviceCache");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
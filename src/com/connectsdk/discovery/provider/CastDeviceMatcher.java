@@ -0,0 +1,128 @@
+/*
+ * CastDeviceMatcher
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.discovery.provider;
+
+import com.google.android.gms.cast.CastDevice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Precompiled device filter for CastDiscoveryProvider. A device matches when its model name is
+ * one of the given names, its friendly name matches the pattern and it has all the required
+ * capabilities. Criteria which are not set match any device.
+ *
+ * The friendly name is checked against the MediaRouter route name, which is the friendly name
+ * of the Cast device. This lets the provider drop routes before their CastDevice is decoded.
+ */
+public class CastDeviceMatcher {
+    private final String[] modelNames;
+    private final Pattern friendlyNamePattern;
+    private final int[] capabilities;
+
+    public static class Builder {
+        private List<String> modelNames = new ArrayList<String>();
+        private Pattern friendlyNamePattern;
+        private List<Integer> capabilities = new ArrayList<Integer>();
+
+        /**
+         * Adds an accepted model name, compared case-insensitively.
+         */
+        public Builder addModelName(String modelName) {
+            if (modelName != null) {
+                modelNames.add(modelName);
+            }
+            return this;
+        }
+
+        /**
+         * Sets a regular expression which has to match the whole friendly name.
+         */
+        public Builder setFriendlyNamePattern(String regex) {
+            this.friendlyNamePattern = regex == null ? null : Pattern.compile(regex);
+            return this;
+        }
+
+        public Builder setFriendlyNamePattern(Pattern pattern) {
+            this.friendlyNamePattern = pattern;
+            return this;
+        }
+
+        /**
+         * Adds a required capability, e.g. CastDevice.CAPABILITY_VIDEO_OUT.
+         */
+        public Builder addCapability(int capability) {
+            capabilities.add(capability);
+            return this;
+        }
+
+        public CastDeviceMatcher build() {
+            return new CastDeviceMatcher(this);
+        }
+    }
+
+    private CastDeviceMatcher(Builder builder) {
+        modelNames = builder.modelNames.toArray(new String[builder.modelNames.size()]);
+        friendlyNamePattern = builder.friendlyNamePattern;
+        capabilities = new int[builder.capabilities.size()];
+        for (int i = 0; i < capabilities.length; i++) {
+            capabilities[i] = builder.capabilities.get(i);
+        }
+    }
+
+    /**
+     * Checks the friendly name only. It's used before the route extras are decoded.
+     */
+    public boolean matchesName(CharSequence friendlyName) {
+        if (friendlyNamePattern == null) {
+            return true;
+        }
+        return friendlyName != null && friendlyNamePattern.matcher(friendlyName).matches();
+    }
+
+    public boolean matchesModelName(String modelName) {
+        if (modelNames.length == 0) {
+            return true;
+        }
+        for (String name : modelNames) {
+            if (name.equalsIgnoreCase(modelName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks the model name and the capabilities of the device.
+     */
+    public boolean matchesDevice(CastDevice device) {
+        if (device == null || !matchesModelName(device.getModelName())) {
+            return false;
+        }
+
+        for (int capability : capabilities) {
+            if (!device.hasCapability(capability)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
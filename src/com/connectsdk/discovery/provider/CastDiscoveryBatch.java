@@ -0,0 +1,64 @@
+/*
+ * CastDiscoveryBatch
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.discovery.provider;
+
+import com.connectsdk.service.config.ServiceDescription;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Net changes of discovered services collected by CastDiscoveryProvider during one batch
+ * window. A service appears in at most one of the lists.
+ */
+public class CastDiscoveryBatch {
+    private final List<ServiceDescription> added;
+    private final List<ServiceDescription> updated;
+    private final List<ServiceDescription> removed;
+
+    CastDiscoveryBatch(List<ServiceDescription> added, List<ServiceDescription> updated,
+                       List<ServiceDescription> removed) {
+        this.added = Collections.unmodifiableList(added);
+        this.updated = Collections.unmodifiableList(updated);
+        this.removed = Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * Services which were not known before the batch.
+     */
+    public List<ServiceDescription> getAdded() {
+        return added;
+    }
+
+    /**
+     * Known services which were changed or found again.
+     */
+    public List<ServiceDescription> getUpdated() {
+        return updated;
+    }
+
+    public List<ServiceDescription> getRemoved() {
+        return removed;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+}
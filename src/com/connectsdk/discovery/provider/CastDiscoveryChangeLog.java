@@ -0,0 +1,192 @@
+/*
+ * CastDiscoveryChangeLog
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.discovery.provider;
+
+import com.connectsdk.service.config.ServiceDescription;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Versioned log of the last service changes. Every change gets the next version. Changes are
+ * kept in a ring buffer indexed by version, so readers find the changes since their version
+ * in O(changes) without locking. Writers are serialized among themselves only.
+ */
+class CastDiscoveryChangeLog {
+
+    static final int DEFAULT_CAPACITY = 256;
+
+    private static final int ADDED = 0;
+    private static final int UPDATED = 1;
+    private static final int REMOVED = 2;
+
+    private final AtomicReferenceArray<Change> changes;
+
+    private final Object writeLock = new Object();
+
+    // version of the last published change
+    private volatile long version;
+
+    // changes before this version are not available, e.g. after reset
+    private volatile long firstVersion = 1;
+
+    private volatile CastDiscoverySnapshot snapshot;
+
+    private static class Change {
+        final long version;
+        final int type;
+        final ServiceDescription service;
+
+        Change(long version, int type, ServiceDescription service) {
+            this.version = version;
+            this.type = type;
+            this.service = service;
+        }
+    }
+
+    CastDiscoveryChangeLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    CastDiscoveryChangeLog(int capacity) {
+        changes = new AtomicReferenceArray<Change>(capacity);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    void serviceAdded(ServiceDescription service) {
+        append(ADDED, service);
+    }
+
+    void serviceUpdated(ServiceDescription service) {
+        append(UPDATED, service);
+    }
+
+    void serviceRemoved(ServiceDescription service) {
+        append(REMOVED, service);
+    }
+
+    /**
+     * Drops all changes, readers of older versions get a reset delta.
+     */
+    void reset() {
+        synchronized (writeLock) {
+            long newVersion = version + 1;
+            firstVersion = newVersion + 1;
+            version = newVersion;
+        }
+    }
+
+    /**
+     * Returns the services at the current version. The snapshot is built from the given
+     * services once per version.
+     */
+    CastDiscoverySnapshot getSnapshot(Collection<ServiceDescription> services) {
+        long currentVersion = version;
+        CastDiscoverySnapshot current = snapshot;
+        if (current != null && current.getVersion() == currentVersion) {
+            return current;
+        }
+
+        List<ServiceDescription> copy = new ArrayList<ServiceDescription>(services);
+
+        // a change which happens during the copy could be in the copy already; it will be
+        // reported again by getChangesSince() which is harmless for the reader
+        current = new CastDiscoverySnapshot(currentVersion, copy);
+        snapshot = current;
+        return current;
+    }
+
+    CastDiscoveryDelta getChangesSince(long fromVersion) {
+        long currentVersion = version;
+
+        if (fromVersion == currentVersion) {
+            return emptyDelta(fromVersion, currentVersion, false);
+        }
+        if (fromVersion > currentVersion || fromVersion + 1 < firstVersion
+                || currentVersion - fromVersion > changes.length()) {
+            return emptyDelta(fromVersion, currentVersion, true);
+        }
+
+        // first and last change type of every service, in order of the first change
+        Map<String, int[]> types = new LinkedHashMap<String, int[]>();
+        Map<String, ServiceDescription> services = new LinkedHashMap<String, ServiceDescription>();
+
+        for (long v = fromVersion + 1; v <= currentVersion; v++) {
+            Change change = changes.get(index(v));
+            if (change == null || change.version != v) {
+                // overwritten by a writer in the meantime
+                return emptyDelta(fromVersion, currentVersion, true);
+            }
+
+            String uuid = change.service.getUUID();
+            int[] type = types.get(uuid);
+            if (type == null) {
+                types.put(uuid, new int[] { change.type, change.type });
+            } else {
+                type[1] = change.type;
+            }
+            services.put(uuid, change.service);
+        }
+
+        List<ServiceDescription> added = new ArrayList<ServiceDescription>();
+        List<ServiceDescription> updated = new ArrayList<ServiceDescription>();
+        List<ServiceDescription> removed = new ArrayList<ServiceDescription>();
+
+        for (Map.Entry<String, int[]> entry : types.entrySet()) {
+            ServiceDescription service = services.get(entry.getKey());
+            boolean knownBefore = entry.getValue()[0] != ADDED;
+            boolean removedAfter = entry.getValue()[1] == REMOVED;
+
+            if (knownBefore) {
+                (removedAfter ? removed : updated).add(service);
+            } else if (!removedAfter) {
+                added.add(service);
+            }
+        }
+
+        return new CastDiscoveryDelta(fromVersion, currentVersion, false, added, updated, removed);
+    }
+
+    private void append(int type, ServiceDescription service) {
+        synchronized (writeLock) {
+            long newVersion = version + 1;
+            changes.set(index(newVersion), new Change(newVersion, type, service));
+            // publish the change after it's stored
+            version = newVersion;
+        }
+    }
+
+    private int index(long version) {
+        return (int) (version % changes.length());
+    }
+
+    private static CastDiscoveryDelta emptyDelta(long fromVersion, long version, boolean reset) {
+        List<ServiceDescription> empty = Collections.emptyList();
+        return new CastDiscoveryDelta(fromVersion, version, reset, empty, empty, empty);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * CastDiscoveryDelta
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.discovery.provider;
+
+import com.connectsdk.service.config.ServiceDescription;
+
+import java.util.List;
+
+/**
+ * Net changes of discovered services between two versions. When the changes since the
+ * requested version are not kept anymore, the delta is a reset: it's empty and the reader
+ * should take a new CastDiscoverySnapshot instead.
+ */
+public class CastDiscoveryDelta extends CastDiscoveryBatch {
+    private final long fromVersion;
+    private final long version;
+    private final boolean reset;
+
+    CastDiscoveryDelta(long fromVersion, long version, boolean reset,
+                       List<ServiceDescription> added, List<ServiceDescription> updated,
+                       List<ServiceDescription> removed) {
+        super(added, updated, removed);
+        this.fromVersion = fromVersion;
+        this.version = version;
+        this.reset = reset;
+    }
+
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    /**
+     * Version the reader has after applying the delta.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * CastDiscoveryEventBatcher
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.discovery.provider;
+
+import com.connectsdk.core.Util;
+import com.connectsdk.service.config.ServiceDescription;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects discovery events during a time window and delivers their net result as one
+ * CastDiscoveryBatch on the UI thread. Events for the same service are merged: an add followed
+ * by a remove cancels out, a remove followed by an add becomes an update.
+ */
+class CastDiscoveryEventBatcher {
+
+    interface Sink {
+        void deliver(CastDiscoveryBatch batch);
+    }
+
+    private enum Kind {
+        ADDED,
+        UPDATED,
+        REMOVED
+    }
+
+    private static class Change {
+        Kind kind;
+        ServiceDescription service;
+
+        Change(Kind kind, ServiceDescription service) {
+            this.kind = kind;
+            this.service = service;
+        }
+    }
+
+    private final Sink sink;
+
+    private final Map<String, Change> pending = new LinkedHashMap<String, Change>();
+
+    private long window;
+
+    private boolean flushScheduled;
+
+    private final Runnable flushRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            Util.runOnUI(new Runnable() {
+
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    };
+
+    CastDiscoveryEventBatcher(Sink sink) {
+        this.sink = sink;
+    }
+
+    synchronized void setWindow(long window) {
+        this.window = window;
+    }
+
+    synchronized long getWindow() {
+        return window;
+    }
+
+    synchronized boolean isEnabled() {
+        return window > 0;
+    }
+
+    void serviceAdded(ServiceDescription service, boolean isNew) {
+        add(service, isNew ? Kind.ADDED : Kind.UPDATED);
+    }
+
+    void serviceRemoved(ServiceDescription service) {
+        add(service, Kind.REMOVED);
+    }
+
+    private synchronized void add(ServiceDescription service, Kind kind) {
+        String uuid = service.getUUID();
+        Change change = pending.get(uuid);
+
+        if (change == null) {
+            pending.put(uuid, new Change(kind, service));
+        } else if (change.kind == Kind.ADDED) {
+            if (kind == Kind.REMOVED) {
+                // the service was found and lost within the window
+                pending.remove(uuid);
+            } else {
+                change.service = service;
+            }
+        } else if (change.kind == Kind.UPDATED) {
+            change.kind = kind == Kind.REMOVED ? Kind.REMOVED : Kind.UPDATED;
+            change.service = service;
+        } else if (kind != Kind.REMOVED) {
+            // the service was lost and found again within the window
+            change.kind = Kind.UPDATED;
+            change.service = service;
+        }
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            CastDiscoveryScheduler.getExecutor().schedule(flushRunnable, window,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Delivers the pending changes right away.
+     */
+    void flush() {
+        CastDiscoveryBatch batch;
+
+        synchronized (this) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            List<ServiceDescription> added = new ArrayList<ServiceDescription>();
+            List<ServiceDescription> updated = new ArrayList<ServiceDescription>();
+            List<ServiceDescription> removed = new ArrayList<ServiceDescription>();
+            for (Change change : pending.values()) {
+                if (change.kind == Kind.ADDED) {
+                    added.add(change.service);
+                } else if (change.kind == Kind.UPDATED) {
+                    updated.add(change.service);
+                } else {
+                    removed.add(change.service);
+                }
+            }
+            pending.clear();
+            batch = new CastDiscoveryBatch(added, updated, removed);
+        }
+
+        sink.deliver(batch);
+    }
+}
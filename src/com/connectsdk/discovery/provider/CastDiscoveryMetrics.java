@@ -0,0 +1,261 @@
+/*
+ * CastDiscoveryMetrics
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.discovery.provider;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and timings of CastDiscoveryProvider. Recording doesn't allocate, except for the
+ * first event of every device. Use {@link #snapshot()} to read the values.
+ */
+public class CastDiscoveryMetrics {
+
+    // devices above this limit are counted in the totals only
+    static final int MAX_TRACKED_DEVICES = 1024;
+
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    private final ConcurrentHashMap<String, DeviceStats> devices =
+            new ConcurrentHashMap<String, DeviceStats>();
+
+    private volatile long startTime;
+    private volatile long firstRouteTime;
+
+    private final AtomicLong routesAdded = new AtomicLong();
+    private final AtomicLong routesChanged = new AtomicLong();
+    private final AtomicLong routesRemoved = new AtomicLong();
+    private final AtomicLong gracePeriodHits = new AtomicLong();
+    private final AtomicLong dispatchCount = new AtomicLong();
+    private final AtomicLong dispatchTime = new AtomicLong();
+    private final AtomicLong maxDispatchTime = new AtomicLong();
+
+    static class DeviceStats {
+        static final AtomicIntegerFieldUpdater<DeviceStats> ADDS =
+                AtomicIntegerFieldUpdater.newUpdater(DeviceStats.class, "adds");
+        static final AtomicIntegerFieldUpdater<DeviceStats> CHANGES =
+                AtomicIntegerFieldUpdater.newUpdater(DeviceStats.class, "changes");
+        static final AtomicIntegerFieldUpdater<DeviceStats> REMOVES =
+                AtomicIntegerFieldUpdater.newUpdater(DeviceStats.class, "removes");
+        static final AtomicIntegerFieldUpdater<DeviceStats> GRACE_HITS =
+                AtomicIntegerFieldUpdater.newUpdater(DeviceStats.class, "graceHits");
+
+        final long timeToDiscover;
+        volatile int adds;
+        volatile int changes;
+        volatile int removes;
+        volatile int graceHits;
+
+        DeviceStats(long timeToDiscover) {
+            this.timeToDiscover = timeToDiscover;
+        }
+    }
+
+    /**
+     * Read-only copy of the metrics. Times are in milliseconds, -1 means the event hasn't
+     * happened yet.
+     */
+    public static class Snapshot {
+        public final long timeToFirstRoute;
+        public final long routesAdded;
+        public final long routesChanged;
+        public final long routesRemoved;
+        public final long gracePeriodHits;
+        public final long dispatchCount;
+        public final long dispatchTimeNanos;
+        public final long maxDispatchTimeNanos;
+        public final List<DeviceSnapshot> devices;
+
+        Snapshot(long timeToFirstRoute, long routesAdded, long routesChanged, long routesRemoved,
+                 long gracePeriodHits, long dispatchCount, long dispatchTimeNanos,
+                 long maxDispatchTimeNanos, List<DeviceSnapshot> devices) {
+            this.timeToFirstRoute = timeToFirstRoute;
+            this.routesAdded = routesAdded;
+            this.routesChanged = routesChanged;
+            this.routesRemoved = routesRemoved;
+            this.gracePeriodHits = gracePeriodHits;
+            this.dispatchCount = dispatchCount;
+            this.dispatchTimeNanos = dispatchTimeNanos;
+            this.maxDispatchTimeNanos = maxDispatchTimeNanos;
+            this.devices = Collections.unmodifiableList(devices);
+        }
+
+        public JSONObject toJSONObject() {
+            JSONObject json = new JSONObject();
+            try {
+                json.put("timeToFirstRoute", timeToFirstRoute);
+                json.put("routesAdded", routesAdded);
+                json.put("routesChanged", routesChanged);
+                json.put("routesRemoved", routesRemoved);
+                json.put("gracePeriodHits", gracePeriodHits);
+                json.put("dispatchCount", dispatchCount);
+                json.put("dispatchTimeNanos", dispatchTimeNanos);
+                json.put("maxDispatchTimeNanos", maxDispatchTimeNanos);
+
+                JSONArray deviceArray = new JSONArray();
+                for (DeviceSnapshot device : devices) {
+                    deviceArray.put(device.toJSONObject());
+                }
+                json.put("devices", deviceArray);
+            } catch (JSONException e) {
+                // values are never null or NaN
+            }
+            return json;
+        }
+    }
+
+    public static class DeviceSnapshot {
+        public final String uuid;
+        public final long timeToDiscover;
+        public final int adds;
+        public final int changes;
+        public final int removes;
+        public final int gracePeriodHits;
+
+        DeviceSnapshot(String uuid, DeviceStats stats) {
+            this.uuid = uuid;
+            this.timeToDiscover = stats.timeToDiscover;
+            this.adds = stats.adds;
+            this.changes = stats.changes;
+            this.removes = stats.removes;
+            this.gracePeriodHits = stats.graceHits;
+        }
+
+        public JSONObject toJSONObject() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("uuid", uuid);
+            json.put("timeToDiscover", timeToDiscover);
+            json.put("adds", adds);
+            json.put("changes", changes);
+            json.put("removes", removes);
+            json.put("gracePeriodHits", gracePeriodHits);
+            return json;
+        }
+    }
+
+    CastDiscoveryMetrics() {
+        reset();
+    }
+
+    void onStart() {
+        startTime = System.nanoTime();
+        firstRouteTime = -1;
+    }
+
+    void onRouteAdded(String uuid) {
+        long now = System.nanoTime();
+        if (firstRouteTime < 0) {
+            firstRouteTime = now;
+        }
+        routesAdded.incrementAndGet();
+
+        DeviceStats stats = getStats(uuid, now);
+        if (stats != null) {
+            DeviceStats.ADDS.incrementAndGet(stats);
+        }
+    }
+
+    void onRouteChanged(String uuid) {
+        routesChanged.incrementAndGet();
+
+        DeviceStats stats = devices.get(uuid);
+        if (stats != null) {
+            DeviceStats.CHANGES.incrementAndGet(stats);
+        }
+    }
+
+    void onRouteRemoved(String uuid) {
+        routesRemoved.incrementAndGet();
+
+        DeviceStats stats = devices.get(uuid);
+        if (stats != null) {
+            DeviceStats.REMOVES.incrementAndGet(stats);
+        }
+    }
+
+    /**
+     * A route was added again before its removal interval was over.
+     */
+    void onGracePeriodHit(String uuid) {
+        gracePeriodHits.incrementAndGet();
+
+        DeviceStats stats = devices.get(uuid);
+        if (stats != null) {
+            DeviceStats.GRACE_HITS.incrementAndGet(stats);
+        }
+    }
+
+    void onDispatch(long durationNanos) {
+        dispatchCount.incrementAndGet();
+        dispatchTime.addAndGet(durationNanos);
+
+        long max = maxDispatchTime.get();
+        while (durationNanos > max && !maxDispatchTime.compareAndSet(max, durationNanos)) {
+            max = maxDispatchTime.get();
+        }
+    }
+
+    public void reset() {
+        devices.clear();
+        startTime = System.nanoTime();
+        firstRouteTime = -1;
+        routesAdded.set(0);
+        routesChanged.set(0);
+        routesRemoved.set(0);
+        gracePeriodHits.set(0);
+        dispatchCount.set(0);
+        dispatchTime.set(0);
+        maxDispatchTime.set(0);
+    }
+
+    public Snapshot snapshot() {
+        List<DeviceSnapshot> deviceSnapshots = new ArrayList<DeviceSnapshot>(devices.size());
+        for (Map.Entry<String, DeviceStats> entry : devices.entrySet()) {
+            deviceSnapshots.add(new DeviceSnapshot(entry.getKey(), entry.getValue()));
+        }
+
+        long firstRoute = firstRouteTime;
+        return new Snapshot(firstRoute < 0 ? -1 : (firstRoute - startTime) / NANOS_PER_MILLI,
+                routesAdded.get(), routesChanged.get(), routesRemoved.get(),
+                gracePeriodHits.get(), dispatchCount.get(), dispatchTime.get(),
+                maxDispatchTime.get(), deviceSnapshots);
+    }
+
+    private DeviceStats getStats(String uuid, long now) {
+        DeviceStats stats = devices.get(uuid);
+        if (stats == null && devices.size() < MAX_TRACKED_DEVICES) {
+            DeviceStats newStats = new DeviceStats((now - startTime) / NANOS_PER_MILLI);
+            stats = devices.putIfAbsent(uuid, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+}
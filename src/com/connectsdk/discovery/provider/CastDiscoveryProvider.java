@@ -21,6 +21,8 @@
 package com.connectsdk.discovery.provider;
 
 import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
 import androidx.mediarouter.media.MediaRouteSelector;
 import androidx.mediarouter.media.MediaRouter;
 import androidx.mediarouter.media.MediaRouter.RouteInfo;
@@ -36,74 +38,359 @@ import com.connectsdk.service.config.ServiceDescription;
 import com.google.android.gms.cast.CastDevice;
 import com.google.android.gms.cast.CastMediaControlIntent;
 
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public class CastDiscoveryProvider implements DiscoveryProvider {
     private static final long ROUTE_REMOVE_INTERVAL = 3000;
 
+    // How long devices restored from the device cache wait for MediaRouter to confirm them
+    private static final long STALE_SERVICE_TIMEOUT = 10000;
+
+    // Adaptive scan: active discovery is kept while the set of routes keeps changing and is
+    // turned off once it has been stable for this long
+    private static final long STABLE_ROUTES_INTERVAL = 30000;
+
+    // Adaptive scan: how often a short active scan is done while in passive mode
+    private static final long PASSIVE_REFRESH_INTERVAL = 5 * 60 * 1000;
+    private static final long ACTIVE_REFRESH_DURATION = 10000;
+
+    private static final String SCAN_MODE_KEY = "scanMode";
+
+    /**
+     * Discovery mode of the provider. ACTIVE registers the MediaRouter callback with
+     * CALLBACK_FLAG_REQUEST_DISCOVERY, PASSIVE only listens to routes which are discovered anyway.
+     */
+    public enum ScanMode {
+        ACTIVE,
+        PASSIVE
+    }
+
     private MediaRouter mMediaRouter;
     private MediaRouteSelector mMediaRouteSelector;
+    // Application IDs of the selector and control categories of every application
+    private List<String> selectorApplicationIDs;
+    private volatile Map<String, String> applicationCategories = Collections.emptyMap();
     protected MediaRouter.Callback mMediaRouterCallback;
 
-    private List<String> removedUUID = new CopyOnWriteArrayList<String>();
     protected ConcurrentHashMap<String, ServiceDescription> foundServices;
     protected CopyOnWriteArrayList<DiscoveryProviderListener> serviceListeners;
+    protected CopyOnWriteArrayList<DiscoveryFilter> serviceFilters;
+    protected CopyOnWriteArrayList<CastDiscoveryBatchListener> batchListeners;
+
+    private CastDiscoveryEventBatcher eventBatcher;
+
+    private volatile CastDeviceMatcher deviceMatcher;
+
+    // compiled from serviceFilters, null when they don't restrict the Cast devices
+    private volatile CastDeviceMatcher filterMatcher;
+
+    // false when there are filters but none of them is for CastService
+    private volatile boolean filtersAcceptCast = true;
 
-    private Timer removeRoutesTimer;
+    private final CastDiscoveryMetrics metrics = new CastDiscoveryMetrics();
+
+    private final CastDiscoveryChangeLog changeLog = new CastDiscoveryChangeLog();
+
+    // Decoded CastDevice of every known route, keyed by route id
+    private ConcurrentHashMap<String, DecodedRoute> decodedRoutes;
+
+    // Turns SystemClock.elapsedRealtime() into wall clock time for detection timestamps
+    private final long clockOffset = System.currentTimeMillis() - SystemClock.elapsedRealtime();
+
+    // Services restored from the device cache which haven't been seen by MediaRouter yet
+    protected Set<String> staleUUIDs;
+
+    private CastDeviceCache deviceCache;
+    private boolean deviceCacheEnabled = true;
+
+    // Pending removals of services whose routes are gone or which are still stale
+    private CastDiscoveryScheduler removalScheduler;
+
+    private CastDiscoveryScheduler scanModeScheduler;
+    private boolean adaptiveScanEnabled = false;
+    private boolean appInForeground = true;
+    private ScanMode scanMode = ScanMode.ACTIVE;
+    private long scanModeSince;
+    private long activeUntil;
+    private long activeScanTime;
+    private long passiveScanTime;
 
     boolean isRunning = false;
 
+    // Delay before a service whose route is gone is removed, shortened by tests
+    long routeRemoveInterval = ROUTE_REMOVE_INTERVAL;
+
     public CastDiscoveryProvider(Context context) {
         mMediaRouter = createMediaRouter(context);
         mMediaRouterCallback = new MediaRouterCallback();
 
         foundServices = new ConcurrentHashMap<String, ServiceDescription>(8, 0.75f, 2);
+        decodedRoutes = new ConcurrentHashMap<String, DecodedRoute>(8, 0.75f, 2);
         serviceListeners = new CopyOnWriteArrayList<DiscoveryProviderListener>();
+        serviceFilters = new CopyOnWriteArrayList<DiscoveryFilter>();
+        batchListeners = new CopyOnWriteArrayList<CastDiscoveryBatchListener>();
+        eventBatcher = new CastDiscoveryEventBatcher(new CastDiscoveryEventBatcher.Sink() {
+
+            @Override
+            public void deliver(CastDiscoveryBatch batch) {
+                deliverBatch(batch);
+            }
+        });
+        staleUUIDs = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        removalScheduler = createScheduler(new CastDiscoveryScheduler.Action() {
+
+            @Override
+            public void run(String uuid) {
+                removeService(uuid);
+            }
+        });
+
+        scanModeScheduler = createScheduler(new CastDiscoveryScheduler.Action() {
+
+            @Override
+            public void run(String key) {
+                updateScanMode();
+            }
+        });
+
+        if (context != null) {
+            deviceCache = createDeviceCache(context);
+        }
     }
 
     protected MediaRouter createMediaRouter(Context context) {
         return MediaRouter.getInstance(context);
     }
 
+    protected CastDeviceCache createDeviceCache(Context context) {
+        return new CastDeviceCache(context);
+    }
+
+    protected CastDevice decodeCastDevice(Bundle extras) {
+        return CastDevice.getFromBundle(extras);
+    }
+
+    CastDiscoveryScheduler createScheduler(CastDiscoveryScheduler.Action action) {
+        return new CastDiscoveryScheduler(action);
+    }
+
+    /**
+     * Enables or disables the on-disk device cache. When enabled, devices found during previous
+     * sessions are reported right after start() and marked as stale until MediaRouter finds
+     * them again. Enabled by default.
+     */
+    public void setDeviceCacheEnabled(boolean enabled) {
+        deviceCacheEnabled = enabled;
+
+        if (!enabled && deviceCache != null) {
+            deviceCache.clear();
+        }
+    }
+
+    public boolean isDeviceCacheEnabled() {
+        return deviceCacheEnabled;
+    }
+
+    /**
+     * Returns true if the service was restored from the device cache and hasn't been confirmed
+     * by MediaRouter yet. Stale services don't have a CastDevice attached and can't be connected.
+     */
+    public boolean isStale(ServiceDescription serviceDescription) {
+        return serviceDescription != null && serviceDescription.getUUID() != null
+                && staleUUIDs.contains(serviceDescription.getUUID());
+    }
+
+    /**
+     * Enables or disables adaptive scanning. When enabled, the provider keeps active discovery
+     * only while routes are changing, after start and after the app comes to foreground, and
+     * listens passively otherwise. A short active scan is done periodically in passive mode.
+     * Disabled by default, so discovery is always active.
+     */
+    public void setAdaptiveScanEnabled(boolean enabled) {
+        synchronized (this) {
+            adaptiveScanEnabled = enabled;
+            activeUntil = SystemClock.elapsedRealtime() + STABLE_ROUTES_INTERVAL;
+        }
+        updateScanMode();
+    }
+
+    public boolean isAdaptiveScanEnabled() {
+        return adaptiveScanEnabled;
+    }
+
+    /**
+     * Tells the provider whether the app is in foreground. Adaptive scanning stays passive while
+     * the app is in background and does an active scan when it comes back.
+     */
+    public void setAppInForeground(boolean inForeground) {
+        synchronized (this) {
+            if (inForeground && !appInForeground) {
+                activeUntil = SystemClock.elapsedRealtime() + STABLE_ROUTES_INTERVAL;
+            }
+            appInForeground = inForeground;
+        }
+        updateScanMode();
+    }
+
+    /**
+     * Returns the discovery metrics collected since the provider was created or since
+     * resetMetrics() was called: time to the first route and to every device, add, change and
+     * remove counts per device, routes which came back before their removal and the time spent
+     * in listeners.
+     */
+    public CastDiscoveryMetrics.Snapshot getMetrics() {
+        return metrics.snapshot();
+    }
+
+    public void resetMetrics() {
+        metrics.reset();
+    }
+
+    public ScanMode getScanMode() {
+        return scanMode;
+    }
+
+    /**
+     * Returns how long discovery was running in the given mode, in milliseconds.
+     */
+    public synchronized long getTimeInScanMode(ScanMode mode) {
+        long time = mode == ScanMode.ACTIVE ? activeScanTime : passiveScanTime;
+        if (isRunning && scanMode == mode) {
+            time += SystemClock.elapsedRealtime() - scanModeSince;
+        }
+        return time;
+    }
+
+    private void onRouteSetChanged() {
+        if (!adaptiveScanEnabled) {
+            return;
+        }
+
+        synchronized (this) {
+            activeUntil = SystemClock.elapsedRealtime() + STABLE_ROUTES_INTERVAL;
+        }
+        updateScanMode();
+    }
+
+    private void updateScanMode() {
+        ScanMode newMode;
+        long nextUpdate = 0;
+
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+
+            if (!adaptiveScanEnabled) {
+                newMode = ScanMode.ACTIVE;
+            } else if (!appInForeground) {
+                newMode = ScanMode.PASSIVE;
+            } else if (now < activeUntil) {
+                newMode = ScanMode.ACTIVE;
+                nextUpdate = activeUntil - now;
+            } else if (scanMode == ScanMode.PASSIVE && now - scanModeSince >= PASSIVE_REFRESH_INTERVAL) {
+                activeUntil = now + ACTIVE_REFRESH_DURATION;
+                newMode = ScanMode.ACTIVE;
+                nextUpdate = ACTIVE_REFRESH_DURATION;
+            } else {
+                newMode = ScanMode.PASSIVE;
+                nextUpdate = scanMode == ScanMode.PASSIVE
+                        ? PASSIVE_REFRESH_INTERVAL - (now - scanModeSince) : PASSIVE_REFRESH_INTERVAL;
+            }
+
+            if (newMode == scanMode) {
+                newMode = null;
+            } else {
+                setScanMode(newMode, now);
+            }
+        }
+
+        if (isRunning && nextUpdate > 0) {
+            scanModeScheduler.schedule(SCAN_MODE_KEY, nextUpdate);
+        } else {
+            scanModeScheduler.cancel(SCAN_MODE_KEY);
+        }
+
+        if (newMode != null && isRunning) {
+            Log.d(Util.T, "Cast discovery scan mode: " + newMode);
+            rescan();
+        }
+    }
+
+    private void setScanMode(ScanMode mode, long now) {
+        if (isRunning) {
+            if (scanMode == ScanMode.ACTIVE) {
+                activeScanTime += now - scanModeSince;
+            } else {
+                passiveScanTime += now - scanModeSince;
+            }
+        }
+        scanMode = mode;
+        scanModeSince = now;
+    }
+
+    private int getCallbackFlags() {
+        return scanMode == ScanMode.ACTIVE ? MediaRouter.CALLBACK_FLAG_REQUEST_DISCOVERY : 0;
+    }
+
     @Override
     public void start() {
         if (isRunning) 
             return;
 
-        isRunning = true;
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            isRunning = true;
+            scanModeSince = now;
+            metrics.onStart();
+            activeUntil = now + STABLE_ROUTES_INTERVAL;
+        }
+
+        List<String> applicationIDs = CastService.getApplicationIDs();
+        if (mMediaRouteSelector == null || applicationIDs != selectorApplicationIDs) {
+            // one selector for all the applications, so every device is reported once
+            MediaRouteSelector.Builder builder = new MediaRouteSelector.Builder();
+            Map<String, String> categories = new LinkedHashMap<String, String>();
 
-        if (mMediaRouteSelector == null) {
-            try {
-                mMediaRouteSelector = new MediaRouteSelector.Builder()
-                .addControlCategory(CastMediaControlIntent.categoryForCast(
-                        CastService.getApplicationID()))
-                .build();
-            } catch (IllegalArgumentException e) {
-                Log.w(Util.T, "Invalid application ID: " + CastService.getApplicationID());
-                for (DiscoveryProviderListener listener : serviceListeners) {
-                    listener.onServiceDiscoveryFailed(this, new ServiceCommandError(0,
-                            "Invalid application ID: " + CastService.getApplicationID(), null));
+            for (String applicationID : applicationIDs) {
+                try {
+                    String category = CastMediaControlIntent.categoryForCast(applicationID);
+                    builder.addControlCategory(category);
+                    categories.put(applicationID, category);
+                } catch (IllegalArgumentException e) {
+                    Log.w(Util.T, "Invalid application ID: " + applicationID);
+                    for (DiscoveryProviderListener listener : serviceListeners) {
+                        listener.onServiceDiscoveryFailed(this, new ServiceCommandError(0,
+                                "Invalid application ID: " + applicationID, null));
+                    }
+                    return;
                 }
-                return;
             }
+
+            mMediaRouteSelector = builder.build();
+            selectorApplicationIDs = applicationIDs;
+            applicationCategories = Collections.unmodifiableMap(categories);
+            decodedRoutes.clear();
         }
 
+        restoreCachedServices();
+
+        updateScanMode();
         rescan();
     }
 
     @Override
     public void stop() {
-        isRunning = false;
-
-        if (removeRoutesTimer != null) {
-            removeRoutesTimer.cancel();
-            removeRoutesTimer = null;
+        synchronized (this) {
+            setScanMode(scanMode, SystemClock.elapsedRealtime());
+            isRunning = false;
         }
+        scanModeScheduler.cancelAll();
 
         if (mMediaRouter != null) {
             Util.runOnUI(new Runnable() {
@@ -125,7 +412,11 @@ public class CastDiscoveryProvider implements DiscoveryProvider {
     @Override
     public void reset() {
         stop();
+        removalScheduler.cancelAll();
         foundServices.clear();
+        staleUUIDs.clear();
+        decodedRoutes.clear();
+        changeLog.reset();
     }
 
     @Override
@@ -134,8 +425,11 @@ public class CastDiscoveryProvider implements DiscoveryProvider {
 
             @Override
             public void run() {
+                // MediaRouter adds the flags to an already registered callback, so it must be
+                // removed first to turn the discovery request off
+                mMediaRouter.removeCallback(mMediaRouterCallback);
                 mMediaRouter.addCallback(mMediaRouteSelector, mMediaRouterCallback,
-                        MediaRouter.CALLBACK_FLAG_REQUEST_DISCOVERY);
+                        getCallbackFlags());
             }
         });
     }
@@ -150,18 +444,426 @@ public class CastDiscoveryProvider implements DiscoveryProvider {
         serviceListeners.remove(listener);
     }
 
+    /**
+     * Returns the found services with the current version. The snapshot is immutable and is
+     * shared by all callers until the next change.
+     */
+    public CastDiscoverySnapshot getSnapshot() {
+        return changeLog.getSnapshot(foundServices.values());
+    }
+
+    /**
+     * Returns the net changes since the version of a snapshot or of a previous delta. The cost
+     * depends on the number of changes, not on the number of services. If the changes are not
+     * available anymore, the delta is a reset and getSnapshot() should be used instead.
+     */
+    public CastDiscoveryDelta getChangesSince(long version) {
+        return changeLog.getChangesSince(version);
+    }
+
+    public void addBatchListener(CastDiscoveryBatchListener listener) {
+        batchListeners.add(listener);
+    }
+
+    public void removeBatchListener(CastDiscoveryBatchListener listener) {
+        batchListeners.remove(listener);
+    }
+
+    /**
+     * Enables batched event delivery. Service events which happen within the window are merged
+     * and delivered together on the UI thread, both to DiscoveryProviderListeners and as one
+     * CastDiscoveryBatch to batch listeners. A service which is added and removed within the
+     * same window is not reported at all. Pass 0 to deliver every event right away, which is
+     * the default.
+     */
+    public void setEventBatchWindow(long windowMillis) {
+        eventBatcher.setWindow(Math.max(0, windowMillis));
+
+        if (windowMillis <= 0) {
+            eventBatcher.flush();
+        }
+    }
+
+    public long getEventBatchWindow() {
+        return eventBatcher.getWindow();
+    }
+
+    /**
+     * Adds a filter of the devices to report. Only filters with the CastService id apply to
+     * this provider. The default filter of CastService accepts every Cast device, other
+     * filter values are model names, e.g. "Chromecast Audio". With filters which are all for
+     * other services, no Cast device is reported.
+     */
     @Override
-    public void addDeviceFilter(DiscoveryFilter filter) {}
+    public void addDeviceFilter(DiscoveryFilter filter) {
+        if (filter.getServiceId() == null) {
+            Log.e(Util.T, "This device filter does not have service id");
+        } else if (!serviceFilters.contains(filter)) {
+            serviceFilters.add(filter);
+            applyFilters();
+        }
+    }
 
     @Override
-    public void removeDeviceFilter(DiscoveryFilter filter) {}
+    public void removeDeviceFilter(DiscoveryFilter filter) {
+        if (serviceFilters.remove(filter)) {
+            applyFilters();
+        }
+    }
 
     @Override
-    public void setFilters(java.util.List<DiscoveryFilter> filters) {}
+    public void setFilters(java.util.List<DiscoveryFilter> filters) {
+        List<DiscoveryFilter> accepted = new ArrayList<DiscoveryFilter>();
+        for (DiscoveryFilter filter : filters) {
+            if (filter.getServiceId() == null) {
+                Log.e(Util.T, "This device filter does not have service id");
+            } else if (!accepted.contains(filter)) {
+                accepted.add(filter);
+            }
+        }
+        serviceFilters.clear();
+        serviceFilters.addAll(accepted);
+        applyFilters();
+    }
+
+    private void applyFilters() {
+        boolean acceptCast = serviceFilters.isEmpty();
+        boolean anyModel = false;
+        CastDeviceMatcher.Builder builder = new CastDeviceMatcher.Builder();
+
+        for (DiscoveryFilter filter : serviceFilters) {
+            if (!CastService.ID.equals(filter.getServiceId())) {
+                continue;
+            }
+            acceptCast = true;
+            String value = filter.getServiceFilter();
+            if (value == null || value.equals(CastService.discoveryFilter().getServiceFilter())) {
+                anyModel = true;
+            } else {
+                builder.addModelName(value);
+            }
+        }
+
+        filtersAcceptCast = acceptCast;
+        filterMatcher = acceptCast && !anyModel && !serviceFilters.isEmpty() ? builder.build() : null;
+        applyMatchers();
+    }
 
     @Override
     public boolean isEmpty() {
-        return false;
+        return serviceFilters.isEmpty();
+    }
+
+    /**
+     * Sets a matcher which every route has to pass before it's reported to listeners. Routes are
+     * checked before a ServiceDescription is created for them. Services which were found before
+     * and don't match anymore are removed. Pass null to accept all Cast devices.
+     */
+    public void setDeviceMatcher(CastDeviceMatcher matcher) {
+        deviceMatcher = matcher;
+        applyMatchers();
+    }
+
+    // removes the found services which aren't accepted anymore and checks the known routes again
+    private void applyMatchers() {
+        for (ServiceDescription service : foundServices.values()) {
+            if (!accepts(service)) {
+                removalScheduler.cancel(service.getUUID());
+                removeService(service.getUUID());
+            }
+        }
+
+        if (isRunning && mMediaRouter != null) {
+            // routes which were dropped by the previous matcher are not reported by MediaRouter
+            // again, so check them here. Known routes are only refreshed by onRouteAdded.
+            Util.runOnUI(new Runnable() {
+
+                @Override
+                public void run() {
+                    List<RouteInfo> routes = mMediaRouter.getRoutes();
+                    if (routes == null || mMediaRouteSelector == null) {
+                        return;
+                    }
+                    for (RouteInfo route : routes) {
+                        if (route.matchesSelector(mMediaRouteSelector)) {
+                            mMediaRouterCallback.onRouteAdded(mMediaRouter, route);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    public CastDeviceMatcher getDeviceMatcher() {
+        return deviceMatcher;
+    }
+
+    private boolean isFiltering() {
+        return !filtersAcceptCast || filterMatcher != null || deviceMatcher != null;
+    }
+
+    private boolean acceptsName(CharSequence friendlyName) {
+        CastDeviceMatcher filter = filterMatcher;
+        CastDeviceMatcher matcher = deviceMatcher;
+        return filtersAcceptCast
+                && (filter == null || filter.matchesName(friendlyName))
+                && (matcher == null || matcher.matchesName(friendlyName));
+    }
+
+    private boolean acceptsDevice(CastDevice device) {
+        CastDeviceMatcher filter = filterMatcher;
+        CastDeviceMatcher matcher = deviceMatcher;
+        return filtersAcceptCast
+                && (filter == null || filter.matchesDevice(device))
+                && (matcher == null || matcher.matchesDevice(device));
+    }
+
+    private boolean accepts(ServiceDescription service) {
+        CastDeviceMatcher filter = filterMatcher;
+        CastDeviceMatcher matcher = deviceMatcher;
+        return filtersAcceptCast
+                && (filter == null || matches(filter, service))
+                && (matcher == null || matches(matcher, service));
+    }
+
+    private static boolean matches(CastDeviceMatcher matcher, ServiceDescription service) {
+        if (!matcher.matchesName(service.getFriendlyName())) {
+            return false;
+        }
+        if (service.getDevice() instanceof CastDevice) {
+            return matcher.matchesDevice((CastDevice) service.getDevice());
+        }
+        return matcher.matchesModelName(service.getModelName());
+    }
+
+    private void restoreCachedServices() {
+        if (!deviceCacheEnabled || deviceCache == null) {
+            return;
+        }
+
+        // the file is read in the background, start() is usually called on the UI thread
+        deviceCache.loadAsync(new CastDeviceCache.LoadListener() {
+
+            @Override
+            public void onLoaded(List<CastDeviceCache.Entry> entries) {
+                restoreCachedServices(entries);
+            }
+        });
+    }
+
+    void restoreCachedServices(List<CastDeviceCache.Entry> entries) {
+        if (!isRunning || !deviceCacheEnabled) {
+            return;
+        }
+
+        List<ServiceDescription> restored = new ArrayList<ServiceDescription>();
+        for (CastDeviceCache.Entry entry : entries) {
+            ServiceDescription service = entry.toServiceDescription();
+            if (!accepts(service)) {
+                continue;
+            }
+            if (foundServices.putIfAbsent(entry.uuid, service) == null) {
+                staleUUIDs.add(entry.uuid);
+                restored.add(service);
+            }
+        }
+
+        if (restored.isEmpty()) {
+            return;
+        }
+
+        Log.d(Util.T, "Restored " + restored.size() + " Cast devices from cache");
+
+        for (ServiceDescription service : restored) {
+            removalScheduler.schedule(service.getUUID(), STALE_SERVICE_TIMEOUT);
+            notifyServiceAdded(service, true);
+        }
+    }
+
+    private void removeService(String uuid) {
+        boolean wasStale = staleUUIDs.remove(uuid);
+        ServiceDescription service = foundServices.remove(uuid);
+        if (service == null) {
+            return;
+        }
+
+        if (wasStale) {
+            Log.d(Util.T, "Cached service [" + service.getFriendlyName() + "] was not found");
+        } else {
+            Log.d(Util.T, "Service [" + service.getFriendlyName() + "] has been removed");
+            saveDeviceCache();
+        }
+
+        notifyServiceRemoved(service);
+        onRouteSetChanged();
+    }
+
+    private void saveDeviceCache() {
+        if (!deviceCacheEnabled || deviceCache == null) {
+            return;
+        }
+
+        List<ServiceDescription> services = new ArrayList<ServiceDescription>(foundServices.size());
+        for (ServiceDescription service : foundServices.values()) {
+            if (!staleUUIDs.contains(service.getUUID())) {
+                services.add(service);
+            }
+        }
+        deviceCache.save(services);
+    }
+
+    private void notifyServiceAdded(ServiceDescription service, boolean isNew) {
+        if (isNew) {
+            changeLog.serviceAdded(service);
+        } else {
+            changeLog.serviceUpdated(service);
+        }
+
+        if (eventBatcher.isEnabled()) {
+            eventBatcher.serviceAdded(service, isNew);
+            return;
+        }
+
+        long dispatchStart = System.nanoTime();
+
+        for (DiscoveryProviderListener listener : serviceListeners) {
+            listener.onServiceAdded(this, service);
+        }
+
+        if (!batchListeners.isEmpty()) {
+            List<ServiceDescription> services = Collections.singletonList(service);
+            List<ServiceDescription> empty = Collections.emptyList();
+            deliverBatch(isNew ? new CastDiscoveryBatch(services, empty, empty)
+                    : new CastDiscoveryBatch(empty, services, empty), batchListeners);
+        }
+
+        metrics.onDispatch(System.nanoTime() - dispatchStart);
+    }
+
+    private void notifyServiceRemoved(final ServiceDescription service) {
+        changeLog.serviceRemoved(service);
+
+        if (eventBatcher.isEnabled()) {
+            eventBatcher.serviceRemoved(service);
+            return;
+        }
+
+        Util.runOnUI(new Runnable() {
+
+            @Override
+            public void run() {
+                long dispatchStart = System.nanoTime();
+
+                for (DiscoveryProviderListener listener : serviceListeners) {
+                    listener.onServiceRemoved(CastDiscoveryProvider.this, service);
+                }
+
+                if (!batchListeners.isEmpty()) {
+                    List<ServiceDescription> empty = Collections.emptyList();
+                    deliverBatch(new CastDiscoveryBatch(empty, empty,
+                            Collections.singletonList(service)), batchListeners);
+                }
+
+                metrics.onDispatch(System.nanoTime() - dispatchStart);
+            }
+        });
+    }
+
+    private void deliverBatch(CastDiscoveryBatch batch) {
+        long dispatchStart = System.nanoTime();
+
+        for (DiscoveryProviderListener listener : serviceListeners) {
+            for (ServiceDescription service : batch.getRemoved()) {
+                listener.onServiceRemoved(this, service);
+            }
+            for (ServiceDescription service : batch.getAdded()) {
+                listener.onServiceAdded(this, service);
+            }
+            for (ServiceDescription service : batch.getUpdated()) {
+                listener.onServiceAdded(this, service);
+            }
+        }
+
+        deliverBatch(batch, batchListeners);
+
+        metrics.onDispatch(System.nanoTime() - dispatchStart);
+    }
+
+    private void deliverBatch(CastDiscoveryBatch batch, List<CastDiscoveryBatchListener> listeners) {
+        for (CastDiscoveryBatchListener listener : listeners) {
+            listener.onServicesChanged(this, batch);
+        }
+    }
+
+    /**
+     * Returns the CastDevice of the route. MediaRouter keeps the same extras Bundle until the
+     * route descriptor changes, so the device is decoded only once per descriptor.
+     */
+    private DecodedRoute getDecodedRoute(RouteInfo route) {
+        String routeId = route.getId();
+        Bundle extras = route.getExtras();
+
+        DecodedRoute decoded = routeId == null ? null : decodedRoutes.get(routeId);
+        if (decoded != null && decoded.extras == extras) {
+            return decoded;
+        }
+
+        CastDevice castDevice = decodeCastDevice(extras);
+        if (castDevice == null || castDevice.getDeviceId() == null) {
+            Log.w(Util.T, "Route [" + route.getName() + "] doesn't have a Cast device");
+            return null;
+        }
+
+        decoded = new DecodedRoute(extras, castDevice, getSupportedApplicationIDs(route));
+        if (routeId != null) {
+            decodedRoutes.put(routeId, decoded);
+        }
+        return decoded;
+    }
+
+    private List<String> getSupportedApplicationIDs(RouteInfo route) {
+        Map<String, String> categories = applicationCategories;
+        if (categories.size() <= 1) {
+            // the route has passed the selector, so it supports the only application
+            return selectorApplicationIDs == null
+                    ? Collections.<String>emptyList() : selectorApplicationIDs;
+        }
+
+        List<String> supported = new ArrayList<String>(categories.size());
+        for (Map.Entry<String, String> entry : categories.entrySet()) {
+            if (route.supportsControlCategory(entry.getValue())) {
+                supported.add(entry.getKey());
+            }
+        }
+        return Collections.unmodifiableList(supported);
+    }
+
+    private static void updateApplicationIDs(ServiceDescription service, DecodedRoute decoded) {
+        if (service instanceof CastServiceDescription) {
+            CastServiceDescription castService = (CastServiceDescription) service;
+            if (castService.getApplicationIDs() != decoded.applicationIDs) {
+                castService.setApplicationIDs(decoded.applicationIDs);
+            }
+        }
+    }
+
+    private long currentTime() {
+        return clockOffset + SystemClock.elapsedRealtime();
+    }
+
+    private static class DecodedRoute {
+        final Bundle extras;
+        final CastDevice device;
+        final String ipAddress;
+        final List<String> applicationIDs;
+
+        DecodedRoute(Bundle extras, CastDevice device, List<String> applicationIDs) {
+            this.extras = extras;
+            this.device = device;
+            this.applicationIDs = applicationIDs;
+            this.ipAddress = device.getIpAddress() == null
+                    ? null : device.getIpAddress().getHostAddress();
+        }
     }
 
     private class MediaRouterCallback extends MediaRouter.Callback {
@@ -170,19 +872,39 @@ public class CastDiscoveryProvider implements DiscoveryProvider {
         public void onRouteAdded(MediaRouter router, RouteInfo route) {
             super.onRouteAdded(router, route);
 
-            CastDevice castDevice = CastDevice.getFromBundle(route.getExtras());
+            if (!acceptsName(route.getName())) {
+                return;
+            }
+
+            DecodedRoute decoded = getDecodedRoute(route);
+            if (decoded == null) {
+                return;
+            }
+
+            CastDevice castDevice = decoded.device;
+            if (!acceptsDevice(castDevice)) {
+                return;
+            }
+
             String uuid = castDevice.getDeviceId();
 
-            removedUUID.remove(uuid);
+            metrics.onRouteAdded(uuid);
+
+            boolean removalPending = removalScheduler.cancel(uuid);
 
             ServiceDescription foundService = foundServices.get(uuid);
 
             boolean isNew = foundService == null;
+            boolean isStale = staleUUIDs.remove(uuid);
             boolean listUpdateFlag = false;
 
+            if (removalPending && !isStale) {
+                // the route came back before its removal interval was over
+                metrics.onGracePeriodHit(uuid);
+            }
+
             if (isNew) {
-                foundService = new ServiceDescription(CastService.ID, uuid,
-                        castDevice.getIpAddress().getHostAddress());
+                foundService = new CastServiceDescription(CastService.ID, uuid, decoded.ipAddress);
                 foundService.setFriendlyName(castDevice.getFriendlyName());
                 foundService.setModelName(castDevice.getModelName());
                 foundService.setModelNumber(castDevice.getDeviceVersion());
@@ -193,23 +915,42 @@ public class CastDiscoveryProvider implements DiscoveryProvider {
 
                 listUpdateFlag = true;
             }
+            else if (isStale) {
+                // cached service is confirmed, refresh everything that could have changed since
+                // it was stored
+                foundService.setIpAddress(decoded.ipAddress);
+                foundService.setFriendlyName(castDevice.getFriendlyName());
+                foundService.setModelName(castDevice.getModelName());
+                foundService.setModelNumber(castDevice.getDeviceVersion());
+                foundService.setModelDescription(route.getDescription());
+                foundService.setPort(castDevice.getServicePort());
+                foundService.setDevice(castDevice);
+
+                listUpdateFlag = true;
+            }
             else {
                 if (!foundService.getFriendlyName().equals(castDevice.getFriendlyName())) {
                     foundService.setFriendlyName(castDevice.getFriendlyName());
                     listUpdateFlag = true;
                 }
 
-                foundService.setDevice(castDevice);
+                if (foundService.getDevice() != castDevice) {
+                    foundService.setDevice(castDevice);
+                }
             }
 
-            foundService.setLastDetection(new Date().getTime());
+            updateApplicationIDs(foundService, decoded);
+            foundService.setLastDetection(currentTime());
 
             foundServices.put(uuid, foundService);
 
             if (listUpdateFlag) {
-                for (DiscoveryProviderListener listenter: serviceListeners) {
-                    listenter.onServiceAdded(CastDiscoveryProvider.this, foundService);
-                }
+                notifyServiceAdded(foundService, isNew);
+                saveDeviceCache();
+            }
+
+            if (isNew) {
+                onRouteSetChanged();
             }
         }
 
@@ -217,35 +958,67 @@ public class CastDiscoveryProvider implements DiscoveryProvider {
         public void onRouteChanged(MediaRouter router, RouteInfo route) {
             super.onRouteChanged(router, route);
 
-            CastDevice castDevice = CastDevice.getFromBundle(route.getExtras());
+            DecodedRoute decoded = getDecodedRoute(route);
+            if (decoded == null) {
+                return;
+            }
+
+            CastDevice castDevice = decoded.device;
             String uuid = castDevice.getDeviceId();
 
+            if (!acceptsName(route.getName()) || !acceptsDevice(castDevice)) {
+                // the device doesn't match anymore, drop it if it was found before
+                removeIfFound(uuid);
+                return;
+            }
+
             ServiceDescription foundService = foundServices.get(uuid);
 
             boolean isNew = foundService == null;
             boolean listUpdateFlag = false;
 
+            if (isNew && isFiltering()) {
+                // the route could have been dropped by the matcher before
+                onRouteAdded(router, route);
+                return;
+            }
+
             if (!isNew) {
-                foundService.setIpAddress(castDevice.getIpAddress().getHostAddress());
-                foundService.setModelName(castDevice.getModelName());
-                foundService.setModelNumber(castDevice.getDeviceVersion());
+                metrics.onRouteChanged(uuid);
+
+                boolean cacheUpdateFlag = false;
+
+                // the same CastDevice means the route descriptor hasn't changed
+                if (foundService.getDevice() != castDevice) {
+                    cacheUpdateFlag = decoded.ipAddress != null
+                            && !decoded.ipAddress.equals(foundService.getIpAddress());
+
+                    foundService.setIpAddress(decoded.ipAddress);
+                    foundService.setModelName(castDevice.getModelName());
+                    foundService.setModelNumber(castDevice.getDeviceVersion());
+                    foundService.setPort(castDevice.getServicePort());
+                    foundService.setDevice(castDevice);
+                }
                 foundService.setModelDescription(route.getDescription());
-                foundService.setPort(castDevice.getServicePort());
-                foundService.setDevice(castDevice);
+                updateApplicationIDs(foundService, decoded);
 
                 if (!foundService.getFriendlyName().equals(castDevice.getFriendlyName())) {
                     foundService.setFriendlyName(castDevice.getFriendlyName());
                     listUpdateFlag = true;
                 }
 
-                foundService.setLastDetection(new Date().getTime());
+                foundService.setLastDetection(currentTime());
 
                 foundServices.put(uuid, foundService);
 
                 if (listUpdateFlag) {
-                    for (DiscoveryProviderListener listenter: serviceListeners) {
-                        listenter.onServiceAdded(CastDiscoveryProvider.this, foundService);
-                    }
+                    notifyServiceAdded(foundService, false);
+                } else if (cacheUpdateFlag) {
+                    changeLog.serviceUpdated(foundService);
+                }
+
+                if (listUpdateFlag || cacheUpdateFlag) {
+                    saveDeviceCache();
                 }
             }
         }
@@ -262,20 +1035,28 @@ public class CastDiscoveryProvider implements DiscoveryProvider {
         public void onRouteRemoved(final MediaRouter router, final RouteInfo route) {
             super.onRouteRemoved(router, route);
 
-            CastDevice castDevice = CastDevice.getFromBundle(route.getExtras());
-            String uuid = castDevice.getDeviceId();
-            removedUUID.add(uuid);
+            DecodedRoute decoded = getDecodedRoute(route);
+            if (route.getId() != null) {
+                decodedRoutes.remove(route.getId());
+            }
+            if (decoded == null) {
+                return;
+            }
+
+            String uuid = decoded.device.getDeviceId();
 
             // Prevent immediate removing. There are some cases when service is removed and added
             // again after a second.
-            if (removeRoutesTimer == null) {
-                removeRoutesTimer = new Timer();
-                removeRoutesTimer.schedule(new TimerTask() {
-                    @Override
-                    public void run() {
-                        removeServices(route);
-                    }
-                }, ROUTE_REMOVE_INTERVAL);
+            if (foundServices.containsKey(uuid)) {
+                metrics.onRouteRemoved(uuid);
+                removalScheduler.schedule(uuid, routeRemoveInterval);
+            }
+        }
+
+        private void removeIfFound(String uuid) {
+            if (foundServices.containsKey(uuid)) {
+                removalScheduler.cancel(uuid);
+                removeService(uuid);
             }
         }
 
@@ -286,24 +1067,5 @@ public class CastDiscoveryProvider implements DiscoveryProvider {
             super.onRouteVolumeChanged(router, route);
         }
 
-        private void removeServices(RouteInfo route) {
-            for (String uuid : removedUUID) {
-                final ServiceDescription service = foundServices.get(uuid);
-                if (service != null) {
-                    Log.d(Util.T, "Service [" + route.getName() + "] has been removed");
-                    Util.runOnUI(new Runnable() {
-
-                        @Override
-                        public void run() {
-                            for (DiscoveryProviderListener listener : serviceListeners) {
-                                listener.onServiceRemoved(CastDiscoveryProvider.this, service);
-                            }
-                        }
-                    });
-                    foundServices.remove(uuid);
-                }
-            }
-            removedUUID.clear();
-        }
     }
 }
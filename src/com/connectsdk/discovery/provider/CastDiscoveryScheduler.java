@@ -0,0 +1,164 @@
+/*
+ * CastDiscoveryScheduler
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.discovery.provider;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a delayed action per key, e.g. removal of a device some time after its route is gone.
+ * Every key has its own deadline: scheduling a key again replaces the previous deadline and
+ * cancel is O(1). All schedulers share one daemon thread by default, so no thread is created
+ * per provider or per device.
+ */
+class CastDiscoveryScheduler {
+
+    interface Action {
+        void run(String key);
+    }
+
+    /**
+     * Runs delayed tasks. Tests use a timer which they advance by hand.
+     */
+    interface Timer {
+        /**
+         * @return action which cancels the task if it hasn't run yet
+         */
+        Runnable schedule(Runnable task, long delayMillis);
+    }
+
+    static final Timer SHARED_TIMER = new Timer() {
+
+        @Override
+        public Runnable schedule(Runnable task, long delayMillis) {
+            final ScheduledFuture<?> future = getExecutor().schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+            return new Runnable() {
+
+                @Override
+                public void run() {
+                    future.cancel(false);
+                }
+            };
+        }
+    };
+
+    private static ScheduledExecutorService executor;
+
+    private final ConcurrentHashMap<String, Task> tasks = new ConcurrentHashMap<String, Task>();
+
+    private final Action action;
+
+    private final Timer timer;
+
+    CastDiscoveryScheduler(Action action) {
+        this(action, SHARED_TIMER);
+    }
+
+    CastDiscoveryScheduler(Action action, Timer timer) {
+        this.action = action;
+        this.timer = timer;
+    }
+
+    /**
+     * Runs the action for the key after the delay, unless the key is cancelled or scheduled
+     * again before that.
+     */
+    void schedule(String key, long delayMillis) {
+        Task task = new Task(key);
+        Task previous = tasks.put(key, task);
+        if (previous != null) {
+            previous.cancel();
+        }
+        task.canceller = timer.schedule(task, delayMillis);
+    }
+
+    /**
+     * Cancels the pending action for the key. If the action is running, waits until it's done,
+     * so the caller sees its result.
+     *
+     * @return true if there was a pending action
+     */
+    boolean cancel(String key) {
+        Task task;
+        synchronized (this) {
+            task = tasks.remove(key);
+        }
+        if (task == null) {
+            return false;
+        }
+        task.cancel();
+        return true;
+    }
+
+    boolean isScheduled(String key) {
+        return tasks.containsKey(key);
+    }
+
+    void cancelAll() {
+        for (String key : tasks.keySet()) {
+            cancel(key);
+        }
+    }
+
+    static synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "CastDiscoveryScheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private class Task implements Runnable {
+        final String key;
+        volatile Runnable canceller;
+
+        Task(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            // the task could be cancelled or replaced while it was waiting for the executor
+            synchronized (CastDiscoveryScheduler.this) {
+                if (tasks.remove(key, this)) {
+                    action.run(key);
+                }
+            }
+        }
+
+        void cancel() {
+            Runnable canceller = this.canceller;
+            if (canceller != null) {
+                canceller.run();
+            }
+        }
+    }
+}
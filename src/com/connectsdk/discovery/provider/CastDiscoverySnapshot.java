@@ -0,0 +1,47 @@
+/*
+ * CastDiscoverySnapshot
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.discovery.provider;
+
+import com.connectsdk.service.config.ServiceDescription;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable list of services found by CastDiscoveryProvider at a version. Pass the version to
+ * CastDiscoveryProvider.getChangesSince() to get later changes.
+ */
+public class CastDiscoverySnapshot {
+    private final long version;
+    private final List<ServiceDescription> services;
+
+    CastDiscoverySnapshot(long version, List<ServiceDescription> services) {
+        this.version = version;
+        this.services = Collections.unmodifiableList(services);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<ServiceDescription> getServices() {
+        return services;
+    }
+}
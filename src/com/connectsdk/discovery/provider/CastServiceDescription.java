@@ -0,0 +1,54 @@
+/*
+ * CastServiceDescription
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.discovery.provider;
+
+import com.connectsdk.service.config.ServiceDescription;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ServiceDescription of a Cast device which also records the receiver applications the device
+ * can run, out of the application IDs set in CastService.
+ */
+public class CastServiceDescription extends ServiceDescription {
+
+    private volatile List<String> applicationIDs = Collections.emptyList();
+
+    public CastServiceDescription(String serviceFilter, String UUID, String ipAddress) {
+        super(serviceFilter, UUID, ipAddress);
+    }
+
+    /**
+     * Returns the application IDs supported by the device, in the order they were set in
+     * CastService. The list is empty if the device hasn't been seen by MediaRouter yet.
+     */
+    public List<String> getApplicationIDs() {
+        return applicationIDs;
+    }
+
+    public boolean supportsApplication(String applicationID) {
+        return applicationIDs.contains(applicationID);
+    }
+
+    void setApplicationIDs(List<String> applicationIDs) {
+        this.applicationIDs = applicationIDs;
+    }
+}
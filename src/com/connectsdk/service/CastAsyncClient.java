@@ -0,0 +1,127 @@
+/*
+ * CastAsyncClient
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import com.connectsdk.service.command.ServiceCommandError;
+import com.google.android.gms.cast.Cast.ApplicationConnectionResult;
+import com.google.android.gms.cast.LaunchOptions;
+import com.google.android.gms.cast.RemoteMediaPlayer;
+import com.google.android.gms.cast.RemoteMediaPlayer.MediaChannelResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+/**
+ * CastClient commands as futures. A command fails with the receiver status if it isn't
+ * successful, or with the given message if the request can't be sent. Cancelling the future
+ * cancels the pending request.
+ */
+class CastAsyncClient {
+
+    private final CastService.CastClient client;
+    private final GoogleApiClient apiClient;
+
+    CastAsyncClient(CastService.CastClient client, GoogleApiClient apiClient) {
+        this.client = client;
+        this.apiClient = apiClient;
+    }
+
+    CastFuture<ApplicationConnectionResult> launchApplication(String appId, LaunchOptions options) {
+        try {
+            return fromPendingResult(client.launchApplication(apiClient, appId, options), "Unable to launch");
+        } catch (Exception e) {
+            return CastFuture.failed(new ServiceCommandError(0, "Unable to launch", null));
+        }
+    }
+
+    CastFuture<ApplicationConnectionResult> joinApplication() {
+        try {
+            return fromPendingResult(client.joinApplication(apiClient), "Unable to join");
+        } catch (Exception e) {
+            return CastFuture.failed(new ServiceCommandError(0, "Unable to join", null));
+        }
+    }
+
+    CastFuture<ApplicationConnectionResult> joinApplication(String appId) {
+        try {
+            return fromPendingResult(client.joinApplication(apiClient, appId), "Unable to join");
+        } catch (Exception e) {
+            return CastFuture.failed(new ServiceCommandError(0, "Unable to join", null));
+        }
+    }
+
+    CastFuture<Status> stopApplication() {
+        try {
+            return fromPendingResult(client.stopApplication(apiClient), "Unable to stop");
+        } catch (Exception e) {
+            return CastFuture.failed(new ServiceCommandError(0, "Unable to stop", null));
+        }
+    }
+
+    CastFuture<Status> stopApplication(String sessionId) {
+        try {
+            return fromPendingResult(client.stopApplication(apiClient, sessionId), "Unable to stop");
+        } catch (Exception e) {
+            return CastFuture.failed(new ServiceCommandError(0, "Unable to stop", null));
+        }
+    }
+
+    CastFuture<MediaChannelResult> requestStatus(RemoteMediaPlayer mediaPlayer) {
+        try {
+            return fromPendingResult(mediaPlayer.requestStatus(apiClient),
+                    "There is no media currently available");
+        } catch (Exception e) {
+            return CastFuture.failed(new ServiceCommandError(0, "There is no media currently available", null));
+        }
+    }
+
+    static <R extends Result> CastFuture<R> fromPendingResult(final PendingResult<R> pendingResult,
+                                                               String errorMessage) {
+        final CastFuture<R> future = new CastFuture<R>();
+        if (pendingResult == null) {
+            future.fail(new ServiceCommandError(0, errorMessage, null));
+            return future;
+        }
+
+        future.onCancel(new Runnable() {
+
+            @Override
+            public void run() {
+                pendingResult.cancel();
+            }
+        });
+
+        pendingResult.setResultCallback(new ResultCallback<R>() {
+
+            @Override
+            public void onResult(R result) {
+                Status status = result.getStatus();
+                if (status.isSuccess()) {
+                    future.complete(result);
+                } else {
+                    future.fail(new ServiceCommandError(status.getStatusCode(), status.getStatusMessage(), status));
+                }
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * CastCommandMetrics
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import com.connectsdk.core.Util;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histograms of CastService commands. Every command is split into three phases:
+ * waiting for the connection (QUEUE), the requests to the Cast device (ROUND_TRIP) and the
+ * delay of the result on the UI thread (DELIVERY).
+ *
+ * Recording is off by default. When it's off, {@link #start(Command)} returns a shared timer
+ * which does nothing, so the commands don't allocate or read the clock.
+ */
+public class CastCommandMetrics {
+
+    public enum Command {
+        PLAY,
+        PAUSE,
+        STOP,
+        SEEK,
+        NEXT,
+        PREVIOUS,
+        SET_VOLUME,
+        SET_MUTE,
+        PLAY_MEDIA,
+        CLOSE_MEDIA,
+        LAUNCH_WEB_APP,
+        JOIN_WEB_APP
+    }
+
+    public enum Phase {
+        QUEUE,
+        ROUND_TRIP,
+        DELIVERY
+    }
+
+    /**
+     * Upper bounds of the histogram buckets in microseconds. The last bucket has no upper
+     * bound.
+     */
+    public static final long[] BUCKET_BOUNDS = {
+            100, 250, 500,
+            1000, 2500, 5000,
+            10000, 25000, 50000,
+            100000, 250000, 500000,
+            1000000, 2500000, 5000000, 10000000
+    };
+
+    private static final long NANOS_PER_MICRO = 1000;
+
+    private static final Timer NO_TIMER = new Timer(null);
+
+    private final CommandStats[] commands;
+
+    private volatile boolean enabled;
+
+    static class Histogram {
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong totalTime = new AtomicLong();
+        final AtomicLong maxTime = new AtomicLong();
+
+        void record(long micros) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS.length && micros > BUCKET_BOUNDS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            totalTime.addAndGet(micros);
+
+            long max = maxTime.get();
+            while (micros > max && !maxTime.compareAndSet(max, micros)) {
+                max = maxTime.get();
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            totalTime.set(0);
+            maxTime.set(0);
+        }
+    }
+
+    static class CommandStats {
+        final Command command;
+        final Histogram[] phases = new Histogram[Phase.values().length];
+        final AtomicLong successes = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+
+        CommandStats(Command command) {
+            this.command = command;
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new Histogram();
+            }
+        }
+
+        void reset() {
+            for (Histogram histogram : phases) {
+                histogram.reset();
+            }
+            successes.set(0);
+            failures.set(0);
+        }
+    }
+
+    /**
+     * Measures one command. Call {@link #onConnected()} when the command leaves the connection
+     * queue and {@link #onResponse(boolean)} right before the result is posted to the listener.
+     * Every timer measures one command only.
+     */
+    public static class Timer implements Runnable {
+        private final CommandStats stats;
+        private final long startTime;
+        private volatile long connectedTime;
+        private volatile long responseTime;
+
+        Timer(CommandStats stats) {
+            this.stats = stats;
+            this.startTime = stats != null ? System.nanoTime() : 0;
+        }
+
+        public void onConnected() {
+            if (stats != null && connectedTime == 0) {
+                connectedTime = System.nanoTime();
+            }
+        }
+
+        public void onResponse(boolean success) {
+            if (stats == null || responseTime != 0) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            long connected = connectedTime != 0 ? connectedTime : now;
+            responseTime = now;
+
+            (success ? stats.successes : stats.failures).incrementAndGet();
+            stats.phases[Phase.QUEUE.ordinal()].record((connected - startTime) / NANOS_PER_MICRO);
+            stats.phases[Phase.ROUND_TRIP.ordinal()].record((now - connected) / NANOS_PER_MICRO);
+
+            // the UI thread runs posted tasks in order, so this runs together with the result
+            Util.runOnUI(this);
+        }
+
+        @Override
+        public void run() {
+            stats.phases[Phase.DELIVERY.ordinal()].record(
+                    (System.nanoTime() - responseTime) / NANOS_PER_MICRO);
+        }
+    }
+
+    /**
+     * Read-only copy of a histogram. Times are in microseconds.
+     */
+    public static class HistogramSnapshot {
+        public final long count;
+        public final long totalTime;
+        public final long maxTime;
+        public final long[] buckets;
+
+        HistogramSnapshot(Histogram histogram) {
+            buckets = new long[histogram.buckets.length()];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = histogram.buckets.get(i);
+            }
+            count = histogram.count.get();
+            totalTime = histogram.totalTime.get();
+            maxTime = histogram.maxTime.get();
+        }
+
+        public long getMean() {
+            return count == 0 ? 0 : totalTime / count;
+        }
+
+        /**
+         * Returns the upper bound of the bucket containing the percentile, or the maximum for
+         * the last bucket.
+         *
+         * @param percentile value between 0 and 100
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            for (long bucketCount : buckets) {
+                total += bucketCount;
+            }
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(BUCKET_BOUNDS[i], maxTime);
+                }
+            }
+            return maxTime;
+        }
+
+        public JSONObject toJSONObject() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("count", count);
+            json.put("mean", getMean());
+            json.put("p50", getPercentile(50));
+            json.put("p90", getPercentile(90));
+            json.put("p99", getPercentile(99));
+            json.put("max", maxTime);
+
+            JSONArray bucketArray = new JSONArray();
+            for (long bucketCount : buckets) {
+                bucketArray.put(bucketCount);
+            }
+            json.put("buckets", bucketArray);
+            return json;
+        }
+    }
+
+    public static class CommandSnapshot {
+        public final Command command;
+        public final long successes;
+        public final long failures;
+        public final HistogramSnapshot queue;
+        public final HistogramSnapshot roundTrip;
+        public final HistogramSnapshot delivery;
+
+        CommandSnapshot(CommandStats stats) {
+            command = stats.command;
+            successes = stats.successes.get();
+            failures = stats.failures.get();
+            queue = new HistogramSnapshot(stats.phases[Phase.QUEUE.ordinal()]);
+            roundTrip = new HistogramSnapshot(stats.phases[Phase.ROUND_TRIP.ordinal()]);
+            delivery = new HistogramSnapshot(stats.phases[Phase.DELIVERY.ordinal()]);
+        }
+
+        public HistogramSnapshot getPhase(Phase phase) {
+            switch (phase) {
+                case QUEUE:
+                    return queue;
+                case ROUND_TRIP:
+                    return roundTrip;
+                default:
+                    return delivery;
+            }
+        }
+
+        public JSONObject toJSONObject() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("command", command.name());
+            json.put("successes", successes);
+            json.put("failures", failures);
+            json.put("queue", queue.toJSONObject());
+            json.put("roundTrip", roundTrip.toJSONObject());
+            json.put("delivery", delivery.toJSONObject());
+            return json;
+        }
+    }
+
+    public static class Snapshot {
+        public final List<CommandSnapshot> commands;
+
+        Snapshot(List<CommandSnapshot> commands) {
+            this.commands = Collections.unmodifiableList(commands);
+        }
+
+        public CommandSnapshot get(Command command) {
+            return commands.get(command.ordinal());
+        }
+
+        public JSONObject toJSONObject() {
+            JSONObject json = new JSONObject();
+            try {
+                JSONArray commandArray = new JSONArray();
+                for (CommandSnapshot command : commands) {
+                    commandArray.put(command.toJSONObject());
+                }
+                json.put("commands", commandArray);
+            } catch (JSONException e) {
+                // values are never null or NaN
+            }
+            return json;
+        }
+    }
+
+    CastCommandMetrics() {
+        Command[] values = Command.values();
+        commands = new CommandStats[values.length];
+        for (int i = 0; i < values.length; i++) {
+            commands[i] = new CommandStats(values[i]);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts measuring a command. The returned timer does nothing if recording is off.
+     */
+    public Timer start(Command command) {
+        if (!enabled) {
+            return NO_TIMER;
+        }
+        return new Timer(commands[command.ordinal()]);
+    }
+
+    public void reset() {
+        for (CommandStats stats : commands) {
+            stats.reset();
+        }
+    }
+
+    public Snapshot snapshot() {
+        List<CommandSnapshot> snapshots = new ArrayList<CommandSnapshot>(commands.length);
+        for (CommandStats stats : commands) {
+            snapshots.add(new CommandSnapshot(stats));
+        }
+        return new Snapshot(snapshots);
+    }
+}
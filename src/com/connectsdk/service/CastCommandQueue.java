@@ -0,0 +1,319 @@
+/*
+ * CastCommandQueue
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.connectsdk.core.Util;
+import com.connectsdk.service.capability.listeners.ResponseListener;
+import com.connectsdk.service.command.ServiceCommandError;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * FIFO of commands which wait for CastService to connect. The queue is bounded: when it's full
+ * the oldest command is dropped, since the newest user action matters most. Every command has
+ * a deadline and fails with a timeout error if the service doesn't connect before it.
+ */
+public class CastCommandQueue {
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    public static final long DEFAULT_TIMEOUT = 15000;
+
+    public static final int TIMEOUT_ERROR_CODE = 408;
+
+    public static final int DROPPED_ERROR_CODE = 503;
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<Entry>();
+
+    private Handler handler;
+
+    private final Runnable expireRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            expire();
+        }
+    };
+
+    // deadline the expiration is posted for, Long.MAX_VALUE if nothing is posted
+    private long scheduledDeadline = Long.MAX_VALUE;
+
+    private int capacity = DEFAULT_CAPACITY;
+    private long timeout = DEFAULT_TIMEOUT;
+
+    private int maxDepth;
+    private long executedCount;
+    private long expiredCount;
+    private long droppedCount;
+    private long totalWaitTime;
+    private long maxWaitTime;
+
+    private static class Entry {
+        final CastService.ConnectionListener command;
+        final ResponseListener<?> listener;
+        final long enqueueTime;
+        final long deadline;
+
+        Entry(CastService.ConnectionListener command, ResponseListener<?> listener,
+              long enqueueTime, long deadline) {
+            this.command = command;
+            this.listener = listener;
+            this.enqueueTime = enqueueTime;
+            this.deadline = deadline;
+        }
+    }
+
+    CastCommandQueue() {
+    }
+
+    /**
+     * Adds a command which runs when {@link #runAll()} is called. The listener gets an error if
+     * the command expires or is dropped, it can be null.
+     */
+    void add(CastService.ConnectionListener command, ResponseListener<?> listener) {
+        Entry dropped = null;
+        long now = currentTime();
+
+        synchronized (this) {
+            if (entries.size() >= capacity) {
+                dropped = entries.poll();
+                droppedCount++;
+            }
+
+            long deadline = now + timeout;
+            entries.add(new Entry(command, listener, now, deadline));
+            maxDepth = Math.max(maxDepth, entries.size());
+
+            // the timeout could be shortened, so the new entry can expire before the others
+            if (deadline < scheduledDeadline || dropped != null) {
+                scheduleExpiration(now);
+            }
+        }
+
+        if (dropped != null) {
+            Log.w(Util.T, "Command queue is full, dropping the oldest command");
+            fail(dropped, new ServiceCommandError(DROPPED_ERROR_CODE,
+                    "Command was dropped from the full queue", null));
+        }
+    }
+
+    /**
+     * Runs the queued commands in order. Commands which are past their deadline fail instead.
+     */
+    void runAll() {
+        while (true) {
+            Entry entry;
+            long now = currentTime();
+
+            synchronized (this) {
+                entry = entries.poll();
+                if (entry == null) {
+                    cancelExpiration();
+                    return;
+                }
+
+                if (now < entry.deadline) {
+                    long waitTime = now - entry.enqueueTime;
+                    executedCount++;
+                    totalWaitTime += waitTime;
+                    maxWaitTime = Math.max(maxWaitTime, waitTime);
+                } else {
+                    expiredCount++;
+                }
+            }
+
+            if (now < entry.deadline) {
+                entry.command.onConnected();
+            } else {
+                fail(entry, createTimeoutError());
+            }
+        }
+    }
+
+    /**
+     * Removes all commands, their listeners get the error.
+     */
+    void cancelAll(ServiceCommandError error) {
+        List<Entry> cancelled;
+
+        synchronized (this) {
+            cancelled = new ArrayList<Entry>(entries);
+            entries.clear();
+            cancelExpiration();
+        }
+
+        for (Entry entry : cancelled) {
+            fail(entry, error);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the maximum number of waiting commands, applies to new commands.
+     */
+    public synchronized void setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity should be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public synchronized long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets how long a command can wait for the connection, in milliseconds. Applies to new
+     * commands.
+     */
+    public synchronized void setTimeout(long timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Timeout should be positive");
+        }
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the highest number of commands which were waiting at once.
+     */
+    public synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public synchronized long getExecutedCount() {
+        return executedCount;
+    }
+
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Returns the average time executed commands waited in the queue, in milliseconds.
+     */
+    public synchronized long getAverageWaitTime() {
+        return executedCount == 0 ? 0 : totalWaitTime / executedCount;
+    }
+
+    public synchronized long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public synchronized void resetStats() {
+        maxDepth = entries.size();
+        executedCount = 0;
+        expiredCount = 0;
+        droppedCount = 0;
+        totalWaitTime = 0;
+        maxWaitTime = 0;
+    }
+
+    void expire() {
+        List<Entry> expired = new ArrayList<Entry>();
+        long now = currentTime();
+
+        synchronized (this) {
+            scheduledDeadline = Long.MAX_VALUE;
+            Iterator<Entry> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.deadline <= now) {
+                    iterator.remove();
+                    expired.add(entry);
+                }
+            }
+            expiredCount += expired.size();
+
+            if (!entries.isEmpty()) {
+                scheduleExpiration(now);
+            }
+        }
+
+        for (Entry entry : expired) {
+            fail(entry, createTimeoutError());
+        }
+    }
+
+    long currentTime() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    // should be called with the lock held
+    private void scheduleExpiration(long now) {
+        long deadline = Long.MAX_VALUE;
+        for (Entry entry : entries) {
+            deadline = Math.min(deadline, entry.deadline);
+        }
+
+        Handler handler = getHandler();
+        handler.removeCallbacks(expireRunnable);
+        handler.postDelayed(expireRunnable, Math.max(0, deadline - now));
+        scheduledDeadline = deadline;
+    }
+
+    // should be called with the lock held
+    private void cancelExpiration() {
+        if (handler != null) {
+            handler.removeCallbacks(expireRunnable);
+        }
+        scheduledDeadline = Long.MAX_VALUE;
+    }
+
+    private Handler getHandler() {
+        if (handler == null) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+        return handler;
+    }
+
+    private static ServiceCommandError createTimeoutError() {
+        return new ServiceCommandError(TIMEOUT_ERROR_CODE,
+                "Command timed out while waiting for connection", null);
+    }
+
+    private static void fail(Entry entry, ServiceCommandError error) {
+        if (entry.listener != null) {
+            Util.postError(entry.listener, error);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * CastEventDispatcher
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import com.connectsdk.core.Util;
+import com.connectsdk.service.capability.listeners.ResponseListener;
+import com.connectsdk.service.command.ServiceCommandError;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Delivers the results of one event to all its listeners with a single task on the UI
+ * thread, instead of posting a task per listener. Listeners are called in the order they were
+ * added. The time the UI thread spends on every event type is recorded.
+ */
+public class CastEventDispatcher {
+
+    public enum Event {
+        PLAY_STATE,
+        MEDIA_INFO,
+        VOLUME
+    }
+
+    private final AtomicLongArray eventCounts = new AtomicLongArray(Event.values().length);
+    private final AtomicLongArray deliveryCounts = new AtomicLongArray(Event.values().length);
+    private final AtomicLongArray mainThreadTimes = new AtomicLongArray(Event.values().length);
+    private final AtomicLongArray maxMainThreadTimes = new AtomicLongArray(Event.values().length);
+    private final AtomicLong postCount = new AtomicLong();
+
+    /**
+     * Deliveries of one event. Add the listeners and call {@link #post()} once.
+     */
+    public class Batch implements Runnable {
+        private final Event event;
+        private final ArrayList<ResponseListener<?>> listeners = new ArrayList<ResponseListener<?>>();
+        private final ArrayList<Object> values = new ArrayList<Object>();
+
+        Batch(Event event) {
+            this.event = event;
+        }
+
+        public void addSuccess(ResponseListener<?> listener, Object value) {
+            if (listener != null) {
+                listeners.add(listener);
+                values.add(value);
+            }
+        }
+
+        public void addError(ResponseListener<?> listener, ServiceCommandError error) {
+            if (listener != null) {
+                listeners.add(listener);
+                values.add(new Failure(error));
+            }
+        }
+
+        public int size() {
+            return listeners.size();
+        }
+
+        public void post() {
+            if (listeners.isEmpty()) {
+                return;
+            }
+            postCount.incrementAndGet();
+            Util.runOnUI(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            long start = System.nanoTime();
+
+            for (int i = 0; i < listeners.size(); i++) {
+                ResponseListener<Object> listener = (ResponseListener<Object>) listeners.get(i);
+                Object value = values.get(i);
+                if (value instanceof Failure) {
+                    listener.onError(((Failure) value).error);
+                } else {
+                    listener.onSuccess(value);
+                }
+            }
+
+            onDelivered(event, listeners.size(), System.nanoTime() - start);
+        }
+    }
+
+    private static class Failure {
+        final ServiceCommandError error;
+
+        Failure(ServiceCommandError error) {
+            this.error = error;
+        }
+    }
+
+    CastEventDispatcher() {
+    }
+
+    public Batch batch(Event event) {
+        return new Batch(event);
+    }
+
+    /**
+     * Returns how many events of the type were delivered.
+     */
+    public long getEventCount(Event event) {
+        return eventCounts.get(event.ordinal());
+    }
+
+    /**
+     * Returns how many listener calls the events of the type made.
+     */
+    public long getDeliveryCount(Event event) {
+        return deliveryCounts.get(event.ordinal());
+    }
+
+    /**
+     * Returns the total time the UI thread spent in the listeners of the type, in nanoseconds.
+     */
+    public long getMainThreadTime(Event event) {
+        return mainThreadTimes.get(event.ordinal());
+    }
+
+    /**
+     * Returns the longest time the UI thread spent on one event of the type, in nanoseconds.
+     */
+    public long getMaxMainThreadTime(Event event) {
+        return maxMainThreadTimes.get(event.ordinal());
+    }
+
+    /**
+     * Returns how many tasks were posted to the UI thread.
+     */
+    public long getPostCount() {
+        return postCount.get();
+    }
+
+    public void resetStats() {
+        for (int i = 0; i < eventCounts.length(); i++) {
+            eventCounts.set(i, 0);
+            deliveryCounts.set(i, 0);
+            mainThreadTimes.set(i, 0);
+            maxMainThreadTimes.set(i, 0);
+        }
+        postCount.set(0);
+    }
+
+    private void onDelivered(Event event, int deliveries, long time) {
+        int index = event.ordinal();
+        eventCounts.incrementAndGet(index);
+        deliveryCounts.addAndGet(index, deliveries);
+        mainThreadTimes.addAndGet(index, time);
+
+        long max = maxMainThreadTimes.get(index);
+        while (time > max && !maxMainThreadTimes.compareAndSet(index, max, time)) {
+            max = maxMainThreadTimes.get(index);
+        }
+    }
+}
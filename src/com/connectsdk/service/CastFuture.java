@@ -0,0 +1,567 @@
+/*
+ * CastFuture
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import com.connectsdk.core.Util;
+import com.connectsdk.service.capability.listeners.ResponseListener;
+import com.connectsdk.service.command.ServiceCommandError;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result of an asynchronous Cast command. Futures can be chained with {@link #then}, {@link #map}
+ * and {@link #recover}, limited with {@link #withTimeout} and cancelled. Cancelling a future
+ * also cancels the command or the chain step it's waiting for.
+ *
+ * Callbacks run on the thread which completes the future, unless an executor is given, e.g.
+ * {@link #UI_EXECUTOR}.
+ */
+public class CastFuture<T> implements Future<T> {
+
+    public static final int TIMEOUT_ERROR_CODE = 408;
+
+    public static final int CANCELLED_ERROR_CODE = 499;
+
+    public interface Callback<T> {
+        void onSuccess(T result);
+        void onFailure(ServiceCommandError error);
+    }
+
+    public interface Function<A, B> {
+        B apply(A value);
+    }
+
+    public interface AsyncFunction<A, B> {
+        CastFuture<B> apply(A value);
+    }
+
+    /**
+     * Runs callbacks on the thread which completes the future.
+     */
+    public static final Executor DIRECT_EXECUTOR = new Executor() {
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * Runs callbacks on the UI thread.
+     */
+    public static final Executor UI_EXECUTOR = new Executor() {
+
+        @Override
+        public void execute(Runnable command) {
+            Util.runOnUI(command);
+        }
+    };
+
+    private static ScheduledExecutorService timeoutExecutor;
+
+    private enum State {
+        PENDING,
+        SUCCEEDED,
+        FAILED,
+        CANCELLED
+    }
+
+    private State state = State.PENDING;
+    private T value;
+    private ServiceCommandError error;
+
+    private List<Runnable> callbacks = new ArrayList<Runnable>();
+    private List<Runnable> cancelHooks = new ArrayList<Runnable>();
+
+    public CastFuture() {
+    }
+
+    public static <T> CastFuture<T> succeeded(T value) {
+        CastFuture<T> future = new CastFuture<T>();
+        future.complete(value);
+        return future;
+    }
+
+    public static <T> CastFuture<T> failed(ServiceCommandError error) {
+        CastFuture<T> future = new CastFuture<T>();
+        future.fail(error);
+        return future;
+    }
+
+    /**
+     * Returns a future of all results in the order of the given futures. The futures run in
+     * parallel; the first failure fails the result and cancels the others.
+     */
+    public static <T> CastFuture<List<T>> all(final List<CastFuture<T>> futures) {
+        final CastFuture<List<T>> result = new CastFuture<List<T>>();
+        final List<T> values = new ArrayList<T>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            values.add(null);
+        }
+
+        if (futures.isEmpty()) {
+            result.complete(values);
+            return result;
+        }
+
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            final int index = i;
+            futures.get(i).addCallback(new Callback<T>() {
+
+                @Override
+                public void onSuccess(T value) {
+                    synchronized (values) {
+                        values.set(index, value);
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        result.complete(values);
+                    }
+                }
+
+                @Override
+                public void onFailure(ServiceCommandError error) {
+                    result.fail(error);
+                }
+            });
+        }
+
+        result.addCallback(new Callback<List<T>>() {
+
+            @Override
+            public void onSuccess(List<T> value) {
+            }
+
+            @Override
+            public void onFailure(ServiceCommandError error) {
+                for (CastFuture<T> future : futures) {
+                    future.cancel(false);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Completes the future with the value.
+     *
+     * @return false if the future was already done
+     */
+    public boolean complete(T value) {
+        List<Runnable> pending;
+        synchronized (this) {
+            if (state != State.PENDING) {
+                return false;
+            }
+            this.value = value;
+            state = State.SUCCEEDED;
+            pending = release();
+        }
+        runAll(pending);
+        return true;
+    }
+
+    /**
+     * Fails the future with the error.
+     *
+     * @return false if the future was already done
+     */
+    public boolean fail(ServiceCommandError error) {
+        return finish(State.FAILED, error);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        List<Runnable> hooks;
+        synchronized (this) {
+            hooks = cancelHooks;
+        }
+        if (!finish(State.CANCELLED, new ServiceCommandError(CANCELLED_ERROR_CODE, "Cancelled", null))) {
+            return false;
+        }
+        runAll(hooks);
+        return true;
+    }
+
+    /**
+     * Runs the action when the future is cancelled, e.g. to cancel the underlying request.
+     */
+    void onCancel(Runnable action) {
+        synchronized (this) {
+            if (state == State.PENDING) {
+                cancelHooks.add(action);
+                return;
+            }
+            if (state != State.CANCELLED) {
+                return;
+            }
+        }
+        action.run();
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == State.CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != State.PENDING;
+    }
+
+    public synchronized boolean isSuccess() {
+        return state == State.SUCCEEDED;
+    }
+
+    /**
+     * Returns the error of a failed or cancelled future, or null.
+     */
+    public synchronized ServiceCommandError getError() {
+        return error;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (state == State.PENDING) {
+            wait();
+        }
+        return getValue();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (state == State.PENDING) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return getValue();
+    }
+
+    public CastFuture<T> addCallback(Callback<? super T> callback) {
+        return addCallback(callback, DIRECT_EXECUTOR);
+    }
+
+    public CastFuture<T> addCallback(final Callback<? super T> callback, final Executor executor) {
+        final Runnable notification = new Runnable() {
+
+            @Override
+            public void run() {
+                T result;
+                ServiceCommandError failure;
+                synchronized (CastFuture.this) {
+                    result = value;
+                    failure = error;
+                }
+                if (failure == null) {
+                    callback.onSuccess(result);
+                } else {
+                    callback.onFailure(failure);
+                }
+            }
+        };
+        Runnable dispatch = new Runnable() {
+
+            @Override
+            public void run() {
+                executor.execute(notification);
+            }
+        };
+
+        synchronized (this) {
+            if (state == State.PENDING) {
+                callbacks.add(dispatch);
+                return this;
+            }
+        }
+        dispatch.run();
+        return this;
+    }
+
+    /**
+     * Posts the result to the listener on the UI thread, like the other Connect SDK commands.
+     */
+    public CastFuture<T> addListener(final ResponseListener<? super T> listener) {
+        return addCallback(new Callback<T>() {
+
+            @Override
+            public void onSuccess(T result) {
+                Util.postSuccess(listener, result);
+            }
+
+            @Override
+            public void onFailure(ServiceCommandError error) {
+                Util.postError(listener, error);
+            }
+        });
+    }
+
+    public <R> CastFuture<R> map(Function<? super T, ? extends R> function) {
+        return map(function, DIRECT_EXECUTOR);
+    }
+
+    public <R> CastFuture<R> map(final Function<? super T, ? extends R> function, Executor executor) {
+        final CastFuture<R> result = derive();
+        addCallback(new Callback<T>() {
+
+            @Override
+            public void onSuccess(T value) {
+                R mapped;
+                try {
+                    mapped = function.apply(value);
+                } catch (RuntimeException e) {
+                    result.fail(createStepError(e));
+                    return;
+                }
+                result.complete(mapped);
+            }
+
+            @Override
+            public void onFailure(ServiceCommandError error) {
+                result.fail(error);
+            }
+        }, executor);
+        return result;
+    }
+
+    /**
+     * Starts the next step with the result of this one.
+     */
+    public <R> CastFuture<R> then(AsyncFunction<? super T, R> function) {
+        return then(function, DIRECT_EXECUTOR);
+    }
+
+    public <R> CastFuture<R> then(final AsyncFunction<? super T, R> function, Executor executor) {
+        final CastFuture<R> result = derive();
+        addCallback(new Callback<T>() {
+
+            @Override
+            public void onSuccess(T value) {
+                if (result.isDone()) {
+                    return;
+                }
+                CastFuture<R> next;
+                try {
+                    next = function.apply(value);
+                } catch (RuntimeException e) {
+                    result.fail(createStepError(e));
+                    return;
+                }
+                result.follow(next);
+            }
+
+            @Override
+            public void onFailure(ServiceCommandError error) {
+                result.fail(error);
+            }
+        }, executor);
+        return result;
+    }
+
+    /**
+     * Continues with another step if this one fails. Cancellation isn't recovered.
+     */
+    public CastFuture<T> recover(AsyncFunction<ServiceCommandError, T> function) {
+        return recover(function, DIRECT_EXECUTOR);
+    }
+
+    public CastFuture<T> recover(final AsyncFunction<ServiceCommandError, T> function, Executor executor) {
+        final CastFuture<T> result = derive();
+        addCallback(new Callback<T>() {
+
+            @Override
+            public void onSuccess(T value) {
+                result.complete(value);
+            }
+
+            @Override
+            public void onFailure(ServiceCommandError error) {
+                if (isCancelled()) {
+                    result.fail(error);
+                } else if (!result.isDone()) {
+                    CastFuture<T> next;
+                    try {
+                        next = function.apply(error);
+                    } catch (RuntimeException e) {
+                        result.fail(createStepError(e));
+                        return;
+                    }
+                    result.follow(next);
+                }
+            }
+        }, executor);
+        return result;
+    }
+
+    /**
+     * Returns a future which fails with TIMEOUT_ERROR_CODE if this one isn't done in time. This
+     * future is cancelled then, together with the pending step.
+     */
+    public CastFuture<T> withTimeout(long timeoutMillis) {
+        if (timeoutMillis <= 0 || isDone()) {
+            return this;
+        }
+
+        final CastFuture<T> result = derive();
+        final ScheduledFuture<?> timeout = getTimeoutExecutor().schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                if (result.fail(new ServiceCommandError(TIMEOUT_ERROR_CODE, "Command timed out", null))) {
+                    cancel(false);
+                }
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        addCallback(new Callback<T>() {
+
+            @Override
+            public void onSuccess(T value) {
+                timeout.cancel(false);
+                result.complete(value);
+            }
+
+            @Override
+            public void onFailure(ServiceCommandError error) {
+                timeout.cancel(false);
+                result.fail(error);
+            }
+        });
+        return result;
+    }
+
+    // a function which throws fails the derived future instead of leaving it pending
+    private static ServiceCommandError createStepError(RuntimeException e) {
+        return new ServiceCommandError(0, e.getMessage(), e);
+    }
+
+    // a future which cancels this one when it's cancelled
+    private <R> CastFuture<R> derive() {
+        CastFuture<R> result = new CastFuture<R>();
+        result.onCancel(new Runnable() {
+
+            @Override
+            public void run() {
+                cancel(false);
+            }
+        });
+        return result;
+    }
+
+    // completes this future with the result of the other one
+    void follow(final CastFuture<T> other) {
+        if (other == null) {
+            fail(new ServiceCommandError(0, "No next step", null));
+            return;
+        }
+        onCancel(new Runnable() {
+
+            @Override
+            public void run() {
+                other.cancel(false);
+            }
+        });
+        other.addCallback(new Callback<T>() {
+
+            @Override
+            public void onSuccess(T result) {
+                complete(result);
+            }
+
+            @Override
+            public void onFailure(ServiceCommandError error) {
+                fail(error);
+            }
+        });
+    }
+
+    private boolean finish(State state, ServiceCommandError error) {
+        List<Runnable> pending;
+        synchronized (this) {
+            if (this.state != State.PENDING) {
+                return false;
+            }
+            this.error = error;
+            this.state = state;
+            pending = release();
+        }
+        runAll(pending);
+        return true;
+    }
+
+    // must be called with the lock held
+    private List<Runnable> release() {
+        List<Runnable> pending = callbacks;
+        callbacks = null;
+        cancelHooks = null;
+        notifyAll();
+        return pending;
+    }
+
+    private static void runAll(List<Runnable> actions) {
+        if (actions == null) {
+            return;
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    private T getValue() throws ExecutionException {
+        if (state == State.CANCELLED) {
+            throw new CancellationException();
+        }
+        if (state == State.FAILED) {
+            throw new ExecutionException(error);
+        }
+        return value;
+    }
+
+    static synchronized ScheduledExecutorService getTimeoutExecutor() {
+        if (timeoutExecutor == null) {
+            timeoutExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "CastFuture");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return timeoutExecutor;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * CastPlayStateSubscription
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.connectsdk.service.capability.MediaControl.PlayStateListener;
+import com.connectsdk.service.capability.MediaControl.PlayStateStatus;
+import com.connectsdk.service.command.URLServiceSubscription;
+
+import java.util.List;
+
+/**
+ * Play state subscription which delivers at most one state per interval. A state which comes
+ * during the interval replaces the waiting one and is delivered when the interval is over,
+ * so listeners always end up with the current state.
+ */
+class CastPlayStateSubscription extends URLServiceSubscription<PlayStateListener> {
+
+    private final CastEventDispatcher dispatcher;
+
+    private final long minInterval;
+
+    private Handler handler;
+
+    private final Runnable flush = new Runnable() {
+
+        @Override
+        public void run() {
+            PlayStateStatus status;
+            synchronized (CastPlayStateSubscription.this) {
+                scheduled = false;
+                if (unsubscribed) {
+                    return;
+                }
+                status = pendingStatus;
+                pendingStatus = null;
+                if (status == null || status == lastStatus) {
+                    return;
+                }
+                lastStatus = status;
+                lastDeliveryTime = currentTime();
+            }
+            post(status);
+        }
+    };
+
+    private PlayStateStatus lastStatus;
+    private PlayStateStatus pendingStatus;
+    private long lastDeliveryTime = -1;
+    private boolean scheduled;
+    private boolean unsubscribed;
+
+    CastPlayStateSubscription(DeviceService service, CastEventDispatcher dispatcher, long minInterval) {
+        super(service, CastService.PLAY_STATE, null, null);
+        this.dispatcher = dispatcher;
+        this.minInterval = minInterval;
+    }
+
+    long getMinInterval() {
+        return minInterval;
+    }
+
+    void deliver(PlayStateStatus status) {
+        synchronized (this) {
+            if (unsubscribed) {
+                return;
+            }
+            if (scheduled) {
+                pendingStatus = status;
+                return;
+            }
+            if (status == lastStatus) {
+                return;
+            }
+
+            long wait = lastDeliveryTime < 0 ? 0 : lastDeliveryTime + minInterval - currentTime();
+            if (wait > 0) {
+                pendingStatus = status;
+                scheduled = true;
+                getHandler().postDelayed(flush, wait);
+                return;
+            }
+
+            lastStatus = status;
+            lastDeliveryTime = currentTime();
+        }
+        post(status);
+    }
+
+    /**
+     * Forgets the delivered state, e.g. after the receiver application is closed and the
+     * listeners got Idle from other source.
+     */
+    synchronized void reset() {
+        lastStatus = null;
+    }
+
+    /**
+     * Cancels the waiting state, so the listeners don't get it after they unsubscribed.
+     */
+    @Override
+    public void unsubscribe() {
+        synchronized (this) {
+            unsubscribed = true;
+            pendingStatus = null;
+            if (scheduled) {
+                scheduled = false;
+                getHandler().removeCallbacks(flush);
+            }
+        }
+        super.unsubscribe();
+    }
+
+    long currentTime() {
+        return SystemClock.uptimeMillis();
+    }
+
+    private void post(PlayStateStatus status) {
+        List<PlayStateListener> listeners = getListeners();
+        CastEventDispatcher.Batch batch = dispatcher.batch(CastEventDispatcher.Event.PLAY_STATE);
+        for (int i = 0; i < listeners.size(); i++) {
+            batch.addSuccess(listeners.get(i), status);
+        }
+        batch.post();
+    }
+
+    private Handler getHandler() {
+        if (handler == null) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+        return handler;
+    }
+}
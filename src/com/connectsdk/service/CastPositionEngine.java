@@ -0,0 +1,109 @@
+/*
+ * CastPositionEngine
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import android.os.SystemClock;
+
+import com.google.android.gms.cast.MediaStatus;
+
+/**
+ * Estimates the stream position between status updates of the receiver. Every update sets
+ * an anchor (position, playback rate and player state at the local time of the update); while
+ * the player is playing, the position moves from the anchor at the playback rate. The next
+ * update replaces the anchor, which corrects the drift of the estimate.
+ */
+class CastPositionEngine {
+
+    private boolean known;
+    private long anchorPosition;
+    private long anchorTime;
+    private double playbackRate;
+    private boolean playing;
+    private long duration;
+    private long lastDrift;
+
+    /**
+     * Sets a new anchor from the status of the receiver.
+     *
+     * @param duration stream duration in milliseconds, 0 or less if unknown
+     */
+    synchronized void update(long position, double playbackRate, int playerState, long duration) {
+        long now = currentTime();
+        if (known && playing) {
+            lastDrift = estimate(now) - position;
+        }
+
+        this.known = true;
+        this.anchorPosition = position;
+        this.anchorTime = now;
+        this.playbackRate = playbackRate;
+        this.playing = playerState == MediaStatus.PLAYER_STATE_PLAYING;
+        this.duration = duration;
+    }
+
+    synchronized boolean hasPosition() {
+        return known;
+    }
+
+    synchronized boolean isPlaying() {
+        return known && playing;
+    }
+
+    /**
+     * Returns the estimated position in milliseconds.
+     */
+    synchronized long getPosition() {
+        return estimate(currentTime());
+    }
+
+    /**
+     * Returns the difference between the estimate and the position reported by the last
+     * status update, in milliseconds. It's positive if the estimate was ahead.
+     */
+    synchronized long getLastDrift() {
+        return lastDrift;
+    }
+
+    synchronized void reset() {
+        known = false;
+        playing = false;
+        lastDrift = 0;
+    }
+
+    long currentTime() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    // should be called with the lock held
+    private long estimate(long now) {
+        if (!known) {
+            return 0;
+        }
+        if (!playing) {
+            return anchorPosition;
+        }
+
+        long position = anchorPosition + (long) ((now - anchorTime) * playbackRate);
+        if (duration > 0 && position > duration) {
+            return duration;
+        }
+        return Math.max(0, position);
+    }
+}
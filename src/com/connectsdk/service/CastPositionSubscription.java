@@ -0,0 +1,89 @@
+/*
+ * CastPositionSubscription
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.connectsdk.service.capability.MediaControl.PositionListener;
+import com.connectsdk.service.command.URLServiceSubscription;
+
+import java.util.List;
+
+/**
+ * Pushes the position estimated by CastPositionEngine to its listeners on the UI thread. It
+ * ticks at the requested interval while the media is playing only; when the player is paused
+ * or buffering, the listeners get the position once after every status update.
+ */
+class CastPositionSubscription extends URLServiceSubscription<PositionListener> {
+
+    private final CastPositionEngine engine;
+
+    private final long interval;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private volatile boolean active = true;
+
+    private final Runnable tick = new Runnable() {
+
+        @Override
+        public void run() {
+            if (!active || !engine.hasPosition()) {
+                return;
+            }
+
+            Long position = engine.getPosition();
+            List<PositionListener> listeners = getListeners();
+            for (int i = 0; i < listeners.size(); i++) {
+                listeners.get(i).onSuccess(position);
+            }
+
+            if (engine.isPlaying()) {
+                handler.postDelayed(this, interval);
+            }
+        }
+    };
+
+    CastPositionSubscription(DeviceService service, CastPositionEngine engine, long interval) {
+        super(service, CastService.CAST_SERVICE_POSITION_SUBSCRIPTION_NAME, null, null);
+        this.engine = engine;
+        this.interval = interval;
+    }
+
+    long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Delivers the new position right away and restarts the ticks from it.
+     */
+    void onStatusUpdated() {
+        handler.removeCallbacks(tick);
+        handler.post(tick);
+    }
+
+    @Override
+    public void unsubscribe() {
+        active = false;
+        handler.removeCallbacks(tick);
+        super.unsubscribe();
+    }
+}
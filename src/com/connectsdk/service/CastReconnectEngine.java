@@ -0,0 +1,244 @@
+/*
+ * CastReconnectEngine
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.connectsdk.core.Util;
+
+import java.util.Random;
+
+/**
+ * Reconnects CastService after the connection is lost. Attempts are scheduled with jittered
+ * exponential backoff: the first one right away, then after a random delay between half and
+ * the full backoff, which doubles with every attempt up to a maximum.
+ */
+public class CastReconnectEngine {
+
+    interface Callback {
+        /**
+         * Starts a reconnect attempt unless one is in progress. Success is reported by
+         * onReconnected, otherwise the next attempt follows after the backoff.
+         */
+        void reconnect();
+
+        /**
+         * Called when all attempts have failed.
+         */
+        void onGiveUp();
+    }
+
+    public static final long INITIAL_BACKOFF = 250;
+
+    public static final long MAX_BACKOFF = 30000;
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+
+    private final Callback callback;
+
+    private final Random random;
+
+    private Handler handler;
+
+    private final Runnable attemptRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            attempt();
+        }
+    };
+
+    private boolean enabled = true;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    private boolean reconnecting;
+    private int attemptCount;
+    private long lostTime;
+
+    private long reconnectCount;
+    private long lastLatency = -1;
+    private long totalLatency;
+    private long maxLatency;
+
+    CastReconnectEngine(Callback callback) {
+        this(callback, new Random());
+    }
+
+    CastReconnectEngine(Callback callback, Random random) {
+        this.callback = callback;
+        this.random = random;
+    }
+
+    /**
+     * Starts reconnecting unless it's already in progress.
+     *
+     * @return false if reconnecting is disabled
+     */
+    boolean start() {
+        synchronized (this) {
+            if (!enabled) {
+                return false;
+            }
+            if (reconnecting) {
+                return true;
+            }
+
+            reconnecting = true;
+            attemptCount = 0;
+            lostTime = currentTime();
+        }
+
+        Log.d(Util.T, "Connection lost, reconnecting");
+        getHandler().removeCallbacks(attemptRunnable);
+        getHandler().post(attemptRunnable);
+        return true;
+    }
+
+    void onReconnected() {
+        long latency;
+
+        synchronized (this) {
+            if (!reconnecting) {
+                return;
+            }
+
+            reconnecting = false;
+            latency = currentTime() - lostTime;
+            reconnectCount++;
+            lastLatency = latency;
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+        }
+
+        getHandler().removeCallbacks(attemptRunnable);
+        Log.d(Util.T, "Reconnected in " + latency + " ms");
+    }
+
+    void stop() {
+        synchronized (this) {
+            reconnecting = false;
+        }
+        if (handler != null) {
+            handler.removeCallbacks(attemptRunnable);
+        }
+    }
+
+    public synchronized boolean isReconnecting() {
+        return reconnecting;
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables proactive reconnect. When disabled, a lost connection is reported
+     * right away and the next command connects again. Enabled by default.
+     */
+    public void setEnabled(boolean enabled) {
+        synchronized (this) {
+            this.enabled = enabled;
+        }
+        if (!enabled) {
+            stop();
+        }
+    }
+
+    public synchronized int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public synchronized void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Returns the number of attempts of the current or the last reconnect.
+     */
+    public synchronized int getAttemptCount() {
+        return attemptCount;
+    }
+
+    public synchronized long getReconnectCount() {
+        return reconnectCount;
+    }
+
+    /**
+     * Returns the time from the lost connection to the rejoined application of the last
+     * reconnect, in milliseconds, or -1 if there was no reconnect yet.
+     */
+    public synchronized long getLastReconnectLatency() {
+        return lastLatency;
+    }
+
+    public synchronized long getAverageReconnectLatency() {
+        return reconnectCount == 0 ? -1 : totalLatency / reconnectCount;
+    }
+
+    public synchronized long getMaxReconnectLatency() {
+        return maxLatency;
+    }
+
+    long currentTime() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    long getDelay(int attempt) {
+        long backoff = Math.min(MAX_BACKOFF, INITIAL_BACKOFF << Math.min(attempt, 20));
+        return backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+    }
+
+    private void attempt() {
+        long delay;
+
+        synchronized (this) {
+            if (!reconnecting) {
+                return;
+            }
+
+            if (attemptCount >= maxAttempts) {
+                reconnecting = false;
+                delay = -1;
+            } else {
+                attemptCount++;
+                delay = getDelay(attemptCount);
+            }
+        }
+
+        if (delay < 0) {
+            Log.w(Util.T, "Reconnect failed after " + attemptCount + " attempts");
+            callback.onGiveUp();
+            return;
+        }
+
+        callback.reconnect();
+        getHandler().postDelayed(attemptRunnable, delay);
+    }
+
+    private Handler getHandler() {
+        if (handler == null) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+        return handler;
+    }
+}
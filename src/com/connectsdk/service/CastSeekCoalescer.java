@@ -0,0 +1,160 @@
+/*
+ * CastSeekCoalescer
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import com.connectsdk.core.Util;
+import com.connectsdk.service.capability.listeners.ResponseListener;
+import com.connectsdk.service.command.ServiceCommandError;
+
+/**
+ * Latest-wins seek for scrubbing. At most one seek is in flight; seeks requested meanwhile
+ * replace the pending position, and the listener of a replaced seek gets a superseded error.
+ */
+class CastSeekCoalescer {
+
+    interface Sender {
+        /**
+         * Sends the seek, the listener has to be notified when its result arrives.
+         */
+        void send(long position, ResponseListener<Object> listener);
+    }
+
+    private final Sender sender;
+
+    private boolean inFlight;
+    private boolean hasPending;
+    private long pendingPosition;
+    private ResponseListener<Object> pendingListener;
+
+    // increased by reset, so results of older seeks don't affect new ones
+    private int generation;
+
+    private long requestCount;
+    private long sentCount;
+
+    CastSeekCoalescer(Sender sender) {
+        this.sender = sender;
+    }
+
+    void seek(long position, ResponseListener<Object> listener) {
+        ResponseListener<Object> superseded = null;
+        boolean send;
+        int currentGeneration;
+
+        synchronized (this) {
+            currentGeneration = generation;
+            requestCount++;
+            send = !inFlight;
+            if (send) {
+                inFlight = true;
+                sentCount++;
+            } else {
+                superseded = pendingListener;
+                hasPending = true;
+                pendingPosition = position;
+                pendingListener = listener;
+            }
+        }
+
+        if (superseded != null) {
+            Util.postError(superseded, createSupersededError());
+        }
+        if (send) {
+            sender.send(position, wrap(listener, currentGeneration));
+        }
+    }
+
+    /**
+     * Drops the pending seek, its listener gets the error.
+     */
+    void reset(ServiceCommandError error) {
+        ResponseListener<Object> listener;
+
+        synchronized (this) {
+            listener = pendingListener;
+            generation++;
+            inFlight = false;
+            hasPending = false;
+            pendingListener = null;
+        }
+
+        if (listener != null) {
+            Util.postError(listener, error);
+        }
+    }
+
+    synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    synchronized long getSentCount() {
+        return sentCount;
+    }
+
+    private void onCompleted(int completedGeneration) {
+        long position;
+        ResponseListener<Object> listener;
+
+        synchronized (this) {
+            if (completedGeneration != generation) {
+                return;
+            }
+            if (!hasPending) {
+                inFlight = false;
+                return;
+            }
+
+            position = pendingPosition;
+            listener = pendingListener;
+            hasPending = false;
+            pendingListener = null;
+            sentCount++;
+        }
+
+        sender.send(position, wrap(listener, completedGeneration));
+    }
+
+    private ResponseListener<Object> wrap(final ResponseListener<Object> listener,
+            final int sentGeneration) {
+        return new ResponseListener<Object>() {
+
+            @Override
+            public void onSuccess(Object object) {
+                onCompleted(sentGeneration);
+                if (listener != null) {
+                    listener.onSuccess(object);
+                }
+            }
+
+            @Override
+            public void onError(ServiceCommandError error) {
+                onCompleted(sentGeneration);
+                if (listener != null) {
+                    listener.onError(error);
+                }
+            }
+        };
+    }
+
+    static ServiceCommandError createSupersededError() {
+        return new ServiceCommandError(CastService.SEEK_SUPERSEDED_ERROR_CODE,
+                "Seek was superseded by a newer position", null);
+    }
+}
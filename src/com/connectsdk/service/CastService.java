@@ -30,6 +30,7 @@ import com.connectsdk.core.SubtitleInfo;
 import com.connectsdk.core.Util;
 import com.connectsdk.discovery.DiscoveryFilter;
 import com.connectsdk.discovery.DiscoveryManager;
+import com.connectsdk.discovery.provider.CastServiceDescription;
 import com.connectsdk.service.capability.CapabilityMethods;
 import com.connectsdk.service.capability.MediaControl;
 import com.connectsdk.service.capability.MediaPlayer;
@@ -53,6 +54,8 @@ import com.google.android.gms.cast.CastDevice;
 import com.google.android.gms.cast.CastMediaControlIntent;
 import com.google.android.gms.cast.LaunchOptions;
 import com.google.android.gms.cast.MediaMetadata;
+import com.google.android.gms.cast.MediaQueueItem;
+import com.google.android.gms.cast.MediaStatus;
 import com.google.android.gms.cast.MediaTrack;
 import com.google.android.gms.cast.RemoteMediaPlayer;
 import com.google.android.gms.cast.RemoteMediaPlayer.MediaChannelResult;
@@ -67,19 +70,32 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CastService extends DeviceService implements MediaPlayer, MediaControl, VolumeControl, WebAppLauncher {
     private static final long MEDIA_TRACK_ID = 1;
 
+    private static final float VOLUME_STEP = 0.01f;
+
     interface ConnectionListener {
         void onConnected();
     }
 
+    interface MediaLoader {
+        void load(WebAppSession webAppSession, CastCommandMetrics.Timer timer, LaunchListener listener);
+    }
+
+    /**
+     * @deprecated web apps are launched with WebAppSession.LaunchListener or
+     * {@link #launchWebAppAsync(String, boolean)}, this listener isn't used by CastService
+     */
+    @Deprecated
     public interface LaunchWebAppListener{
         void onSuccess(WebAppSession webAppSession);
         void onFailure(ServiceCommandError error);
@@ -92,6 +108,18 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
     public final static String PLAY_STATE = "PlayState";
     public final static String CAST_SERVICE_VOLUME_SUBSCRIPTION_NAME = "volume";
     public final static String CAST_SERVICE_MUTE_SUBSCRIPTION_NAME = "mute";
+    public final static String CAST_SERVICE_POSITION_SUBSCRIPTION_NAME = "position";
+
+    /**
+     * Error code of a seek which was replaced by a newer position in scrub mode
+     */
+    public final static int SEEK_SUPERSEDED_ERROR_CODE = 409;
+
+    /**
+     * Default time in seconds before the end of a queue item when the receiver starts
+     * buffering the next item
+     */
+    public final static double DEFAULT_QUEUE_PRELOAD_TIME = 10;
 
     /**
      * Checked exception for CastApi wrapper
@@ -186,6 +214,16 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
             }
         }
 
+        public PendingResult<ApplicationConnectionResult> joinApplication(
+                GoogleApiClient mApiClient, String appId, String sessionId)
+                throws CastClientException {
+            try {
+                return Cast.CastApi.joinApplication(mApiClient, appId, sessionId);
+            } catch (RuntimeException e) {
+                throw createCastClientException(e);
+            }
+        }
+
         public PendingResult<Status> stopApplication(GoogleApiClient mApiClient)
                 throws CastClientException {
             try {
@@ -249,7 +287,22 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
 
     // @endcond
 
-    String currentAppId;
+    volatile String currentAppId;
+    volatile String currentSessionId;
+
+    private final AtomicInteger avoidedLaunchCount = new AtomicInteger();
+
+    volatile boolean queueActive;
+
+    volatile PlayStateStatus lastPlayState;
+
+    final CastPositionEngine positionEngine = new CastPositionEngine();
+
+    private volatile ConvertedMediaInfo convertedMediaInfo;
+
+    private volatile double queuePreloadTime = DEFAULT_QUEUE_PRELOAD_TIME;
+
+    private volatile long launchTimeout;
     String launchingAppId;
 
     CastClient mCastClient;
@@ -262,7 +315,7 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
     RemoteMediaPlayer mMediaPlayer;
 
     Map<String, CastWebAppSession> sessions;
-    List<URLServiceSubscription<?>> subscriptions;
+    final CastSubscriptionRegistry subscriptions = new CastSubscriptionRegistry();
 
     float currentVolumeLevel;
     boolean currentMuteStatus;
@@ -270,8 +323,22 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
     
     static String applicationID = CastMediaControlIntent.DEFAULT_MEDIA_RECEIVER_APPLICATION_ID;
 
+    // All receiver applications to discover, applicationID is the first one
+    static volatile List<String> applicationIDs = Collections.singletonList(applicationID);
+
     // Queue of commands that should be sent once register is complete
-    CopyOnWriteArraySet<ConnectionListener> commandQueue = new CopyOnWriteArraySet<ConnectionListener>();
+    CastCommandQueue commandQueue = new CastCommandQueue();
+
+    final CastCommandMetrics commandMetrics = new CastCommandMetrics();
+
+    final CastEventDispatcher eventDispatcher = new CastEventDispatcher();
+
+    CastVolumeCoalescer volumeCoalescer;
+
+    CastSeekCoalescer seekCoalescer;
+    boolean seekScrubbing;
+
+    CastReconnectEngine reconnectEngine;
 
     public CastService(ServiceDescription serviceDescription, ServiceConfig serviceConfig) {
         super(serviceDescription, serviceConfig);
@@ -280,9 +347,34 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
         mCastClientListener = new CastListener();
         mConnectionCallbacks = new ConnectionCallbacks();
         mConnectionFailedListener = new ConnectionFailedListener();
+        volumeCoalescer = new CastVolumeCoalescer(new CastVolumeCoalescer.Sender() {
+
+            @Override
+            public void send(float level, ResponseListener<Object> listener) {
+                sendVolume(level, listener);
+            }
+        });
+        seekCoalescer = new CastSeekCoalescer(new CastSeekCoalescer.Sender() {
+
+            @Override
+            public void send(long position, ResponseListener<Object> listener) {
+                sendSeek(position, listener);
+            }
+        });
+        reconnectEngine = new CastReconnectEngine(new CastReconnectEngine.Callback() {
+
+            @Override
+            public void reconnect() {
+                connect();
+            }
+
+            @Override
+            public void onGiveUp() {
+                onReconnectFailed();
+            }
+        });
 
         sessions = new HashMap<String, CastWebAppSession>();
-        subscriptions = new ArrayList<URLServiceSubscription<?>>();
 
         mWaitingForReconnect = false;
     }
@@ -298,12 +390,53 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
 
     public static void setApplicationID(String id) {
         applicationID = id;
+        applicationIDs = Collections.singletonList(id);
     }
     
     public static String getApplicationID() {
         return applicationID;
     }
 
+    /**
+     * Sets several receiver applications, e.g. the default media receiver and custom receivers.
+     * CastDiscoveryProvider finds devices which can run any of them and records the supported
+     * applications of every device. The first ID is used as the application ID for media
+     * playback when the device supports it.
+     */
+    public static void setApplicationIDs(Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("At least one application ID is required");
+        }
+
+        List<String> list = Collections.unmodifiableList(new ArrayList<String>(ids));
+        applicationID = list.get(0);
+        applicationIDs = list;
+    }
+
+    public static void setApplicationIDs(String... ids) {
+        setApplicationIDs(Arrays.asList(ids));
+    }
+
+    public static List<String> getApplicationIDs() {
+        return applicationIDs;
+    }
+
+    /**
+     * Returns the application which should be launched for media playback on this device: the
+     * primary application ID, or the first configured application the device supports if it
+     * doesn't support the primary one.
+     */
+    String getMediaApplicationID() {
+        ServiceDescription description = getServiceDescription();
+        if (description instanceof CastServiceDescription) {
+            List<String> supported = ((CastServiceDescription) description).getApplicationIDs();
+            if (!supported.isEmpty() && !supported.contains(applicationID)) {
+                return supported.get(0);
+            }
+        }
+        return applicationID;
+    }
+
     @Override
     public CapabilityPriorityLevel getPriorityLevel(Class<? extends CapabilityMethods> clazz) {
         if (clazz.equals(MediaPlayer.class)) {
@@ -327,6 +460,15 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
             castDevice = (CastDevice) getServiceDescription().getDevice();
         }
 
+        if (castDevice == null) {
+            // e.g. a device restored from the discovery cache which MediaRouter hasn't found yet
+            Log.w(Util.T, "Unable to connect, Cast device is not available");
+            ServiceCommandError error = new ServiceCommandError(0, "Cast device is not available", null);
+            commandQueue.cancelAll(error);
+            notifyConnectionFailure(error);
+            return;
+        }
+
         if (mApiClient == null) {
             mApiClient = createApiClient();
         }
@@ -350,10 +492,12 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
     @Override
     public void disconnect() {
         mWaitingForReconnect = false;
+        reconnectEngine.stop();
         detachMediaPlayer();
-        if (!commandQueue.isEmpty()) {
-            commandQueue.clear();
-        }
+        commandQueue.cancelAll(new ServiceCommandError(0, "Service has been disconnected", null));
+        volumeCoalescer.reset(new ServiceCommandError(0, "Service has been disconnected", null));
+        seekCoalescer.reset(new ServiceCommandError(0, "Service has been disconnected", null));
+        queueActive = false;
         if (mApiClient != null && mApiClient.isConnected()) {
             try {
                 mCastClient.leaveApplication(mApiClient);
@@ -390,58 +534,65 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
 
     @Override
     public void play(final ResponseListener<Object> listener) {
+        final CastCommandMetrics.Timer timer = commandMetrics.start(CastCommandMetrics.Command.PLAY);
+
         ConnectionListener connectionListener = new ConnectionListener() {
 
             @Override
             public void onConnected() {
+                timer.onConnected();
                 try {
-                    mMediaPlayer.play(mApiClient);
-                    Util.postSuccess(listener, null);
+                    mMediaPlayer.play(mApiClient).setResultCallback(createResultCallback(timer, listener));
                 } catch (Exception e) {
+                    timer.onResponse(false);
                     Util.postError(listener, new ServiceCommandError(0, "Unable to play", null));
                 }
             }
         };
 
-        runCommand(connectionListener);
+        runCommand(connectionListener, listener);
     }
 
     @Override
     public void pause(final ResponseListener<Object> listener) {
+        final CastCommandMetrics.Timer timer = commandMetrics.start(CastCommandMetrics.Command.PAUSE);
+
         ConnectionListener connectionListener = new ConnectionListener() {
 
             @Override
             public void onConnected() {
+                timer.onConnected();
                 try {
-                    mMediaPlayer.pause(mApiClient);
-
-                    Util.postSuccess(listener, null);
+                    mMediaPlayer.pause(mApiClient).setResultCallback(createResultCallback(timer, listener));
                 } catch (Exception e) {
+                    timer.onResponse(false);
                     Util.postError(listener, new ServiceCommandError(0, "Unable to pause", null));
                 }
             }
         };
 
-        runCommand(connectionListener);
+        runCommand(connectionListener, listener);
     }
 
     @Override
     public void stop(final ResponseListener<Object> listener) {
+        final CastCommandMetrics.Timer timer = commandMetrics.start(CastCommandMetrics.Command.STOP);
+
         ConnectionListener connectionListener = new ConnectionListener() {
 
             @Override
             public void onConnected() {
+                timer.onConnected();
                 try {
-                    mMediaPlayer.stop(mApiClient);
-
-                    Util.postSuccess(listener, null);
+                    mMediaPlayer.stop(mApiClient).setResultCallback(createResultCallback(timer, listener));
                 } catch (Exception e) {
+                    timer.onResponse(false);
                     Util.postError(listener, new ServiceCommandError(0, "Unable to stop", null));
                 }
             }
         };
 
-        runCommand(connectionListener);
+        runCommand(connectionListener, listener);
     }
 
     @Override
@@ -455,13 +606,57 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
     }
 
     @Override
-    public void previous(ResponseListener<Object> listener) {
-        Util.postError(listener, ServiceCommandError.notSupported());
+    public void previous(final ResponseListener<Object> listener) {
+        if (!queueActive) {
+            Util.postError(listener, ServiceCommandError.notSupported());
+            return;
+        }
+
+        final CastCommandMetrics.Timer timer = commandMetrics.start(CastCommandMetrics.Command.PREVIOUS);
+
+        ConnectionListener connectionListener = new ConnectionListener() {
+
+            @Override
+            public void onConnected() {
+                timer.onConnected();
+                try {
+                    mMediaPlayer.queuePrev(mApiClient, null)
+                            .setResultCallback(createResultCallback(timer, listener));
+                } catch (Exception e) {
+                    timer.onResponse(false);
+                    Util.postError(listener, new ServiceCommandError(0, "Unable to play previous item", null));
+                }
+            }
+        };
+
+        runCommand(connectionListener, listener);
     }
 
     @Override
-    public void next(ResponseListener<Object> listener) {
-        Util.postError(listener, ServiceCommandError.notSupported());
+    public void next(final ResponseListener<Object> listener) {
+        if (!queueActive) {
+            Util.postError(listener, ServiceCommandError.notSupported());
+            return;
+        }
+
+        final CastCommandMetrics.Timer timer = commandMetrics.start(CastCommandMetrics.Command.NEXT);
+
+        ConnectionListener connectionListener = new ConnectionListener() {
+
+            @Override
+            public void onConnected() {
+                timer.onConnected();
+                try {
+                    mMediaPlayer.queueNext(mApiClient, null)
+                            .setResultCallback(createResultCallback(timer, listener));
+                } catch (Exception e) {
+                    timer.onResponse(false);
+                    Util.postError(listener, new ServiceCommandError(0, "Unable to play next item", null));
+                }
+            }
+        };
+
+        runCommand(connectionListener, listener);
     }
 
     @Override
@@ -471,10 +666,34 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
             return;
         }
 
+        if (seekScrubbing) {
+            seekCoalescer.seek(position, listener);
+        } else {
+            sendSeek(position, listener);
+        }
+    }
+
+    /**
+     * Enables scrub mode for seek, e.g. while the user drags a seek bar. Only one seek is sent
+     * at a time and seeks requested meanwhile are replaced by the newest one. Listeners of
+     * replaced seeks get an error with SEEK_SUPERSEDED_ERROR_CODE. Disabled by default.
+     */
+    public void setSeekScrubbing(boolean enabled) {
+        seekScrubbing = enabled;
+    }
+
+    public boolean isSeekScrubbing() {
+        return seekScrubbing;
+    }
+
+    private void sendSeek(final long position, final ResponseListener<Object> listener) {
+        final CastCommandMetrics.Timer timer = commandMetrics.start(CastCommandMetrics.Command.SEEK);
+
         ConnectionListener connectionListener = new ConnectionListener() {
 
             @Override
             public void onConnected() {
+                timer.onConnected();
                 try {
                     mMediaPlayer.seek(mApiClient, position, RemoteMediaPlayer.RESUME_STATE_UNCHANGED).setResultCallback(
                             new ResultCallback<MediaChannelResult>() {
@@ -482,6 +701,7 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
                                 @Override
                                 public void onResult(MediaChannelResult result) {
                                     Status status = result.getStatus();
+                                    timer.onResponse(status.isSuccess());
 
                                     if (status.isSuccess()) {
                                         Util.postSuccess(listener, null);
@@ -491,12 +711,13 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
                                 }
                             });
                 } catch (Exception e) {
+                    timer.onResponse(false);
                     Util.postError(listener, new ServiceCommandError(0, "Unable to seek", null));
                 }
             }
         };
 
-        runCommand(connectionListener);
+        runCommand(connectionListener, listener);
     }
 
     @Override
@@ -511,7 +732,10 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
 
     @Override
     public void getPosition(final PositionListener listener) {
-        if (mMediaPlayer != null && mMediaPlayer.getMediaStatus() != null) {
+        if (positionEngine.hasPosition()) {
+            Util.postSuccess(listener, positionEngine.getPosition());
+        }
+        else if (mMediaPlayer != null && mMediaPlayer.getMediaStatus() != null) {
             Util.postSuccess(listener, mMediaPlayer.getApproximateStreamPosition());
         }
         else {
@@ -531,35 +755,65 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
 
     @Override
     public void getMediaInfo(MediaInfoListener listener) {
-        if (mMediaPlayer == null)
+        RemoteMediaPlayer mediaPlayer = mMediaPlayer;
+        if (mediaPlayer == null)
             return;
 
-        if (mMediaPlayer.getMediaInfo() != null) {
-            String url = mMediaPlayer.getMediaInfo().getContentId();
-            String mimeType = mMediaPlayer.getMediaInfo().getContentType();
+        MediaInfo info = convertMediaInfo(mediaPlayer.getMediaInfo());
+        if (info != null) {
+            Util.postSuccess(listener, info);
+        }
+        else {
+            Util.postError(listener, new ServiceCommandError(0, "Media Info is null", null));
+        }
+    }
+
+    /**
+     * Converts the media info of the receiver. The result is cached for the last converted
+     * object, so all listeners and callers share one MediaInfo until the receiver reports
+     * other media. The shared instance must not be modified.
+     */
+    MediaInfo convertMediaInfo(com.google.android.gms.cast.MediaInfo mediaInformation) {
+        if (mediaInformation == null) {
+            return null;
+        }
+
+        ConvertedMediaInfo cached = convertedMediaInfo;
+        if (cached != null && cached.source == mediaInformation) {
+            return cached.info;
+        }
+
+        String url = mediaInformation.getContentId();
+        String mimeType = mediaInformation.getContentType();
 
-            MediaMetadata metadata = mMediaPlayer.getMediaInfo().getMetadata();
-            String title = null;
-            String description = null;
-            ArrayList<ImageInfo> list = null;
+        MediaMetadata metadata = mediaInformation.getMetadata();
+        String title = null;
+        String description = null;
+        ArrayList<ImageInfo> list = null;
 
-            if (metadata != null) {
-                title = metadata.getString(MediaMetadata.KEY_TITLE);
-                description =  metadata.getString(MediaMetadata.KEY_SUBTITLE);
+        if (metadata != null) {
+            title = metadata.getString(MediaMetadata.KEY_TITLE);
+            description =  metadata.getString(MediaMetadata.KEY_SUBTITLE);
 
-                if (metadata.getImages() != null && metadata.getImages().size() > 0) {
-                    String iconUrl = metadata.getImages().get(0).getUrl().toString();
-                    list = new ArrayList<ImageInfo>();
-                    list.add(new ImageInfo(iconUrl));
-                }
+            if (metadata.getImages() != null && metadata.getImages().size() > 0) {
+                String iconUrl = metadata.getImages().get(0).getUrl().toString();
+                list = new ArrayList<ImageInfo>();
+                list.add(new ImageInfo(iconUrl));
             }
+        }
+
+        MediaInfo info = new MediaInfo(url, mimeType, title, description, list);
+        convertedMediaInfo = new ConvertedMediaInfo(mediaInformation, info);
+        return info;
+    }
 
-            MediaInfo info = new MediaInfo(url, mimeType, title, description, list);
+    private static class ConvertedMediaInfo {
+        final com.google.android.gms.cast.MediaInfo source;
+        final MediaInfo info;
 
-            Util.postSuccess(listener, info);
-        }
-        else {
-            Util.postError(listener, new ServiceCommandError(0, "Media Info is null", null));
+        ConvertedMediaInfo(com.google.android.gms.cast.MediaInfo source, MediaInfo info) {
+            this.source = source;
+            this.info = info;
         }
     }
 
@@ -583,36 +837,66 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
 
             @Override
             public void onStatusUpdated() {
-                if (subscriptions.size() > 0) {
-                    for (URLServiceSubscription<?> subscription : subscriptions) {
-                        if (subscription.getTarget().equalsIgnoreCase(PLAY_STATE)) {
-                            for (int i = 0; i < subscription.getListeners().size(); i++) {
-                                @SuppressWarnings("unchecked")
-                                ResponseListener<Object> listener = (ResponseListener<Object>) subscription.getListeners().get(i);
-                                if (mMediaPlayer != null && mMediaPlayer.getMediaStatus() != null) {
-                                    PlayStateStatus status = PlayStateStatus.convertPlayerStateToPlayStateStatus(mMediaPlayer.getMediaStatus().getPlayerState());
-                                    Util.postSuccess(listener, status);
-                                }
-                            }
-                        }
+                RemoteMediaPlayer mediaPlayer = mMediaPlayer;
+                MediaStatus mediaStatus = mediaPlayer != null ? mediaPlayer.getMediaStatus() : null;
+                if (mediaStatus == null) {
+                    return;
+                }
+
+                positionEngine.update(mediaStatus.getStreamPosition(), mediaStatus.getPlaybackRate(),
+                        mediaStatus.getPlayerState(), mediaPlayer.getStreamDuration());
+                for (URLServiceSubscription<?> subscription : subscriptions.get(CastSubscriptionRegistry.Target.POSITION)) {
+                    if (subscription instanceof CastPositionSubscription) {
+                        ((CastPositionSubscription) subscription).onStatusUpdated();
+                    }
+                }
+
+                PlayStateStatus status = PlayStateStatus.convertPlayerStateToPlayStateStatus(mediaStatus.getPlayerState());
+                // position and track updates don't change the play state
+                if (status == lastPlayState) {
+                    return;
+                }
+                lastPlayState = status;
+
+                CastEventDispatcher.Batch batch = eventDispatcher.batch(CastEventDispatcher.Event.PLAY_STATE);
+                for (URLServiceSubscription<?> subscription : subscriptions.get(CastSubscriptionRegistry.Target.PLAY_STATE)) {
+                    if (subscription instanceof CastPlayStateSubscription) {
+                        ((CastPlayStateSubscription) subscription).deliver(status);
+                        continue;
+                    }
+                    for (int i = 0; i < subscription.getListeners().size(); i++) {
+                        batch.addSuccess(subscription.getListeners().get(i), status);
                     }
                 }
+                batch.post();
             }
         });
 
         mMediaPlayer.setOnMetadataUpdatedListener(new RemoteMediaPlayer.OnMetadataUpdatedListener() {
             @Override
             public void onMetadataUpdated() {
-                if (subscriptions.size() > 0) {
-                    for (URLServiceSubscription<?> subscription : subscriptions) {
-                        if (subscription.getTarget().equalsIgnoreCase("info")) {
-                            for (int i = 0; i < subscription.getListeners().size(); i++) {
-                                MediaInfoListener listener = (MediaInfoListener) subscription.getListeners().get(i);
-                                getMediaInfo(listener);
-                            }
+                URLServiceSubscription<?>[] infoSubscriptions =
+                        subscriptions.get(CastSubscriptionRegistry.Target.INFO);
+                RemoteMediaPlayer mediaPlayer = mMediaPlayer;
+                if (infoSubscriptions.length == 0 || mediaPlayer == null) {
+                    return;
+                }
+
+                // one conversion for all listeners
+                MediaInfo info = convertMediaInfo(mediaPlayer.getMediaInfo());
+                CastEventDispatcher.Batch batch = eventDispatcher.batch(CastEventDispatcher.Event.MEDIA_INFO);
+                for (URLServiceSubscription<?> subscription : infoSubscriptions) {
+                    for (int i = 0; i < subscription.getListeners().size(); i++) {
+                        MediaInfoListener listener = (MediaInfoListener) subscription.getListeners().get(i);
+                        if (info != null) {
+                            batch.addSuccess(listener, info);
+                        }
+                        else {
+                            batch.addError(listener, new ServiceCommandError(0, "Media Info is null", null));
                         }
                     }
                 }
+                batch.post();
             }
         });
 
@@ -638,6 +922,7 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
             }
         }
         mMediaPlayer = null;
+        resetPlayState();
     }
 
     @Override
@@ -661,7 +946,7 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
                 .setCustomData(null)
                 .build();
 
-        playMedia(mediaInformation, applicationID, listener);
+        playMedia(mediaInformation, getMediaApplicationID(), listener);
     }
 
     @Override
@@ -690,6 +975,15 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
     private void playMedia(String url, SubtitleInfo subtitleInfo, String mimeType, String title,
                           String description, String iconSrc, boolean shouldLoop,
                           LaunchListener listener) {
+        com.google.android.gms.cast.MediaInfo mediaInformation = createMediaInformation(url,
+                subtitleInfo, mimeType, title, description, iconSrc);
+
+        playMedia(mediaInformation, getMediaApplicationID(), listener);
+    }
+
+    private com.google.android.gms.cast.MediaInfo createMediaInformation(String url,
+            SubtitleInfo subtitleInfo, String mimeType, String title, String description,
+            String iconSrc) {
         MediaMetadata mMediaMetadata = new MediaMetadata(MediaMetadata.MEDIA_TYPE_MOVIE);
         mMediaMetadata.putString(MediaMetadata.KEY_TITLE, title);
         mMediaMetadata.putString(MediaMetadata.KEY_SUBTITLE, description);
@@ -713,7 +1007,7 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
             mediaTracks.add(subtitle);
         }
 
-        com.google.android.gms.cast.MediaInfo mediaInformation = new com.google.android.gms.cast.MediaInfo.Builder(url)
+        return new com.google.android.gms.cast.MediaInfo.Builder(url)
                 .setContentType(mimeType)
                 .setStreamType(com.google.android.gms.cast.MediaInfo.STREAM_TYPE_BUFFERED)
                 .setMetadata(mMediaMetadata)
@@ -721,8 +1015,6 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
                 .setCustomData(null)
                 .setMediaTracks(mediaTracks)
                 .build();
-
-        playMedia(mediaInformation, applicationID, listener);
     }
 
     @Override
@@ -734,11 +1026,10 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
 
     @Override
     public void playMedia(MediaInfo mediaInfo, boolean shouldLoop, LaunchListener listener) {
-        try {
-            mCastClient.getApplicationStatus(mApiClient);
-        } catch (CastClientException e) {
-            Util.postError(listener, new ServiceCommandError(e.getMessage()));
-        }
+        playMedia(createMediaInformation(mediaInfo), getMediaApplicationID(), listener);
+    }
+
+    private com.google.android.gms.cast.MediaInfo createMediaInformation(MediaInfo mediaInfo) {
         String mediaUrl = null;
         SubtitleInfo subtitle = null;
         String mimeType = null;
@@ -759,69 +1050,146 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
             }
         }
 
-        playMedia(mediaUrl, subtitle, mimeType, title, desc, iconSrc, shouldLoop, listener);
+        return createMediaInformation(mediaUrl, subtitle, mimeType, title, desc, iconSrc);
     }
 
-    private void playMedia(final com.google.android.gms.cast.MediaInfo mediaInformation, final String mediaAppId, final LaunchListener listener) {
-        final ApplicationConnectionResultCallback webAppLaunchCallback =
-                new ApplicationConnectionResultCallback(new LaunchWebAppListener() {
-
-            @Override
-            public void onSuccess(final WebAppSession webAppSession) {
-                ConnectionListener connectionListener = new ConnectionListener() {
+    /**
+     * Plays the media items one after another using the media queue of the receiver. The
+     * receiver starts buffering the next item getQueuePreloadTime() seconds before the end of
+     * the current one, so track changes are almost gapless. Use next() and previous() to
+     * change the item and addToQueue() to append more items.
+     *
+     * @param startIndex index of the first item to play
+     * @param shouldLoop whether the queue starts again after the last item
+     */
+    public void playQueue(List<MediaInfo> mediaInfos, final int startIndex, boolean shouldLoop,
+                          LaunchListener listener) {
+        if (mediaInfos == null || mediaInfos.isEmpty()
+                || startIndex < 0 || startIndex >= mediaInfos.size()) {
+            Util.postError(listener, new ServiceCommandError(0, "Invalid queue items", null));
+            return;
+        }
 
-                    @Override
-                    public void onConnected() {
-                        loadMedia(mediaInformation, webAppSession, listener);
-                    }
-                };
+        final MediaQueueItem[] items = createQueueItems(mediaInfos);
+        final int repeatMode = shouldLoop
+                ? MediaStatus.REPEAT_MODE_REPEAT_ALL : MediaStatus.REPEAT_MODE_REPEAT_OFF;
 
-                runCommand(connectionListener);
-            }
+        launchMedia(getMediaApplicationID(), new MediaLoader() {
 
             @Override
-            public void onFailure(ServiceCommandError error) {
-                Util.postError(listener, error);
+            public void load(WebAppSession webAppSession, CastCommandMetrics.Timer timer,
+                             LaunchListener listener) {
+                loadQueue(items, startIndex, repeatMode, webAppSession, timer, listener);
             }
-        });
+        }, listener);
+    }
 
-        launchingAppId = mediaAppId;
+    /**
+     * Appends the media items to the queue started by playQueue().
+     */
+    public void addToQueue(List<MediaInfo> mediaInfos, final ResponseListener<Object> listener) {
+        if (!queueActive) {
+            Util.postError(listener, new ServiceCommandError(0, "There is no queue currently available", null));
+            return;
+        }
+        if (mediaInfos == null || mediaInfos.isEmpty()) {
+            Util.postSuccess(listener, null);
+            return;
+        }
+
+        final MediaQueueItem[] items = createQueueItems(mediaInfos);
 
         ConnectionListener connectionListener = new ConnectionListener() {
 
             @Override
             public void onConnected() {
-                boolean relaunchIfRunning = false;
-
                 try {
-                    if (mCastClient.getApplicationStatus(mApiClient) == null || (!mediaAppId.equals(currentAppId))) {
-                        relaunchIfRunning = true;
-                    }
-
-                    LaunchOptions options = new LaunchOptions();
-                    options.setRelaunchIfRunning(relaunchIfRunning);
-                    mCastClient.launchApplication(mApiClient, mediaAppId, options).setResultCallback(webAppLaunchCallback);
+                    mMediaPlayer.queueInsertItems(mApiClient, items, MediaQueueItem.INVALID_ITEM_ID, null)
+                            .setResultCallback(createResultCallback(listener));
                 } catch (Exception e) {
-                    Util.postError(listener, new ServiceCommandError(0, "Unable to launch", null));
+                    Util.postError(listener, new ServiceCommandError(0, "Unable to add items", null));
                 }
             }
         };
 
-        runCommand(connectionListener);
+        runCommand(connectionListener, listener);
     }
 
-    private void loadMedia(com.google.android.gms.cast.MediaInfo mediaInformation,
-                           final WebAppSession webAppSession, final LaunchListener listener) {
+    /**
+     * Returns true if the media was started by playQueue() and next() and previous() are
+     * available.
+     */
+    public boolean isQueueActive() {
+        return queueActive;
+    }
+
+    public double getQueuePreloadTime() {
+        return queuePreloadTime;
+    }
+
+    /**
+     * Sets how many seconds before the end of a queue item the next item is buffered. Applies
+     * to items added after the change.
+     */
+    public void setQueuePreloadTime(double queuePreloadTime) {
+        this.queuePreloadTime = queuePreloadTime;
+    }
+
+    private MediaQueueItem[] createQueueItems(List<MediaInfo> mediaInfos) {
+        MediaQueueItem[] items = new MediaQueueItem[mediaInfos.size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new MediaQueueItem.Builder(createMediaInformation(mediaInfos.get(i)))
+                    .setAutoplay(true)
+                    .setPreloadTime(queuePreloadTime)
+                    .build();
+        }
+        return items;
+    }
+
+    private ResultCallback<MediaChannelResult> createResultCallback(
+            ResponseListener<Object> listener) {
+        return createResultCallback(null, listener);
+    }
+
+    /**
+     * Stops the timer, if any, with the status of the media command and notifies the listener.
+     */
+    private ResultCallback<MediaChannelResult> createResultCallback(
+            final CastCommandMetrics.Timer timer, final ResponseListener<Object> listener) {
+        return new ResultCallback<MediaChannelResult>() {
+
+            @Override
+            public void onResult(MediaChannelResult result) {
+                Status status = result.getStatus();
+                if (timer != null) {
+                    timer.onResponse(status.isSuccess());
+                }
+
+                if (status.isSuccess()) {
+                    Util.postSuccess(listener, null);
+                }
+                else {
+                    Util.postError(listener, new ServiceCommandError(status.getStatusCode(), status.getStatusMessage(), status));
+                }
+            }
+        };
+    }
+
+    private void loadQueue(MediaQueueItem[] items, int startIndex, int repeatMode,
+                           final WebAppSession webAppSession,
+                           final CastCommandMetrics.Timer timer, final LaunchListener listener) {
         try {
-            mMediaPlayer.load(mApiClient, mediaInformation, true).setResultCallback(new ResultCallback<MediaChannelResult>() {
+            mMediaPlayer.queueLoad(mApiClient, items, startIndex, repeatMode, null).setResultCallback(new ResultCallback<MediaChannelResult>() {
 
                 @Override
                 public void onResult(MediaChannelResult result) {
                     Status status = result.getStatus();
 
+                    timer.onResponse(status.isSuccess());
+
                     if (status.isSuccess()) {
+                        queueActive = true;
                         webAppSession.launchSession.setSessionType(LaunchSessionType.Media);
-                        mMediaPlayer.setActiveMediaTracks(mApiClient, new long[] { MEDIA_TRACK_ID });
                         Util.postSuccess(listener, new MediaLaunchObject(webAppSession.launchSession, CastService.this));
                     }
                     else {
@@ -830,128 +1198,225 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
                 }
             });
         } catch (Exception e) {
-            Util.postError(listener, new ServiceCommandError(0, "Unable to load", null));
+            timer.onResponse(false);
+            Util.postError(listener, new ServiceCommandError(0, "Unable to load queue", null));
         }
     }
 
-    @Override
-    public void closeMedia(final LaunchSession launchSession, final ResponseListener<Object> listener) {
-        ConnectionListener connectionListener = new ConnectionListener() {
+    private void playMedia(final com.google.android.gms.cast.MediaInfo mediaInformation, final String mediaAppId, final LaunchListener listener) {
+        launchMedia(mediaAppId, new MediaLoader() {
 
             @Override
-            public void onConnected() {
-                try {
-                    mCastClient.stopApplication(mApiClient, launchSession.getSessionId()).setResultCallback(new ResultCallback<Status>() {
-
-                        @Override
-                        public void onResult(Status result) {
-                            if (result.isSuccess()) {
-                                Util.postSuccess(listener, result);
-                            } else {
-                                Util.postError(listener, new ServiceCommandError(result.getStatusCode(), result.getStatusMessage(), result));
-                            }
-                        }
-                    });
-                } catch (Exception e) {
-                    Util.postError(listener, new ServiceCommandError(0, "Unable to stop", null));
-                }
+            public void load(WebAppSession webAppSession, CastCommandMetrics.Timer timer,
+                             LaunchListener listener) {
+                loadMedia(mediaInformation, webAppSession, timer, listener);
             }
-        };
-
-        runCommand(connectionListener);
+        }, listener);
     }
 
-    @Override
-    public WebAppLauncher getWebAppLauncher() {
-        return this;
-    }
+    private void launchMedia(final String mediaAppId, final MediaLoader loader, final LaunchListener listener) {
+        final CastCommandMetrics.Timer timer = commandMetrics.start(CastCommandMetrics.Command.PLAY_MEDIA);
 
-    @Override
-    public CapabilityPriorityLevel getWebAppLauncherCapabilityLevel() {
-        return CapabilityPriorityLevel.HIGH;
-    }
+        launchingAppId = mediaAppId;
 
-    @Override
-    public void launchWebApp(String webAppId, WebAppSession.LaunchListener listener) {
-        launchWebApp(webAppId, true, listener);
-    }
+        runAsync(new CastFuture.AsyncFunction<Void, WebAppSession>() {
 
-    @Override
-    public void launchWebApp(final String webAppId, final boolean relaunchIfRunning, final WebAppSession.LaunchListener listener) {
-        launchingAppId = webAppId;
+            @Override
+            public CastFuture<WebAppSession> apply(Void value) {
+                timer.onConnected();
+
+                // the receiver is already running and joined, so it can load the media now
+                CastWebAppSession joinedSession = getJoinedSession(mediaAppId);
+                if (joinedSession != null) {
+                    launchingAppId = null;
+                    avoidedLaunchCount.incrementAndGet();
+                    return CastFuture.<WebAppSession>succeeded(joinedSession);
+                }
+
+                boolean relaunchIfRunning = !mediaAppId.equals(currentAppId);
+                return launchApplication(asyncClient(), mediaAppId, relaunchIfRunning);
+            }
+        }).withTimeout(launchTimeout).addCallback(new CastFuture.Callback<WebAppSession>() {
 
-        final LaunchWebAppListener launchWebAppListener = new LaunchWebAppListener() {
             @Override
-            public void onSuccess(WebAppSession webAppSession) {
-                Util.postSuccess(listener, webAppSession);
+            public void onSuccess(final WebAppSession webAppSession) {
+                ConnectionListener connectionListener = new ConnectionListener() {
+
+                    @Override
+                    public void onConnected() {
+                        loader.load(webAppSession, timer, listener);
+                    }
+                };
+
+                runCommand(connectionListener, listener);
             }
 
             @Override
             public void onFailure(ServiceCommandError error) {
+                timer.onResponse(false);
                 Util.postError(listener, error);
             }
-        };
+        });
+    }
 
-        ConnectionListener connectionListener = new ConnectionListener() {
+    /**
+     * Returns the session of the application if it's running on the receiver and this service
+     * is joined to it. The state is tracked from the launch and join results and from
+     * onApplicationStatusChanged, so no request to the device is needed.
+     */
+    CastWebAppSession getJoinedSession(String appId) {
+        String sessionId = currentSessionId;
+        if (appId == null || sessionId == null || !appId.equals(currentAppId)) {
+            return null;
+        }
+
+        CastWebAppSession session = sessions.get(appId);
+        if (session == null || session.launchSession == null
+                || !sessionId.equals(session.launchSession.getSessionId())) {
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * Returns how many times playMedia loaded the media into the running receiver instead of
+     * launching it again.
+     */
+    public int getAvoidedLaunchCount() {
+        return avoidedLaunchCount.get();
+    }
+
+    public long getLaunchTimeout() {
+        return launchTimeout;
+    }
+
+    /**
+     * Sets how long launching or joining an application may take in milliseconds, including the
+     * wait for the connection. The pending request is cancelled when the time is over. 0, the
+     * default, means no limit.
+     */
+    public void setLaunchTimeout(long launchTimeout) {
+        this.launchTimeout = launchTimeout;
+    }
+
+    private void loadMedia(com.google.android.gms.cast.MediaInfo mediaInformation,
+                           final WebAppSession webAppSession,
+                           final CastCommandMetrics.Timer timer, final LaunchListener listener) {
+        try {
+            mMediaPlayer.load(mApiClient, mediaInformation, true).setResultCallback(new ResultCallback<MediaChannelResult>() {
+
+                @Override
+                public void onResult(MediaChannelResult result) {
+                    Status status = result.getStatus();
+
+                    timer.onResponse(status.isSuccess());
+
+                    if (status.isSuccess()) {
+                        queueActive = false;
+                        webAppSession.launchSession.setSessionType(LaunchSessionType.Media);
+                        mMediaPlayer.setActiveMediaTracks(mApiClient, new long[] { MEDIA_TRACK_ID });
+                        Util.postSuccess(listener, new MediaLaunchObject(webAppSession.launchSession, CastService.this));
+                    }
+                    else {
+                        Util.postError(listener, new ServiceCommandError(status.getStatusCode(), status.getStatusMessage(), status));
+                    }
+                }
+            });
+        } catch (Exception e) {
+            timer.onResponse(false);
+            Util.postError(listener, new ServiceCommandError(0, "Unable to load", null));
+        }
+    }
+
+    @Override
+    public void closeMedia(final LaunchSession launchSession, final ResponseListener<Object> listener) {
+        final CastCommandMetrics.Timer timer = commandMetrics.start(CastCommandMetrics.Command.CLOSE_MEDIA);
+
+        CastFuture<Status> future = runAsync(new CastFuture.AsyncFunction<Void, Status>() {
 
             @Override
-            public void onConnected() {
+            public CastFuture<Status> apply(Void value) {
+                timer.onConnected();
+                return asyncClient().stopApplication(launchSession.getSessionId());
+            }
+        });
+
+        stopTimer(future, timer).addListener(listener);
+    }
+
+    @Override
+    public WebAppLauncher getWebAppLauncher() {
+        return this;
+    }
+
+    @Override
+    public CapabilityPriorityLevel getWebAppLauncherCapabilityLevel() {
+        return CapabilityPriorityLevel.HIGH;
+    }
+
+    @Override
+    public void launchWebApp(String webAppId, WebAppSession.LaunchListener listener) {
+        launchWebApp(webAppId, true, listener);
+    }
+
+    @Override
+    public void launchWebApp(final String webAppId, final boolean relaunchIfRunning, final WebAppSession.LaunchListener listener) {
+        launchWebAppAsync(webAppId, relaunchIfRunning).addListener(listener);
+    }
+
+    /**
+     * Launches the web app, or joins it if it's running and relaunchIfRunning is false. The
+     * returned future can be chained with other commands, limited with a timeout or cancelled.
+     */
+    public CastFuture<WebAppSession> launchWebAppAsync(final String webAppId, final boolean relaunchIfRunning) {
+        final CastCommandMetrics.Timer timer = commandMetrics.start(CastCommandMetrics.Command.LAUNCH_WEB_APP);
+
+        launchingAppId = webAppId;
+
+        CastFuture<WebAppSession> future = runAsync(new CastFuture.AsyncFunction<Void, WebAppSession>() {
+
+            @Override
+            public CastFuture<WebAppSession> apply(Void value) {
+                timer.onConnected();
+                final CastAsyncClient client = asyncClient();
+
+                if (relaunchIfRunning) {
+                    return launchApplication(client, webAppId, true);
+                }
+
                 // TODO Workaround, for some reason, if relaunchIfRunning is false, launchApplication returns 2005 error and cannot launch.
-                try {
-                    if (relaunchIfRunning == false) {
-                        mCastClient.joinApplication(mApiClient).setResultCallback(new ResultCallback<Cast.ApplicationConnectionResult>() {
+                return client.joinApplication().map(new CastFuture.Function<ApplicationConnectionResult, WebAppSession>() {
 
-                            @Override
-                            public void onResult(ApplicationConnectionResult result) {
-                                if (result.getStatus().isSuccess() &&
-                                        result.getApplicationMetadata() != null &&
-                                        result.getApplicationMetadata().getName() != null &&
-                                        result.getApplicationMetadata().getApplicationId().equals(webAppId)) {
-                                    ApplicationMetadata applicationMetadata = result.getApplicationMetadata();
-                                    currentAppId = applicationMetadata.getApplicationId();
-
-                                    LaunchSession launchSession = LaunchSession.launchSessionForAppId(applicationMetadata.getApplicationId());
-                                    launchSession.setAppName(applicationMetadata.getName());
-                                    launchSession.setSessionId(result.getSessionId());
-                                    launchSession.setSessionType(LaunchSessionType.WebApp);
-                                    launchSession.setService(CastService.this);
-
-                                    CastWebAppSession webAppSession = new CastWebAppSession(launchSession, CastService.this);
-                                    webAppSession.setMetadata(applicationMetadata);
-
-                                    sessions.put(applicationMetadata.getApplicationId(), webAppSession);
-
-                                    Util.postSuccess(listener, webAppSession);
-                                }
-                                else {
-                                    LaunchOptions options = new LaunchOptions();
-                                    options.setRelaunchIfRunning(true);
-
-                                    try {
-                                        mCastClient.launchApplication(mApiClient, webAppId, options).setResultCallback(
-                                                new ApplicationConnectionResultCallback(launchWebAppListener));
-                                    } catch (Exception e) {
-                                        Util.postError(listener, new ServiceCommandError(0, "Unable to launch", null));
-                                    }
-                                }
-                            }
-                        });
+                    @Override
+                    public WebAppSession apply(ApplicationConnectionResult result) {
+                        ApplicationMetadata applicationMetadata = result.getApplicationMetadata();
+                        if (applicationMetadata != null && applicationMetadata.getName() != null
+                                && webAppId.equals(applicationMetadata.getApplicationId())) {
+                            return createWebAppSession(result);
+                        }
+                        return null;
                     }
-                    else {
-                        LaunchOptions options = new LaunchOptions();
-                        options.setRelaunchIfRunning(relaunchIfRunning);
+                }).recover(new CastFuture.AsyncFunction<ServiceCommandError, WebAppSession>() {
 
-                        mCastClient.launchApplication(mApiClient, webAppId, options).setResultCallback(
-                                new ApplicationConnectionResultCallback(launchWebAppListener)
-                        );
+                    @Override
+                    public CastFuture<WebAppSession> apply(ServiceCommandError error) {
+                        return CastFuture.succeeded(null);
                     }
-                } catch (Exception e) {
-                    Util.postError(listener, new ServiceCommandError(0, "Unable to launch", null));
-                }
+                }).then(new CastFuture.AsyncFunction<WebAppSession, WebAppSession>() {
+
+                    @Override
+                    public CastFuture<WebAppSession> apply(WebAppSession webAppSession) {
+                        if (webAppSession != null) {
+                            return CastFuture.succeeded(webAppSession);
+                        }
+                        // another app is running or join failed
+                        return launchApplication(client, webAppId, true);
+                    }
+                });
             }
-        };
+        });
 
-        runCommand(connectionListener);
+        return stopTimer(future.withTimeout(launchTimeout), timer);
     }
 
     @Override
@@ -965,123 +1430,131 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
     }
     
     public void requestStatus(final ResponseListener<Object> listener) {
-        try {
-            mMediaPlayer
-            .requestStatus(mApiClient)
-            .setResultCallback(
-                    new ResultCallback<RemoteMediaPlayer.MediaChannelResult>() {
-
-                        @Override
-                        public void onResult(MediaChannelResult result) {
-                            if (result.getStatus().isSuccess()) {
-                                Util.postSuccess(listener, result);
-                            }
-                            else {
-                                Util.postError(listener, new ServiceCommandError(0, "Failed to request status", result));
-                            }
-                        }
-                    });
-        } catch (Exception e) {
-            Util.postError(listener, new ServiceCommandError(0, "There is no media currently available", null));
-        }
+        asyncClient().requestStatus(mMediaPlayer).addListener(listener);
     }
 
     public void joinApplication(final ResponseListener<Object> listener) {
-        ConnectionListener connectionListener = new ConnectionListener() {
+        runAsync(new CastFuture.AsyncFunction<Void, Object>() {
 
             @Override
-            public void onConnected() {
-                try {
-                    mCastClient.joinApplication(mApiClient).setResultCallback(new ResultCallback<Cast.ApplicationConnectionResult>() {
-
-                        @Override
-                        public void onResult(ApplicationConnectionResult result) {
-                            if (result.getStatus().isSuccess()) {
-                                // TODO: Maybe there is better way to check current cast device is showing backdrop, but for now, if chromecast is showing backdrop, then requestStatus would never response.
-                                if (result.getApplicationMetadata() != null &&
-                                    result.getApplicationMetadata().getName() != null &&
-                                    !result.getApplicationMetadata().getName().equals("Backdrop") &&
-                                    mMediaPlayer != null && mApiClient != null) {
-
-                                    mMediaPlayer.requestStatus(mApiClient).setResultCallback(
-                                        new ResultCallback<RemoteMediaPlayer.MediaChannelResult>() {
-
-                                            @Override
-                                            public void onResult(MediaChannelResult result) {
-                                                Util.postSuccess(listener, result);
-                                            }
-                                    });
-                                }
-                                else {
-                                    Util.postSuccess(listener, result);
-                                }
+            public CastFuture<Object> apply(Void value) {
+                final CastAsyncClient client = asyncClient();
+
+                return client.joinApplication().then(new CastFuture.AsyncFunction<ApplicationConnectionResult, Object>() {
+
+                    @Override
+                    public CastFuture<Object> apply(final ApplicationConnectionResult result) {
+                        // TODO: Maybe there is better way to check current cast device is showing backdrop, but for now, if chromecast is showing backdrop, then requestStatus would never response.
+                        if (result.getApplicationMetadata() == null ||
+                            result.getApplicationMetadata().getName() == null ||
+                            result.getApplicationMetadata().getName().equals("Backdrop") ||
+                            mMediaPlayer == null || mApiClient == null) {
+                            return CastFuture.<Object>succeeded(result);
+                        }
+
+                        return client.requestStatus(mMediaPlayer).map(new CastFuture.Function<MediaChannelResult, Object>() {
+
+                            @Override
+                            public Object apply(MediaChannelResult status) {
+                                return status;
                             }
-                            else {
-                                Util.postError(listener, new ServiceCommandError(0, "Failed to join application", result));
+                        }).recover(new CastFuture.AsyncFunction<ServiceCommandError, Object>() {
+
+                            @Override
+                            public CastFuture<Object> apply(ServiceCommandError error) {
+                                // the application is joined even without the media status
+                                return CastFuture.<Object>succeeded(result);
                             }
-                        }
-                    });
-                } catch (Exception e) {
-                    Util.postError(listener, new ServiceCommandError(0, "Unable to join", null));
-                }
+                        });
+                    }
+                });
             }
-        };
-
-        runCommand(connectionListener);
+        }).addListener(listener);
     }
 
     @Override
     public void joinWebApp(final LaunchSession webAppLaunchSession, final WebAppSession.LaunchListener listener) {
-        final ApplicationConnectionResultCallback webAppLaunchCallback = new ApplicationConnectionResultCallback(new LaunchWebAppListener() {
+        joinWebAppAsync(webAppLaunchSession).addListener(listener);
+    }
+
+    /**
+     * Joins the running web app, connects to it and requests the media status.
+     */
+    public CastFuture<WebAppSession> joinWebAppAsync(final LaunchSession webAppLaunchSession) {
+        final CastCommandMetrics.Timer timer = commandMetrics.start(CastCommandMetrics.Command.JOIN_WEB_APP);
+
+        launchingAppId = webAppLaunchSession.getAppId();
+
+        CastFuture<WebAppSession> future = runAsync(new CastFuture.AsyncFunction<Void, WebAppSession>() {
 
             @Override
-            public void onSuccess(final WebAppSession webAppSession) {
-                webAppSession.connect(new ResponseListener<Object>() {
+            public CastFuture<WebAppSession> apply(Void value) {
+                timer.onConnected();
+                final CastAsyncClient client = asyncClient();
+
+                return client.joinApplication(webAppLaunchSession.getAppId())
+                        .map(new CastFuture.Function<ApplicationConnectionResult, WebAppSession>() {
 
                     @Override
-                    public void onSuccess(Object object) {
-                        requestStatus(new ResponseListener<Object>() {
-                            @Override
-                            public void onSuccess(Object object) {
-                                Util.postSuccess(listener, webAppSession);
-                            }
+                    public WebAppSession apply(ApplicationConnectionResult result) {
+                        return createWebAppSession(result);
+                    }
+                }).then(new CastFuture.AsyncFunction<WebAppSession, WebAppSession>() {
+
+                    @Override
+                    public CastFuture<WebAppSession> apply(final WebAppSession webAppSession) {
+                        // the message channel and the media status don't depend on each other
+                        List<CastFuture<WebAppSession>> steps = new ArrayList<CastFuture<WebAppSession>>();
+                        steps.add(connectWebAppSession(webAppSession));
+                        steps.add(requestStatus(client, webAppSession));
+
+                        return CastFuture.all(steps).map(new CastFuture.Function<List<WebAppSession>, WebAppSession>() {
 
                             @Override
-                            public void onError(ServiceCommandError error) {
-                                // we sent success, because join is already succeeded.
-                                Util.postSuccess(listener, webAppSession);
+                            public WebAppSession apply(List<WebAppSession> sessions) {
+                                return webAppSession;
                             }
                         });
                     }
-
-                    @Override
-                    public void onError(ServiceCommandError error) {
-                        Util.postError(listener, error);
-                    }
                 });
             }
+        });
+
+        return stopTimer(future.withTimeout(launchTimeout), timer);
+    }
+
+    // the join has succeeded already, so the session is returned even if there is no status
+    private CastFuture<WebAppSession> requestStatus(CastAsyncClient client, final WebAppSession webAppSession) {
+        return client.requestStatus(mMediaPlayer).map(new CastFuture.Function<MediaChannelResult, WebAppSession>() {
 
             @Override
-            public void onFailure(ServiceCommandError error) {
-                Util.postError(listener, error);
+            public WebAppSession apply(MediaChannelResult result) {
+                return webAppSession;
             }
-        });
+        }).recover(new CastFuture.AsyncFunction<ServiceCommandError, WebAppSession>() {
 
-        launchingAppId = webAppLaunchSession.getAppId();
+            @Override
+            public CastFuture<WebAppSession> apply(ServiceCommandError error) {
+                return CastFuture.succeeded(webAppSession);
+            }
+        });
+    }
 
-        ConnectionListener connectionListener = new ConnectionListener() {
+    private CastFuture<WebAppSession> connectWebAppSession(final WebAppSession webAppSession) {
+        final CastFuture<WebAppSession> future = new CastFuture<WebAppSession>();
+        webAppSession.connect(new ResponseListener<Object>() {
 
             @Override
-            public void onConnected() {
-                try {
-                    mCastClient.joinApplication(mApiClient, webAppLaunchSession.getAppId()).setResultCallback(webAppLaunchCallback);
-                } catch (Exception e) {
-                    Util.postError(listener, new ServiceCommandError(0, "Unable to join", null));
-                }
+            public void onSuccess(Object object) {
+                future.complete(webAppSession);
             }
-        };
 
-        runCommand(connectionListener);
+            @Override
+            public void onError(ServiceCommandError error) {
+                future.fail(error);
+            }
+        });
+        return future;
     }
 
     @Override
@@ -1095,30 +1568,19 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
 
     @Override
     public void closeWebApp(LaunchSession launchSession, final ResponseListener<Object> listener) {
-        ConnectionListener connectionListener = new ConnectionListener() {
+        runAsync(new CastFuture.AsyncFunction<Void, Object>() {
 
             @Override
-            public void onConnected() {
-                try {
-                    mCastClient.stopApplication(mApiClient).setResultCallback(new ResultCallback<Status>() {
+            public CastFuture<Object> apply(Void value) {
+                return asyncClient().stopApplication().map(new CastFuture.Function<Status, Object>() {
 
-                        @Override
-                        public void onResult(Status status) {
-                            if (status.isSuccess()) {
-                                Util.postSuccess(listener, null);
-                            }
-                            else {
-                                Util.postError(listener, new ServiceCommandError(status.getStatusCode(), status.getStatusMessage(), status));
-                            }
-                        }
-                    });
-                } catch (Exception e) {
-                    Util.postError(listener, new ServiceCommandError(0, "Unable to stop", null));
-                }
+                    @Override
+                    public Object apply(Status status) {
+                        return null;
+                    }
+                });
             }
-        };
-
-        runCommand(connectionListener);
+        }).addListener(listener);
     }
 
     @Override
@@ -1155,76 +1617,44 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
 
     @Override
     public void volumeUp(final ResponseListener<Object> listener) {
-        getVolume(new VolumeListener() {
-
-            @Override
-            public void onSuccess(final Float volume) {
-                if (volume >= 1.0) {
-                    Util.postSuccess(listener, null);
-                }
-                else {
-                    float newVolume = (float)(volume + 0.01);
-
-                    if (newVolume > 1.0)
-                        newVolume = (float)1.0;
-
-                    setVolume(newVolume, listener);
-
-                    Util.postSuccess(listener, null);
-                }
-            }
-
-            @Override
-            public void onError(ServiceCommandError error) {
-                Util.postError(listener, error);
-            }
-        });
+        volumeCoalescer.adjustVolume(VOLUME_STEP, currentVolumeLevel, listener);
     }
 
     @Override
     public void volumeDown(final ResponseListener<Object> listener) {
-        getVolume(new VolumeListener() {
-
-            @Override
-            public void onSuccess(final Float volume) {
-                if (volume <= 0.0) {
-                    Util.postSuccess(listener, null);
-                }
-                else {
-                    float newVolume = (float)(volume - 0.01);
-
-                    if (newVolume < 0.0)
-                        newVolume = (float)0.0;
-
-                    setVolume(newVolume, listener);
-
-                    Util.postSuccess(listener, null);
-                }
-            }
-
-            @Override
-            public void onError(ServiceCommandError error) {
-                Util.postError(listener, error);
-            }
-        });
+        volumeCoalescer.adjustVolume(-VOLUME_STEP, currentVolumeLevel, listener);
     }
 
+    /**
+     * Sets the volume level. Calls made while a previous level isn't confirmed by the device
+     * are merged, only the latest level is sent.
+     */
     @Override
     public void setVolume(final float volume, final ResponseListener<Object> listener) {
+        volumeCoalescer.setVolume(volume, listener);
+    }
+
+    private void sendVolume(final float volume, final ResponseListener<Object> listener) {
+        final CastCommandMetrics.Timer timer = commandMetrics.start(CastCommandMetrics.Command.SET_VOLUME);
+
         ConnectionListener connectionListener = new ConnectionListener() {
 
             @Override
             public void onConnected() {
+                timer.onConnected();
                 try {
                     mCastClient.setVolume(mApiClient, volume);
+                    timer.onResponse(true);
                     Util.postSuccess(listener, null);
                 } catch (Exception e) {
+                    timer.onResponse(false);
+                    volumeCoalescer.onSendFailed();
                     Util.postError(listener, new ServiceCommandError(0, "setting volume level failed", null));
                 }
             }
         };
 
-        runCommand(connectionListener);
+        runCommand(connectionListener, listener);
     }
 
     @Override
@@ -1234,20 +1664,26 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
 
     @Override
     public void setMute(final boolean isMute, final ResponseListener<Object> listener) {
+        final CastCommandMetrics.Timer timer = commandMetrics.start(CastCommandMetrics.Command.SET_MUTE);
+
         ConnectionListener connectionListener = new ConnectionListener() {
 
             @Override
             public void onConnected() {
+                timer.onConnected();
                 try {
+                    // Cast API sends the mute without a result, like the volume
                     mCastClient.setMute(mApiClient, isMute);
+                    timer.onResponse(true);
                     Util.postSuccess(listener, null);
                 } catch (Exception e) {
+                    timer.onResponse(false);
                     Util.postError(listener, new ServiceCommandError(0, "setting mute status failed", null));
                 }
             }
         };
 
-        runCommand(connectionListener);
+        runCommand(connectionListener, listener);
     }
 
     @Override
@@ -1310,6 +1746,10 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
         public void onApplicationDisconnected(int statusCode) {
             Log.d(Util.T, "Cast.Listener.onApplicationDisconnected: " + statusCode);
 
+            queueActive = false;
+            // the listeners get Idle from the closed session
+            resetPlayState();
+
             if (currentAppId == null)
                 return;
 
@@ -1321,6 +1761,7 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
             webAppSession.handleAppClose();
 
             currentAppId = null;
+            currentSessionId = null;
         }
 
         @Override
@@ -1333,8 +1774,14 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
                         ApplicationMetadata applicationMetadata = null;
                         try {
                             applicationMetadata = mCastClient.getApplicationMetadata(mApiClient);
-                            if (applicationMetadata != null) {
-                                currentAppId = applicationMetadata.getApplicationId();
+                            String appId = applicationMetadata != null
+                                    ? applicationMetadata.getApplicationId() : null;
+                            if (appId == null || !appId.equals(currentAppId)) {
+                                // other application has been started, our session is over
+                                currentSessionId = null;
+                            }
+                            if (appId != null) {
+                                currentAppId = appId;
                             }
                         } catch (CastClientException e) {
                             Log.e(Util.T, "Error in onApplicationStatusChanged", e);
@@ -1343,7 +1790,7 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
                 }
             };
 
-            runCommand(connectionListener);
+            runEvent(connectionListener);
         }
 
         @Override
@@ -1359,30 +1806,26 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
                         e.printStackTrace();
                     }
 
-                    if (subscriptions.size() > 0) {
-                        for (URLServiceSubscription<?> subscription: subscriptions) {
-                            if (subscription.getTarget().equals(CAST_SERVICE_VOLUME_SUBSCRIPTION_NAME)) {
-                                for (int i = 0; i < subscription.getListeners().size(); i++) {
-                                    @SuppressWarnings("unchecked")
-                                    ResponseListener<Object> listener = (ResponseListener<Object>) subscription.getListeners().get(i);
+                    volumeCoalescer.onVolumeChanged(currentVolumeLevel);
 
-                                    Util.postSuccess(listener, currentVolumeLevel);
-                                }
-                            }
-                            else if (subscription.getTarget().equals(CAST_SERVICE_MUTE_SUBSCRIPTION_NAME)) {
-                                for (int i = 0; i < subscription.getListeners().size(); i++) {
-                                    @SuppressWarnings("unchecked")
-                                    ResponseListener<Object> listener = (ResponseListener<Object>) subscription.getListeners().get(i);
+                    // volume and mute listeners of one change are called by one UI task
+                    CastEventDispatcher.Batch batch = eventDispatcher.batch(CastEventDispatcher.Event.VOLUME);
+                    for (URLServiceSubscription<?> subscription : subscriptions.get(CastSubscriptionRegistry.Target.VOLUME)) {
+                        for (int i = 0; i < subscription.getListeners().size(); i++) {
+                            batch.addSuccess(subscription.getListeners().get(i), currentVolumeLevel);
+                        }
+                    }
 
-                                    Util.postSuccess(listener, currentMuteStatus);
-                                }
-                            }
+                    for (URLServiceSubscription<?> subscription : subscriptions.get(CastSubscriptionRegistry.Target.MUTE)) {
+                        for (int i = 0; i < subscription.getListeners().size(); i++) {
+                            batch.addSuccess(subscription.getListeners().get(i), currentMuteStatus);
                         }
                     }
+                    batch.post();
                 }
             };
 
-            runCommand(connectionListener);
+            runEvent(connectionListener);
         }
     }
 
@@ -1393,6 +1836,7 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
 
             mWaitingForReconnect = true;
             detachMediaPlayer();
+            reconnectEngine.start();
         }
 
         @Override
@@ -1403,8 +1847,16 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
 
             if (mApiClient != null && mApiClient.isConnected()) {
                 try {
-                    mCastClient.joinApplication(mApiClient)
-                            .setResultCallback(new ResultCallback<ApplicationConnectionResult>() {
+                    PendingResult<ApplicationConnectionResult> pendingResult;
+                    if (mWaitingForReconnect && currentAppId != null && currentSessionId != null) {
+                        // resume the session which was running before the connection was lost
+                        pendingResult = mCastClient.joinApplication(mApiClient, currentAppId,
+                                currentSessionId);
+                    } else {
+                        pendingResult = mCastClient.joinApplication(mApiClient);
+                    }
+
+                    pendingResult.setResultCallback(new ResultCallback<ApplicationConnectionResult>() {
 
                                 @Override
                                 public void onResult(ApplicationConnectionResult result) {
@@ -1419,6 +1871,11 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
 
         private void onJoinApplicationResult(ApplicationConnectionResult result) {
             if (result.getStatus().isSuccess()) {
+                currentSessionId = result.getSessionId();
+                if (result.getApplicationMetadata() != null) {
+                    currentAppId = result.getApplicationMetadata().getApplicationId();
+                }
+
                 // TODO: Maybe there is better way to check current cast device is
                 // showing backdrop, but for now, if chromecast is showing backdrop,
                 // then requestStatus would never response.
@@ -1441,6 +1898,9 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
                 }
             }
             else {
+                // the session is gone, the next media request has to launch the receiver
+                currentAppId = null;
+                currentSessionId = null;
                 joinFinished();
             }
         }
@@ -1448,6 +1908,7 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
         private void joinFinished() {
             if (mWaitingForReconnect) {
                 mWaitingForReconnect = false;
+                reconnectEngine.onReconnected();
             }
             else {
                 connected = true;
@@ -1455,12 +1916,7 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
                 reportConnected(true);
             }
 
-            if (!commandQueue.isEmpty()) {
-                for (ConnectionListener listener : commandQueue) {
-                    listener.onConnected();
-                    commandQueue.remove(listener);
-                }
-            }
+            commandQueue.runAll();
         }
     }
 
@@ -1470,10 +1926,16 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
             Log.d(Util.T, "ConnectionFailedListener.onConnectionFailed " + (result != null ? result: ""));
 
             detachMediaPlayer();
-            connected = false;
-            mWaitingForReconnect = false;
             mApiClient = null;
 
+            if ((connected || mWaitingForReconnect) && reconnectEngine.start()) {
+                // the connection was lost, the service stays connected while reconnecting
+                mWaitingForReconnect = true;
+                return;
+            }
+
+            connected = false;
+            mWaitingForReconnect = false;
 
             Util.runOnUI(new Runnable() {
 
@@ -1489,45 +1951,58 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
         }
     }
 
-    private class ApplicationConnectionResultCallback implements
-            ResultCallback<Cast.ApplicationConnectionResult> {
-        LaunchWebAppListener listener;
+    CastAsyncClient asyncClient() {
+        return new CastAsyncClient(mCastClient, mApiClient);
+    }
 
-        public ApplicationConnectionResultCallback(LaunchWebAppListener listener) {
-            this.listener = listener;
-        }
+    private CastFuture<WebAppSession> launchApplication(CastAsyncClient client, String appId,
+                                                        boolean relaunchIfRunning) {
+        LaunchOptions options = new LaunchOptions();
+        options.setRelaunchIfRunning(relaunchIfRunning);
 
-        @Override
-        public void onResult(ApplicationConnectionResult result) {
-            Status status = result.getStatus();
+        return client.launchApplication(appId, options).map(new CastFuture.Function<ApplicationConnectionResult, WebAppSession>() {
 
-            if (status.isSuccess()) {
-                ApplicationMetadata applicationMetadata = result.getApplicationMetadata();
-                currentAppId = applicationMetadata.getApplicationId();
+            @Override
+            public WebAppSession apply(ApplicationConnectionResult result) {
+                return createWebAppSession(result);
+            }
+        });
+    }
 
-                LaunchSession launchSession = LaunchSession.launchSessionForAppId(applicationMetadata.getApplicationId());
-                launchSession.setAppName(applicationMetadata.getName());
-                launchSession.setSessionId(result.getSessionId());
-                launchSession.setSessionType(LaunchSessionType.WebApp);
-                launchSession.setService(CastService.this);
+    // registers the session of a launched or joined application
+    private CastWebAppSession createWebAppSession(ApplicationConnectionResult result) {
+        ApplicationMetadata applicationMetadata = result.getApplicationMetadata();
+        currentAppId = applicationMetadata.getApplicationId();
+        currentSessionId = result.getSessionId();
 
-                CastWebAppSession webAppSession = new CastWebAppSession(launchSession, CastService.this);
-                webAppSession.setMetadata(applicationMetadata);
+        LaunchSession launchSession = LaunchSession.launchSessionForAppId(applicationMetadata.getApplicationId());
+        launchSession.setAppName(applicationMetadata.getName());
+        launchSession.setSessionId(result.getSessionId());
+        launchSession.setSessionType(LaunchSessionType.WebApp);
+        launchSession.setService(CastService.this);
 
-                sessions.put(applicationMetadata.getApplicationId(), webAppSession);
+        CastWebAppSession webAppSession = new CastWebAppSession(launchSession, CastService.this);
+        webAppSession.setMetadata(applicationMetadata);
 
-                if (listener != null) {
-                    listener.onSuccess(webAppSession);
-                }
+        sessions.put(applicationMetadata.getApplicationId(), webAppSession);
+        launchingAppId = null;
+
+        return webAppSession;
+    }
+
+    private <T> CastFuture<T> stopTimer(CastFuture<T> future, final CastCommandMetrics.Timer timer) {
+        return future.addCallback(new CastFuture.Callback<T>() {
 
-                launchingAppId = null;
+            @Override
+            public void onSuccess(T result) {
+                timer.onResponse(true);
             }
-            else {
-                if (listener != null) {
-                    listener.onFailure(new ServiceCommandError(status.getStatusCode(), status.getStatusMessage(), status));
-                }
+
+            @Override
+            public void onFailure(ServiceCommandError error) {
+                timer.onResponse(false);
             }
-        }
+        });
     }
 
     @Override
@@ -1563,10 +2038,80 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
         URLServiceSubscription<PlayStateListener> request = new URLServiceSubscription<PlayStateListener>(this, PLAY_STATE, null, null);
         request.addListener(listener);
         addSubscription(request);
+        postCurrentPlayState(listener);
+
+        return request;
+    }
+
+    /**
+     * Subscribes to play state changes, delivering at most one change per interval. A change
+     * during the interval is delivered when the interval is over, so the listener always gets
+     * the last state.
+     *
+     * @param minInterval minimum time between two deliveries in milliseconds
+     */
+    public ServiceSubscription<PlayStateListener> subscribePlayState(PlayStateListener listener,
+                                                                     long minInterval) {
+        CastPlayStateSubscription request = new CastPlayStateSubscription(this, eventDispatcher, minInterval);
+        request.addListener(listener);
+        addSubscription(request);
+
+        PlayStateStatus status = lastPlayState;
+        if (status != null) {
+            request.deliver(status);
+        }
 
         return request;
     }
 
+    // the state is sent on changes only, so new listeners get the known one
+    private void postCurrentPlayState(PlayStateListener listener) {
+        PlayStateStatus status = lastPlayState;
+        if (status != null) {
+            Util.postSuccess(listener, status);
+        }
+    }
+
+    /**
+     * Subscribes to the stream position. The position is estimated locally from the status
+     * updates of the receiver, so no requests are sent to the device. The listener gets the
+     * position every interval while the media is playing and once after every status update
+     * otherwise.
+     *
+     * @param interval time between two positions in milliseconds
+     */
+    public ServiceSubscription<PositionListener> subscribePosition(long interval,
+                                                                   PositionListener listener) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval has to be positive");
+        }
+
+        CastPositionSubscription request = new CastPositionSubscription(this, positionEngine, interval);
+        request.addListener(listener);
+        addSubscription(request);
+        request.onStatusUpdated();
+
+        return request;
+    }
+
+    /**
+     * Returns how far the local position estimate was from the position of the last status
+     * update, in milliseconds.
+     */
+    public long getPositionDrift() {
+        return positionEngine.getLastDrift();
+    }
+
+    private void resetPlayState() {
+        lastPlayState = null;
+        positionEngine.reset();
+        for (URLServiceSubscription<?> subscription : subscriptions.get(CastSubscriptionRegistry.Target.PLAY_STATE)) {
+            if (subscription instanceof CastPlayStateSubscription) {
+                ((CastPlayStateSubscription) subscription).reset();
+            }
+        }
+    }
+
     private void addSubscription(URLServiceSubscription<?> subscription) {
         subscriptions.add(subscription);
     }
@@ -1576,21 +2121,143 @@ public class CastService extends DeviceService implements MediaPlayer, MediaCont
         subscriptions.remove(subscription);
     }
 
+    /**
+     * Returns a copy of the subscriptions. Use subscribe and unsubscribe to change them.
+     */
     public List<URLServiceSubscription<?>> getSubscriptions() {
-        return subscriptions;
+        return subscriptions.getAll();
     }
 
     public void setSubscriptions(List<URLServiceSubscription<?>> subscriptions) {
-        this.subscriptions = subscriptions;
+        this.subscriptions.clear();
+        for (URLServiceSubscription<?> subscription : subscriptions) {
+            this.subscriptions.add(subscription);
+        }
+    }
+
+    /**
+     * Returns the subscriptions grouped by target.
+     */
+    public CastSubscriptionRegistry getSubscriptionRegistry() {
+        return subscriptions;
+    }
+
+    /**
+     * Returns the dispatcher of subscription events, e.g. to read how much UI thread time the
+     * listeners take.
+     */
+    public CastEventDispatcher getEventDispatcher() {
+        return eventDispatcher;
+    }
+
+    /**
+     * Returns the queue of commands which wait for the connection, e.g. to change its capacity
+     * and timeout or to read its statistics.
+     */
+    public CastCommandQueue getCommandQueue() {
+        return commandQueue;
+    }
+
+    /**
+     * Returns the latency histograms of the commands. Recording is off until it's enabled with
+     * getCommandMetrics().setEnabled(true).
+     */
+    public CastCommandMetrics getCommandMetrics() {
+        return commandMetrics;
+    }
+
+    /**
+     * Returns the engine which reconnects the service after the connection is lost, e.g. to
+     * read reconnect latency or to disable proactive reconnect.
+     */
+    public CastReconnectEngine getReconnectEngine() {
+        return reconnectEngine;
+    }
+
+    private void onReconnectFailed() {
+        Log.w(Util.T, "Unable to reconnect to Google Cast device");
+
+        mWaitingForReconnect = false;
+        ServiceCommandError error = new ServiceCommandError(0, "Connection to Google Cast device has been lost", null);
+        commandQueue.cancelAll(error);
+
+        if (mApiClient != null) {
+            mApiClient.disconnect();
+            mApiClient = null;
+        }
+
+        if (connected) {
+            connected = false;
+            if (getListener() != null) {
+                getListener().onDisconnect(CastService.this, error);
+            }
+        }
+    }
+
+    private void notifyConnectionFailure(final ServiceCommandError error) {
+        Util.runOnUI(new Runnable() {
+
+            @Override
+            public void run() {
+                if (getListener() != null) {
+                    getListener().onConnectionFailure(CastService.this, error);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs a receiver event right away. Events which arrive while disconnected are dropped, so
+     * they don't take the queue capacity of user commands.
+     */
+    private void runEvent(ConnectionListener connectionListener) {
+        if (mApiClient != null && mApiClient.isConnected()) {
+            connectionListener.onConnected();
+        }
+        else {
+            Log.d(Util.T, "Skipping receiver event, the service is not connected");
+        }
+    }
+
+    /**
+     * Starts the command once the service is connected. If the connection fails or the command
+     * waits in the queue for too long, the future fails; a cancelled future isn't started.
+     */
+    private <T> CastFuture<T> runAsync(final CastFuture.AsyncFunction<Void, T> command) {
+        final CastFuture<T> future = new CastFuture<T>();
+
+        ConnectionListener connectionListener = new ConnectionListener() {
+
+            @Override
+            public void onConnected() {
+                if (!future.isDone()) {
+                    future.follow(command.apply(null));
+                }
+            }
+        };
+
+        runCommand(connectionListener, new ResponseListener<Object>() {
+
+            @Override
+            public void onSuccess(Object object) {
+            }
+
+            @Override
+            public void onError(ServiceCommandError error) {
+                future.fail(error);
+            }
+        });
+        return future;
     }
 
-    private void runCommand(ConnectionListener connectionListener) {
+    private void runCommand(ConnectionListener connectionListener, ResponseListener<?> listener) {
         if (mApiClient != null && mApiClient.isConnected()) {
             connectionListener.onConnected();
         }
         else {
+            // queued first, so a connection which fails right away fails the command too
+            commandQueue.add(connectionListener, listener);
             connect();
-            commandQueue.add(connectionListener);
         }
     }
 
@@ -0,0 +1,369 @@
+/*
+ * CastServiceGroup
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.connectsdk.core.Util;
+import com.connectsdk.service.capability.listeners.ResponseListener;
+import com.connectsdk.service.command.ServiceCommandError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sends the same command to many CastServices at once, e.g. to all devices in a venue. The
+ * commands are sent on the UI thread, as CastService expects, and complete asynchronously. Up to
+ * getMaxParallel() commands wait for a response at the same time; a new one is sent as soon as
+ * one completes. The listener gets one Result with the outcome and latency of every device.
+ */
+public class CastServiceGroup {
+
+    public static final int DEFAULT_MAX_PARALLEL = 8;
+
+    public static final long DEFAULT_TIMEOUT = 10000;
+
+    public static final int TIMEOUT_ERROR_CODE = 408;
+
+    /**
+     * Command sent to every service of the group. It has to notify the listener once.
+     */
+    public interface Command {
+        void execute(CastService service, ResponseListener<Object> listener);
+    }
+
+    public interface ResultListener {
+        void onResult(Result result);
+    }
+
+    /**
+     * Outcome of a command on one device. Latency is the time from sending the command until
+     * its success or error callback, in milliseconds.
+     */
+    public static class DeviceResult {
+        private final CastService service;
+        private final ServiceCommandError error;
+        private final long latency;
+
+        DeviceResult(CastService service, ServiceCommandError error, long latency) {
+            this.service = service;
+            this.error = error;
+            this.latency = latency;
+        }
+
+        public CastService getService() {
+            return service;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        public ServiceCommandError getError() {
+            return error;
+        }
+
+        public long getLatency() {
+            return latency;
+        }
+    }
+
+    public static class Result {
+        private final List<DeviceResult> results;
+        private final long totalTime;
+
+        Result(List<DeviceResult> results, long totalTime) {
+            this.results = Collections.unmodifiableList(results);
+            this.totalTime = totalTime;
+        }
+
+        /**
+         * Returns the results in the order of the services of the group.
+         */
+        public List<DeviceResult> getResults() {
+            return results;
+        }
+
+        public boolean isSuccess() {
+            return getFailures().isEmpty();
+        }
+
+        public List<DeviceResult> getFailures() {
+            List<DeviceResult> failures = new ArrayList<DeviceResult>();
+            for (DeviceResult result : results) {
+                if (!result.isSuccess()) {
+                    failures.add(result);
+                }
+            }
+            return failures;
+        }
+
+        /**
+         * Returns the time from the start of the command to the last response, in milliseconds.
+         */
+        public long getTotalTime() {
+            return totalTime;
+        }
+    }
+
+    private final List<CastService> services;
+
+    private int maxParallel = DEFAULT_MAX_PARALLEL;
+
+    private long timeout = DEFAULT_TIMEOUT;
+
+    public CastServiceGroup(Collection<CastService> services) {
+        this.services = Collections.unmodifiableList(new ArrayList<CastService>(services));
+    }
+
+    public CastServiceGroup(CastService... services) {
+        this(Arrays.asList(services));
+    }
+
+    public List<CastService> getServices() {
+        return services;
+    }
+
+    public synchronized int getMaxParallel() {
+        return maxParallel;
+    }
+
+    /**
+     * Sets how many commands can wait for a response at the same time. Applies to the next
+     * command.
+     */
+    public synchronized void setMaxParallel(int maxParallel) {
+        if (maxParallel < 1) {
+            throw new IllegalArgumentException("At least one parallel command is required");
+        }
+        this.maxParallel = maxParallel;
+    }
+
+    public synchronized long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets how long to wait for the response of one device, in milliseconds.
+     */
+    public synchronized void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public void play(ResultListener listener) {
+        execute(new Command() {
+
+            @Override
+            public void execute(CastService service, ResponseListener<Object> listener) {
+                service.play(listener);
+            }
+        }, listener);
+    }
+
+    public void pause(ResultListener listener) {
+        execute(new Command() {
+
+            @Override
+            public void execute(CastService service, ResponseListener<Object> listener) {
+                service.pause(listener);
+            }
+        }, listener);
+    }
+
+    public void stop(ResultListener listener) {
+        execute(new Command() {
+
+            @Override
+            public void execute(CastService service, ResponseListener<Object> listener) {
+                service.stop(listener);
+            }
+        }, listener);
+    }
+
+    public void setVolume(final float volume, ResultListener listener) {
+        execute(new Command() {
+
+            @Override
+            public void execute(CastService service, ResponseListener<Object> listener) {
+                service.setVolume(volume, listener);
+            }
+        }, listener);
+    }
+
+    public void setMute(final boolean isMute, ResultListener listener) {
+        execute(new Command() {
+
+            @Override
+            public void execute(CastService service, ResponseListener<Object> listener) {
+                service.setMute(isMute, listener);
+            }
+        }, listener);
+    }
+
+    /**
+     * Sends the command to all services. The command and the listener are called on the UI
+     * thread.
+     */
+    public void execute(Command command, ResultListener listener) {
+        final Execution execution;
+
+        synchronized (this) {
+            execution = new Execution(command, listener, maxParallel, timeout);
+        }
+
+        Util.runOnUI(new Runnable() {
+
+            @Override
+            public void run() {
+                execution.start();
+            }
+        });
+    }
+
+    /**
+     * One command sent to all services. Its state is only used on the UI thread.
+     */
+    private class Execution {
+        final Command command;
+        final ResultListener listener;
+        final int parallel;
+        final long timeout;
+        final Handler handler = new Handler(Looper.getMainLooper());
+
+        final DeviceResult[] results = new DeviceResult[services.size()];
+        int nextIndex;
+        int inFlight;
+        int remaining = services.size();
+        long startTime;
+
+        Execution(Command command, ResultListener listener, int parallel, long timeout) {
+            this.command = command;
+            this.listener = listener;
+            this.parallel = parallel;
+            this.timeout = timeout;
+        }
+
+        void start() {
+            startTime = SystemClock.elapsedRealtime();
+            if (services.isEmpty()) {
+                deliver();
+                return;
+            }
+
+            dispatch();
+        }
+
+        void dispatch() {
+            while (inFlight < parallel && nextIndex < services.size()) {
+                send(nextIndex++);
+            }
+        }
+
+        void send(int index) {
+            DeviceListener responseListener = new DeviceListener(index);
+            inFlight++;
+            handler.postDelayed(responseListener.timeout, timeout);
+
+            try {
+                command.execute(services.get(index), responseListener);
+            } catch (RuntimeException e) {
+                responseListener.onError(new ServiceCommandError(0, e.getMessage(), e));
+            }
+        }
+
+        void complete(DeviceListener deviceListener, long responseTime, ServiceCommandError error) {
+            if (deviceListener.done) {
+                return;
+            }
+            deviceListener.done = true;
+            handler.removeCallbacks(deviceListener.timeout);
+
+            int index = deviceListener.index;
+            results[index] = new DeviceResult(services.get(index), error,
+                    responseTime - deviceListener.sendTime);
+            inFlight--;
+            remaining--;
+
+            if (remaining == 0) {
+                deliver();
+            } else {
+                dispatch();
+            }
+        }
+
+        void deliver() {
+            if (listener != null) {
+                listener.onResult(new Result(Arrays.asList(results),
+                        SystemClock.elapsedRealtime() - startTime));
+            }
+        }
+
+        /**
+         * Listener of one device. The response time is taken when the callback is called, which
+         * can be on any thread; the result is then recorded on the UI thread.
+         */
+        private class DeviceListener implements ResponseListener<Object> {
+            final int index;
+            final long sendTime = SystemClock.elapsedRealtime();
+
+            final Runnable timeout = new Runnable() {
+
+                @Override
+                public void run() {
+                    complete(DeviceListener.this, SystemClock.elapsedRealtime(),
+                            new ServiceCommandError(TIMEOUT_ERROR_CODE,
+                                    "Device didn't respond in time", null));
+                }
+            };
+
+            boolean done;
+
+            DeviceListener(int index) {
+                this.index = index;
+            }
+
+            @Override
+            public void onSuccess(Object object) {
+                finish(null);
+            }
+
+            @Override
+            public void onError(ServiceCommandError error) {
+                finish(error);
+            }
+
+            private void finish(final ServiceCommandError error) {
+                final long responseTime = SystemClock.elapsedRealtime();
+                Util.runOnUI(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        complete(DeviceListener.this, responseTime, error);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * CastSubscriptionRegistry
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import com.connectsdk.service.command.URLServiceSubscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Subscriptions of CastService grouped by target. Every target has its own copy-on-write
+ * array, so an event walks the subscriptions of its target only, without a lock, while other
+ * threads subscribe or unsubscribe.
+ */
+public class CastSubscriptionRegistry {
+
+    public enum Target {
+        PLAY_STATE(CastService.PLAY_STATE),
+        INFO("info"),
+        VOLUME(CastService.CAST_SERVICE_VOLUME_SUBSCRIPTION_NAME),
+        MUTE(CastService.CAST_SERVICE_MUTE_SUBSCRIPTION_NAME),
+        POSITION(CastService.CAST_SERVICE_POSITION_SUBSCRIPTION_NAME),
+        // subscriptions with any other target
+        OTHER(null);
+
+        private static final Target[] VALUES = values();
+
+        private final String name;
+
+        Target(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public static Target fromName(String name) {
+            for (Target target : VALUES) {
+                if (target.name != null && target.name.equalsIgnoreCase(name)) {
+                    return target;
+                }
+            }
+            return OTHER;
+        }
+    }
+
+    private static final URLServiceSubscription<?>[] EMPTY = new URLServiceSubscription<?>[0];
+
+    private final AtomicReferenceArray<URLServiceSubscription<?>[]> subscriptions =
+            new AtomicReferenceArray<URLServiceSubscription<?>[]>(Target.VALUES.length);
+
+    public CastSubscriptionRegistry() {
+        clear();
+    }
+
+    public synchronized void add(URLServiceSubscription<?> subscription) {
+        int index = Target.fromName(subscription.getTarget()).ordinal();
+        URLServiceSubscription<?>[] current = subscriptions.get(index);
+
+        URLServiceSubscription<?>[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = subscription;
+        subscriptions.set(index, updated);
+    }
+
+    /**
+     * @return true if the subscription was registered
+     */
+    public synchronized boolean remove(URLServiceSubscription<?> subscription) {
+        int index = Target.fromName(subscription.getTarget()).ordinal();
+        URLServiceSubscription<?>[] current = subscriptions.get(index);
+
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                URLServiceSubscription<?>[] updated;
+                if (current.length == 1) {
+                    updated = EMPTY;
+                } else {
+                    updated = new URLServiceSubscription<?>[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                }
+                subscriptions.set(index, updated);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the subscriptions of the target in the order they were added. The array is
+     * shared and must not be modified.
+     */
+    public URLServiceSubscription<?>[] get(Target target) {
+        return subscriptions.get(target.ordinal());
+    }
+
+    /**
+     * Returns a copy of all subscriptions.
+     */
+    public List<URLServiceSubscription<?>> getAll() {
+        List<URLServiceSubscription<?>> all = new ArrayList<URLServiceSubscription<?>>();
+        for (int i = 0; i < subscriptions.length(); i++) {
+            all.addAll(Arrays.asList(subscriptions.get(i)));
+        }
+        return all;
+    }
+
+    public boolean isEmpty() {
+        for (int i = 0; i < subscriptions.length(); i++) {
+            if (subscriptions.get(i).length > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < subscriptions.length(); i++) {
+            subscriptions.set(i, EMPTY);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * CastVolumeCoalescer
+ * Connect SDK
+ *
+ * Copyright (c) 2014 LG Electronics.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.connectsdk.service;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.connectsdk.core.Util;
+import com.connectsdk.service.capability.listeners.ResponseListener;
+import com.connectsdk.service.command.ServiceCommandError;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges rapid volume changes, e.g. while a volume key is held. It keeps a local target level
+ * and has at most one volume command in flight. Changes made meanwhile only update the target,
+ * which is sent once the device reports the level in flight by onVolumeChanged or after a
+ * timeout. Listeners of merged changes get the result of the command which sends the level
+ * covering their change.
+ */
+class CastVolumeCoalescer {
+
+    interface Sender {
+        void send(float level, ResponseListener<Object> listener);
+    }
+
+    // the device reports levels which are slightly different from the requested ones
+    static final float LEVEL_TOLERANCE = 0.005f;
+
+    static final long CONFIRM_TIMEOUT = 1000;
+
+    private final Sender sender;
+
+    private Handler handler;
+
+    private final Runnable confirmTimeout = new Runnable() {
+
+        @Override
+        public void run() {
+            onConfirmed(Float.NaN, null);
+        }
+    };
+
+    private float target;
+    private boolean hasTarget;
+    private boolean inFlight;
+    private boolean pending;
+    private float sentLevel;
+    private List<ResponseListener<Object>> pendingListeners = new ArrayList<ResponseListener<Object>>();
+
+    private long requestCount;
+    private long sentCount;
+
+    CastVolumeCoalescer(Sender sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * Sets the target level. The listener gets the result of the command which sends this
+     * level or a later one replacing it.
+     */
+    void setVolume(float level, ResponseListener<Object> listener) {
+        boolean send;
+        float newTarget = clamp(level);
+
+        synchronized (this) {
+            requestCount++;
+            target = newTarget;
+            hasTarget = true;
+
+            send = !inFlight;
+            if (send) {
+                startSending();
+            } else {
+                pending = true;
+                if (listener != null) {
+                    pendingListeners.add(listener);
+                }
+            }
+        }
+
+        if (send) {
+            sender.send(newTarget, listener);
+        }
+    }
+
+    /**
+     * Changes the target level by the step. The current level is used as the base when there
+     * is no target.
+     */
+    void adjustVolume(float step, float currentLevel, ResponseListener<Object> listener) {
+        float base;
+        synchronized (this) {
+            base = hasTarget ? target : currentLevel;
+        }
+
+        float level = clamp(base + step);
+        if (level == base) {
+            Util.postSuccess(listener, null);
+            return;
+        }
+        setVolume(level, listener);
+    }
+
+    /**
+     * Called with the level reported by the device.
+     */
+    void onVolumeChanged(float level) {
+        onConfirmed(level, null);
+    }
+
+    /**
+     * Called when sending a level has failed, the next pending level is sent anyway.
+     */
+    void onSendFailed() {
+        onConfirmed(Float.NaN, new ServiceCommandError(0, "setting volume level failed", null));
+    }
+
+    synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Returns the number of volume commands sent to the device.
+     */
+    synchronized long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * Drops the pending level, its listeners get the error.
+     */
+    void reset(ServiceCommandError error) {
+        List<ResponseListener<Object>> listeners;
+
+        synchronized (this) {
+            hasTarget = false;
+            inFlight = false;
+            pending = false;
+            listeners = takePendingListeners();
+            if (handler != null) {
+                handler.removeCallbacks(confirmTimeout);
+            }
+        }
+
+        for (ResponseListener<Object> listener : listeners) {
+            Util.postError(listener, error);
+        }
+    }
+
+    /**
+     * @param error the error of the level in flight if sending it has failed
+     */
+    private void onConfirmed(float level, ServiceCommandError error) {
+        float next;
+        List<ResponseListener<Object>> listeners;
+
+        synchronized (this) {
+            if (!inFlight) {
+                // changed by another sender, follow the device
+                if (!Float.isNaN(level)) {
+                    hasTarget = false;
+                }
+                return;
+            }
+
+            if (!Float.isNaN(level) && Math.abs(level - sentLevel) >= LEVEL_TOLERANCE) {
+                // an earlier level or a change by another sender, wait for the level in flight
+                return;
+            }
+
+            getHandler().removeCallbacks(confirmTimeout);
+
+            listeners = takePendingListeners();
+            if (!pending || Math.abs(target - sentLevel) < LEVEL_TOLERANCE) {
+                inFlight = false;
+                pending = false;
+                if (!Float.isNaN(level)) {
+                    // nothing is waiting, the device level is the truth now
+                    hasTarget = false;
+                }
+                next = Float.NaN;
+            } else {
+                pending = false;
+                next = target;
+                startSending();
+            }
+        }
+
+        if (!Float.isNaN(next)) {
+            sender.send(next, combine(listeners));
+            return;
+        }
+
+        // the level in flight covers the merged changes
+        for (ResponseListener<Object> listener : listeners) {
+            if (error != null) {
+                Util.postError(listener, error);
+            } else {
+                Util.postSuccess(listener, null);
+            }
+        }
+    }
+
+    // should be called with the lock held
+    private List<ResponseListener<Object>> takePendingListeners() {
+        List<ResponseListener<Object>> listeners = pendingListeners;
+        pendingListeners = new ArrayList<ResponseListener<Object>>();
+        return listeners;
+    }
+
+    private static ResponseListener<Object> combine(final List<ResponseListener<Object>> listeners) {
+        if (listeners.isEmpty()) {
+            return null;
+        }
+        if (listeners.size() == 1) {
+            return listeners.get(0);
+        }
+        return new ResponseListener<Object>() {
+
+            @Override
+            public void onSuccess(Object object) {
+                for (ResponseListener<Object> listener : listeners) {
+                    listener.onSuccess(object);
+                }
+            }
+
+            @Override
+            public void onError(ServiceCommandError error) {
+                for (ResponseListener<Object> listener : listeners) {
+                    listener.onError(error);
+                }
+            }
+        };
+    }
+
+    // should be called with the lock held
+    private void startSending() {
+        inFlight = true;
+        sentLevel = target;
+        sentCount++;
+
+        Handler handler = getHandler();
+        handler.removeCallbacks(confirmTimeout);
+        handler.postDelayed(confirmTimeout, CONFIRM_TIMEOUT);
+    }
+
+    private Handler getHandler() {
+        if (handler == null) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+        return handler;
+    }
+
+    private static float clamp(float level) {
+        return Math.max(0.0f, Math.min(1.0f, level));
+    }
+}
@@ -23,7 +23,9 @@ package com.connectsdk.service.sessions;
 import android.util.Log;
 
 import com.connectsdk.core.Util;
+import com.connectsdk.service.CastEventDispatcher;
 import com.connectsdk.service.CastService;
+import com.connectsdk.service.CastSubscriptionRegistry;
 import com.connectsdk.service.DeviceService;
 import com.connectsdk.service.capability.MediaPlayer;
 import com.connectsdk.service.capability.listeners.ResponseListener;
@@ -91,15 +93,13 @@ public class CastWebAppSession extends WebAppSession {
     }
 
     public void handleAppClose() {
-        for (URLServiceSubscription<?> subscription: service.getSubscriptions()) {
-            if (subscription.getTarget().equalsIgnoreCase("PlayState")) {
-                for (int i = 0; i < subscription.getListeners().size(); i++) {
-                    @SuppressWarnings("unchecked")
-                    ResponseListener<Object> listener = (ResponseListener<Object>) subscription.getListeners().get(i);
-                    Util.postSuccess(listener, PlayStateStatus.Idle);
-                }
+        CastEventDispatcher.Batch batch = service.getEventDispatcher().batch(CastEventDispatcher.Event.PLAY_STATE);
+        for (URLServiceSubscription<?> subscription : service.getSubscriptionRegistry().get(CastSubscriptionRegistry.Target.PLAY_STATE)) {
+            for (int i = 0; i < subscription.getListeners().size(); i++) {
+                batch.addSuccess(subscription.getListeners().get(i), PlayStateStatus.Idle);
             }
         }
+        batch.post();
 
         if (getWebAppSessionListener() != null) { 
             getWebAppSessionListener().onWebAppSessionDisconnect(this);
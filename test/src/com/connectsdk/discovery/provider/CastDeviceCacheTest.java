@@ -0,0 +1,142 @@
+package com.connectsdk.discovery.provider;
+
+import com.connectsdk.service.config.ServiceDescription;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastDeviceCacheTest {
+
+    private File file;
+
+    private CastDeviceCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("cast_devices", ".cache");
+        file.delete();
+        cache = new CastDeviceCache(file);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testLoadWithoutFile() {
+        // Test desc.: there is nothing to restore before the first save
+        Assert.assertTrue(cache.load().isEmpty());
+    }
+
+    @Test
+    public void testWriteAndLoad() {
+        // Test desc.: written services should be restored with all cached fields
+        ServiceDescription service = createService("uuid", "192.168.1.2", 8009, "Living Room");
+        cache.write(Arrays.asList(CastDeviceCache.Entry.fromServiceDescription(service)));
+
+        List<CastDeviceCache.Entry> entries = cache.load();
+
+        Assert.assertEquals(1, entries.size());
+        ServiceDescription restored = entries.get(0).toServiceDescription();
+        Assert.assertEquals("uuid", restored.getUUID());
+        Assert.assertEquals("192.168.1.2", restored.getIpAddress());
+        Assert.assertEquals(8009, restored.getPort());
+        Assert.assertEquals("Living Room", restored.getFriendlyName());
+        Assert.assertEquals("Chromecast", restored.getModelName());
+        Assert.assertNull(restored.getDevice());
+    }
+
+    @Test
+    public void testLoadAsync() throws InterruptedException {
+        // Test desc.: entries should be read in the background and posted to the UI thread
+        ServiceDescription service = createService("uuid", "192.168.1.2", 8009, "Living Room");
+        cache.write(Arrays.asList(CastDeviceCache.Entry.fromServiceDescription(service)));
+
+        List<CastDeviceCache.Entry> loaded = loadAsync();
+
+        Assert.assertNotNull(loaded);
+        Assert.assertEquals("uuid", loaded.get(0).uuid);
+    }
+
+    @Test
+    public void testClearAfterSave() throws InterruptedException {
+        // Test desc.: clear should win over a save requested before it, the write of the save
+        // shouldn't bring the file back
+        ServiceDescription service = createService("uuid", "192.168.1.2", 8009, "Living Room");
+        cache.write(Arrays.asList(CastDeviceCache.Entry.fromServiceDescription(service)));
+
+        cache.save(Arrays.asList(service));
+        cache.clear();
+        List<CastDeviceCache.Entry> loaded = loadAsync();
+
+        Assert.assertNotNull(loaded);
+        Assert.assertTrue(loaded.isEmpty());
+        Assert.assertFalse(file.exists());
+    }
+
+    @Test
+    public void testOldEntriesAreSkipped() {
+        // Test desc.: devices which weren't seen for a long time shouldn't be restored
+        ServiceDescription service = createService("uuid", "192.168.1.2", 8009, "Living Room");
+        service.setLastDetection(System.currentTimeMillis() - CastDeviceCache.MAX_ENTRY_AGE - 1);
+        cache.write(Arrays.asList(CastDeviceCache.Entry.fromServiceDescription(service)));
+
+        Assert.assertTrue(cache.load().isEmpty());
+    }
+
+    @Test
+    public void testUnknownVersionIsDiscarded() throws IOException {
+        // Test desc.: cache written in other format should be ignored and removed
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        out.writeInt(0x43415354);
+        out.writeInt(CastDeviceCache.VERSION + 1);
+        out.close();
+
+        Assert.assertTrue(cache.load().isEmpty());
+        Assert.assertFalse(file.exists());
+    }
+
+    // loads run on the writer thread after the saves and clears requested before them
+    private List<CastDeviceCache.Entry> loadAsync() throws InterruptedException {
+        final List<List<CastDeviceCache.Entry>> loaded = new ArrayList<List<CastDeviceCache.Entry>>();
+        cache.loadAsync(new CastDeviceCache.LoadListener() {
+            @Override
+            public void onLoaded(List<CastDeviceCache.Entry> entries) {
+                loaded.add(entries);
+            }
+        });
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (loaded.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        }
+        return loaded.isEmpty() ? null : loaded.get(0);
+    }
+
+    private ServiceDescription createService(String uuid, String ip, int port, String name) {
+        ServiceDescription service = new ServiceDescription("Chromecast", uuid, ip);
+        service.setPort(port);
+        service.setFriendlyName(name);
+        service.setModelName("Chromecast");
+        service.setLastDetection(System.currentTimeMillis());
+        return service;
+    }
+}
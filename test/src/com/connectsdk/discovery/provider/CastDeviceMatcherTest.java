@@ -0,0 +1,68 @@
+package com.connectsdk.discovery.provider;
+
+import com.google.android.gms.cast.CastDevice;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastDeviceMatcherTest {
+
+    @Test
+    public void testEmptyMatcherAcceptsAll() {
+        // Test desc.: matcher without criteria should accept any device
+        CastDeviceMatcher matcher = new CastDeviceMatcher.Builder().build();
+
+        Assert.assertTrue(matcher.matchesName("Living Room"));
+        Assert.assertTrue(matcher.matchesName(null));
+        Assert.assertTrue(matcher.matchesDevice(createDevice("Chromecast", false)));
+    }
+
+    @Test
+    public void testFriendlyNamePattern() {
+        // Test desc.: pattern should match the whole friendly name
+        CastDeviceMatcher matcher = new CastDeviceMatcher.Builder()
+                .setFriendlyNamePattern("Room \\d+")
+                .build();
+
+        Assert.assertTrue(matcher.matchesName("Room 12"));
+        Assert.assertFalse(matcher.matchesName("Meeting Room 12"));
+        Assert.assertFalse(matcher.matchesName(null));
+    }
+
+    @Test
+    public void testModelName() {
+        // Test desc.: model names should be compared case-insensitively
+        CastDeviceMatcher matcher = new CastDeviceMatcher.Builder()
+                .addModelName("Chromecast Ultra")
+                .addModelName("Chromecast Audio")
+                .build();
+
+        Assert.assertTrue(matcher.matchesDevice(createDevice("chromecast ultra", false)));
+        Assert.assertFalse(matcher.matchesDevice(createDevice("Chromecast", false)));
+        Assert.assertFalse(matcher.matchesDevice(null));
+    }
+
+    @Test
+    public void testCapabilities() {
+        // Test desc.: device should have all the required capabilities
+        CastDeviceMatcher matcher = new CastDeviceMatcher.Builder()
+                .addCapability(CastDevice.CAPABILITY_VIDEO_OUT)
+                .build();
+
+        Assert.assertTrue(matcher.matchesDevice(createDevice("Chromecast", true)));
+        Assert.assertFalse(matcher.matchesDevice(createDevice("Chromecast Audio", false)));
+    }
+
+    private CastDevice createDevice(String modelName, boolean videoOut) {
+        CastDevice device = Mockito.mock(CastDevice.class);
+        Mockito.when(device.getModelName()).thenReturn(modelName);
+        Mockito.when(device.hasCapability(CastDevice.CAPABILITY_VIDEO_OUT)).thenReturn(videoOut);
+        return device;
+    }
+}
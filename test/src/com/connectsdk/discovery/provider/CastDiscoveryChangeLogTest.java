@@ -0,0 +1,133 @@
+package com.connectsdk.discovery.provider;
+
+import com.connectsdk.service.config.ServiceDescription;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastDiscoveryChangeLogTest {
+
+    private CastDiscoveryChangeLog changeLog;
+
+    @Before
+    public void setUp() {
+        changeLog = new CastDiscoveryChangeLog(8);
+    }
+
+    @Test
+    public void testVersionIncreasesWithChanges() {
+        // Test desc.: every change should get the next version
+        Assert.assertEquals(0, changeLog.getVersion());
+
+        changeLog.serviceAdded(createService("first"));
+        changeLog.serviceUpdated(createService("first"));
+
+        Assert.assertEquals(2, changeLog.getVersion());
+    }
+
+    @Test
+    public void testSnapshotIsSharedUntilChange() {
+        // Test desc.: snapshot should be reused while the version is the same
+        List<ServiceDescription> services = new ArrayList<ServiceDescription>();
+        services.add(createService("first"));
+        changeLog.serviceAdded(services.get(0));
+
+        CastDiscoverySnapshot snapshot = changeLog.getSnapshot(services);
+        Assert.assertEquals(1, snapshot.getVersion());
+        Assert.assertEquals(1, snapshot.getServices().size());
+        Assert.assertSame(snapshot, changeLog.getSnapshot(services));
+
+        services.add(createService("second"));
+        changeLog.serviceAdded(services.get(1));
+
+        CastDiscoverySnapshot newSnapshot = changeLog.getSnapshot(services);
+        Assert.assertEquals(2, newSnapshot.getVersion());
+        Assert.assertEquals(2, newSnapshot.getServices().size());
+        Assert.assertEquals(1, snapshot.getServices().size());
+    }
+
+    @Test
+    public void testChangesSince() {
+        // Test desc.: delta should contain the net change of every service since the version
+        ServiceDescription known = createService("known");
+        ServiceDescription removed = createService("removed");
+        changeLog.serviceAdded(known);
+        changeLog.serviceAdded(removed);
+        long version = changeLog.getVersion();
+
+        ServiceDescription added = createService("added");
+        ServiceDescription flapping = createService("flapping");
+        changeLog.serviceAdded(added);
+        changeLog.serviceUpdated(added);
+        changeLog.serviceUpdated(known);
+        changeLog.serviceRemoved(removed);
+        changeLog.serviceAdded(flapping);
+        changeLog.serviceRemoved(flapping);
+
+        CastDiscoveryDelta delta = changeLog.getChangesSince(version);
+
+        Assert.assertFalse(delta.isReset());
+        Assert.assertEquals(version, delta.getFromVersion());
+        Assert.assertEquals(changeLog.getVersion(), delta.getVersion());
+        Assert.assertEquals(Arrays.asList(added), delta.getAdded());
+        Assert.assertEquals(Arrays.asList(known), delta.getUpdated());
+        Assert.assertEquals(Arrays.asList(removed), delta.getRemoved());
+    }
+
+    @Test
+    public void testNoChangesSinceCurrentVersion() {
+        // Test desc.: polling the current version should return an empty delta
+        changeLog.serviceAdded(createService("first"));
+
+        CastDiscoveryDelta delta = changeLog.getChangesSince(changeLog.getVersion());
+
+        Assert.assertTrue(delta.isEmpty());
+        Assert.assertFalse(delta.isReset());
+    }
+
+    @Test
+    public void testOverwrittenChangesResetDelta() {
+        // Test desc.: reader which is behind more than the kept changes should get a reset
+        for (int i = 0; i < 10; i++) {
+            changeLog.serviceAdded(createService("service" + i));
+        }
+
+        Assert.assertTrue(changeLog.getChangesSince(0).isReset());
+        Assert.assertFalse(changeLog.getChangesSince(2).isReset());
+    }
+
+    @Test
+    public void testResetDropsChanges() {
+        // Test desc.: after reset older versions should get a reset delta
+        changeLog.serviceAdded(createService("first"));
+        long version = changeLog.getVersion();
+
+        changeLog.reset();
+
+        Assert.assertTrue(changeLog.getChangesSince(version).isReset());
+
+        long resetVersion = changeLog.getVersion();
+        changeLog.serviceAdded(createService("second"));
+        Assert.assertEquals(1, changeLog.getChangesSince(resetVersion).getAdded().size());
+    }
+
+    @Test
+    public void testFutureVersionResetsDelta() {
+        // Test desc.: version which wasn't issued yet should get a reset delta
+        Assert.assertTrue(changeLog.getChangesSince(5).isReset());
+    }
+
+    private ServiceDescription createService(String uuid) {
+        return new ServiceDescription("Chromecast", uuid, "192.168.1.2");
+    }
+}
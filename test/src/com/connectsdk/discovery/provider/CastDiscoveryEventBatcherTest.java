@@ -0,0 +1,96 @@
+package com.connectsdk.discovery.provider;
+
+import com.connectsdk.service.config.ServiceDescription;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastDiscoveryEventBatcherTest {
+
+    private List<CastDiscoveryBatch> batches;
+
+    private CastDiscoveryEventBatcher batcher;
+
+    @Before
+    public void setUp() {
+        batches = new ArrayList<CastDiscoveryBatch>();
+        batcher = new CastDiscoveryEventBatcher(new CastDiscoveryEventBatcher.Sink() {
+            @Override
+            public void deliver(CastDiscoveryBatch batch) {
+                batches.add(batch);
+            }
+        });
+        // long window, batches are flushed manually in tests
+        batcher.setWindow(60000);
+    }
+
+    @Test
+    public void testEventsAreMergedIntoOneBatch() {
+        // Test desc.: all events within the window should be delivered as one batch
+        batcher.serviceAdded(createService("first"), true);
+        batcher.serviceAdded(createService("second"), true);
+        batcher.serviceAdded(createService("third"), false);
+        batcher.serviceRemoved(createService("fourth"));
+
+        batcher.flush();
+
+        Assert.assertEquals(1, batches.size());
+        CastDiscoveryBatch batch = batches.get(0);
+        Assert.assertEquals(2, batch.getAdded().size());
+        Assert.assertEquals(1, batch.getUpdated().size());
+        Assert.assertEquals(1, batch.getRemoved().size());
+    }
+
+    @Test
+    public void testAddAndRemoveCancelOut() {
+        // Test desc.: service added and removed within the window should not be reported
+        ServiceDescription service = createService("uuid");
+        batcher.serviceAdded(service, true);
+        batcher.serviceAdded(service, false);
+        batcher.serviceRemoved(service);
+
+        batcher.flush();
+
+        Assert.assertTrue(batches.isEmpty());
+    }
+
+    @Test
+    public void testRemoveAndAddBecomesUpdate() {
+        // Test desc.: known service removed and found again should be reported as updated
+        ServiceDescription service = createService("uuid");
+        batcher.serviceRemoved(service);
+        batcher.serviceAdded(service, true);
+
+        batcher.flush();
+
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(1, batches.get(0).getUpdated().size());
+        Assert.assertTrue(batches.get(0).getAdded().isEmpty());
+        Assert.assertTrue(batches.get(0).getRemoved().isEmpty());
+    }
+
+    @Test
+    public void testUpdateAndRemoveBecomesRemove() {
+        ServiceDescription service = createService("uuid");
+        batcher.serviceAdded(service, false);
+        batcher.serviceRemoved(service);
+
+        batcher.flush();
+
+        Assert.assertEquals(1, batches.get(0).getRemoved().size());
+        Assert.assertTrue(batches.get(0).getUpdated().isEmpty());
+    }
+
+    private ServiceDescription createService(String uuid) {
+        return new ServiceDescription("Chromecast", uuid, "192.168.1.2");
+    }
+}
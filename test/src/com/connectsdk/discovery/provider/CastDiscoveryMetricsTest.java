@@ -0,0 +1,106 @@
+package com.connectsdk.discovery.provider;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastDiscoveryMetricsTest {
+
+    private CastDiscoveryMetrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new CastDiscoveryMetrics();
+        metrics.onStart();
+    }
+
+    @Test
+    public void testTimeToFirstRoute() {
+        // Test desc.: time to first route is unknown until a route is added
+        Assert.assertEquals(-1, metrics.snapshot().timeToFirstRoute);
+
+        metrics.onRouteAdded("uuid");
+
+        Assert.assertTrue(metrics.snapshot().timeToFirstRoute >= 0);
+    }
+
+    @Test
+    public void testPerDeviceCounters() {
+        // Test desc.: adds, changes, removes and grace period hits should be counted per device
+        metrics.onRouteAdded("first");
+        metrics.onRouteRemoved("first");
+        metrics.onRouteAdded("first");
+        metrics.onGracePeriodHit("first");
+        metrics.onRouteChanged("first");
+        metrics.onRouteAdded("second");
+
+        CastDiscoveryMetrics.Snapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(3, snapshot.routesAdded);
+        Assert.assertEquals(1, snapshot.routesChanged);
+        Assert.assertEquals(1, snapshot.routesRemoved);
+        Assert.assertEquals(1, snapshot.gracePeriodHits);
+        Assert.assertEquals(2, snapshot.devices.size());
+
+        CastDiscoveryMetrics.DeviceSnapshot first = findDevice(snapshot, "first");
+        Assert.assertEquals(2, first.adds);
+        Assert.assertEquals(1, first.changes);
+        Assert.assertEquals(1, first.removes);
+        Assert.assertEquals(1, first.gracePeriodHits);
+        Assert.assertTrue(first.timeToDiscover >= 0);
+    }
+
+    @Test
+    public void testDispatchTime() {
+        // Test desc.: dispatch time should be summed and the maximum kept
+        metrics.onDispatch(100);
+        metrics.onDispatch(300);
+
+        CastDiscoveryMetrics.Snapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(2, snapshot.dispatchCount);
+        Assert.assertEquals(400, snapshot.dispatchTimeNanos);
+        Assert.assertEquals(300, snapshot.maxDispatchTimeNanos);
+    }
+
+    @Test
+    public void testReset() {
+        // Test desc.: reset should clear all counters and devices
+        metrics.onRouteAdded("uuid");
+        metrics.onDispatch(100);
+
+        metrics.reset();
+
+        CastDiscoveryMetrics.Snapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(-1, snapshot.timeToFirstRoute);
+        Assert.assertEquals(0, snapshot.routesAdded);
+        Assert.assertEquals(0, snapshot.dispatchCount);
+        Assert.assertTrue(snapshot.devices.isEmpty());
+    }
+
+    @Test
+    public void testToJSONObject() throws JSONException {
+        // Test desc.: snapshot should be exported with device entries
+        metrics.onRouteAdded("uuid");
+
+        JSONObject json = metrics.snapshot().toJSONObject();
+
+        Assert.assertEquals(1, json.getLong("routesAdded"));
+        Assert.assertEquals("uuid", json.getJSONArray("devices").getJSONObject(0).getString("uuid"));
+    }
+
+    private CastDiscoveryMetrics.DeviceSnapshot findDevice(CastDiscoveryMetrics.Snapshot snapshot,
+            String uuid) {
+        for (CastDiscoveryMetrics.DeviceSnapshot device : snapshot.devices) {
+            if (device.uuid.equals(uuid)) {
+                return device;
+            }
+        }
+        return null;
+    }
+}
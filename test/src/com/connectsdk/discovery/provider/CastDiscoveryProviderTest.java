@@ -7,6 +7,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -15,12 +16,22 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import android.content.Context;
-import android.support.v7.media.MediaRouteSelector;
-import android.support.v7.media.MediaRouter;
+import android.os.Bundle;
+import androidx.mediarouter.media.MediaRouteSelector;
+import androidx.mediarouter.media.MediaRouter;
 
+import com.connectsdk.discovery.DiscoveryFilter;
+import com.connectsdk.discovery.DiscoveryProvider;
 import com.connectsdk.discovery.DiscoveryProviderListener;
 import com.connectsdk.discovery.provider.CastDiscoveryProvider;
+import com.connectsdk.service.CastService;
 import com.connectsdk.service.config.ServiceDescription;
+import com.google.android.gms.cast.CastDevice;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
 
 
 @RunWith(RobolectricTestRunner.class)
@@ -50,6 +61,27 @@ public class CastDiscoveryProviderTest {
 
     }
 
+    /**
+     * Provider which counts decoded route extras and returns the given device
+     */
+    class DecodingCastDiscoveryProvider extends StubCastDiscoveryProvider {
+
+        int decodeCount;
+
+        CastDevice castDevice;
+
+        public DecodingCastDiscoveryProvider(Context context, CastDevice castDevice) {
+            super(context);
+            this.castDevice = castDevice;
+        }
+
+        @Override
+        protected CastDevice decodeCastDevice(Bundle extras) {
+            decodeCount++;
+            return castDevice;
+        }
+    }
+
     @Before
     public void setUp() {
         dp = new StubCastDiscoveryProvider(Robolectric.application);
@@ -73,6 +105,93 @@ public class CastDiscoveryProviderTest {
                 any(MediaRouter.Callback.class), eq(MediaRouter.CALLBACK_FLAG_REQUEST_DISCOVERY));
     }
 
+    @Test
+    public void testAdaptiveScanIsDisabledByDefault() {
+        // Test desc.: without adaptive scan discovery should always be active
+        Assert.assertFalse(dp.isAdaptiveScanEnabled());
+        Assert.assertEquals(CastDiscoveryProvider.ScanMode.ACTIVE, dp.getScanMode());
+
+        dp.setAppInForeground(false);
+        Assert.assertEquals(CastDiscoveryProvider.ScanMode.ACTIVE, dp.getScanMode());
+    }
+
+    @Test
+    public void testAdaptiveScanIsPassiveInBackground() throws Exception {
+        // Test desc.: adaptive scan should register MediaRouter callback without discovery
+        // request while the app is in background
+
+        // given
+        dp.setAdaptiveScanEnabled(true);
+        dp.setAppInForeground(false);
+
+        // when
+        dp.start();
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        // then
+        Assert.assertEquals(CastDiscoveryProvider.ScanMode.PASSIVE, dp.getScanMode());
+        verify(mediaRouter).addCallback(any(MediaRouteSelector.class),
+                any(MediaRouter.Callback.class), eq(0));
+    }
+
+    @Test
+    public void testAdaptiveScanIsActiveAfterForeground() throws Exception {
+        // Test desc.: coming back to foreground should turn active discovery on
+
+        // given
+        dp.setAdaptiveScanEnabled(true);
+        dp.setAppInForeground(false);
+        dp.start();
+
+        // when
+        dp.setAppInForeground(true);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        // then
+        Assert.assertEquals(CastDiscoveryProvider.ScanMode.ACTIVE, dp.getScanMode());
+        verify(mediaRouter).addCallback(any(MediaRouteSelector.class),
+                any(MediaRouter.Callback.class), eq(MediaRouter.CALLBACK_FLAG_REQUEST_DISCOVERY));
+    }
+
+    @Test
+    public void testAdaptiveScanDropsDiscoveryFlagInBackground() throws Exception {
+        // Test desc.: going to background should re-register the callback without discovery
+        // request instead of adding the flags to the registered one
+
+        // given
+        dp.setAdaptiveScanEnabled(true);
+        dp.start();
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        reset(mediaRouter);
+
+        // when
+        dp.setAppInForeground(false);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        // then
+        InOrder inOrder = inOrder(mediaRouter);
+        inOrder.verify(mediaRouter).removeCallback(any(MediaRouter.Callback.class));
+        inOrder.verify(mediaRouter).addCallback(any(MediaRouteSelector.class),
+                any(MediaRouter.Callback.class), eq(0));
+        verify(mediaRouter, never()).addCallback(any(MediaRouteSelector.class),
+                any(MediaRouter.Callback.class), eq(MediaRouter.CALLBACK_FLAG_REQUEST_DISCOVERY));
+    }
+
+    @Test
+    public void testTimeInScanMode() throws Exception {
+        // Test desc.: time should be counted only for the current mode while running
+        Assert.assertEquals(0, dp.getTimeInScanMode(CastDiscoveryProvider.ScanMode.ACTIVE));
+
+        dp.start();
+        Thread.sleep(20);
+        dp.stop();
+        long activeTime = dp.getTimeInScanMode(CastDiscoveryProvider.ScanMode.ACTIVE);
+        Thread.sleep(20);
+
+        Assert.assertEquals(activeTime, dp.getTimeInScanMode(CastDiscoveryProvider.ScanMode.ACTIVE));
+        Assert.assertEquals(0, dp.getTimeInScanMode(CastDiscoveryProvider.ScanMode.PASSIVE));
+    }
+
     @Test
     public void testStop() throws Exception {
         // Test desc.: stop should invoke MediaRouter removeCallback
@@ -112,6 +231,110 @@ public class CastDiscoveryProviderTest {
         Assert.assertEquals(1, dp.serviceListeners.size());
     }
 
+    @Test
+    public void testIsEmptyWithoutFilters() {
+        // Test desc.: provider without filters is empty
+        Assert.assertTrue(dp.isEmpty());
+    }
+
+    @Test
+    public void testAddDeviceFilter() {
+        // Test desc.: addDeviceFilter should save filter and provider shouldn't be empty
+        DiscoveryFilter filter = new DiscoveryFilter("Chromecast", "Chromecast");
+
+        dp.addDeviceFilter(filter);
+
+        Assert.assertFalse(dp.isEmpty());
+        Assert.assertEquals(1, dp.serviceFilters.size());
+    }
+
+    @Test
+    public void testRemoveDeviceFilter() {
+        // Test desc.: removeDeviceFilter should remove saved filter
+        DiscoveryFilter filter = new DiscoveryFilter("Chromecast", "Chromecast");
+        dp.addDeviceFilter(filter);
+
+        dp.removeDeviceFilter(filter);
+
+        Assert.assertTrue(dp.isEmpty());
+    }
+
+    @Test
+    public void testSetFilters() {
+        // Test desc.: setFilters should replace all filters
+        dp.addDeviceFilter(new DiscoveryFilter("Chromecast", "Chromecast"));
+
+        dp.setFilters(Arrays.asList(new DiscoveryFilter("First", "first"),
+                new DiscoveryFilter("Second", "second")));
+
+        Assert.assertEquals(2, dp.serviceFilters.size());
+    }
+
+    @Test
+    public void testFilteredModelIsNotReported() throws Exception {
+        // Test desc.: a route with a model which no Cast filter accepts shouldn't be reported
+        DecodingCastDiscoveryProvider provider = createDecodingProvider();
+        DiscoveryProviderListener listener = mock(DiscoveryProviderListener.class);
+        provider.addListener(listener);
+        provider.addDeviceFilter(new DiscoveryFilter("Chromecast", "Chromecast Audio"));
+
+        provider.mMediaRouterCallback.onRouteAdded(mediaRouter, createRoute("route", new Bundle()));
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Assert.assertTrue(provider.foundServices.isEmpty());
+        verify(listener, Mockito.never()).onServiceAdded(any(DiscoveryProvider.class),
+                any(ServiceDescription.class));
+    }
+
+    @Test
+    public void testDefaultFilterAcceptsCastDevices() throws Exception {
+        // Test desc.: the default filter of CastService should accept every Cast device
+        DecodingCastDiscoveryProvider provider = createDecodingProvider();
+        provider.addDeviceFilter(CastService.discoveryFilter());
+
+        provider.mMediaRouterCallback.onRouteAdded(mediaRouter, createRoute("route", new Bundle()));
+
+        Assert.assertNotNull(provider.foundServices.get("uuid"));
+    }
+
+    @Test
+    public void testFiltersOfOtherServicesReportNothing() throws Exception {
+        // Test desc.: filters which are all for other services shouldn't let Cast devices through
+        DecodingCastDiscoveryProvider provider = createDecodingProvider();
+        provider.setFilters(Arrays.asList(new DiscoveryFilter("DIAL", "urn:dial-multiscreen-org:service:dial:1")));
+
+        provider.mMediaRouterCallback.onRouteAdded(mediaRouter, createRoute("route", new Bundle()));
+
+        Assert.assertTrue(provider.foundServices.isEmpty());
+    }
+
+    @Test
+    public void testAddDeviceFilterRemovesServices() throws Exception {
+        // Test desc.: services found before a filter was added and not accepted by it should
+        // be removed
+        DecodingCastDiscoveryProvider provider = createDecodingProvider();
+        provider.mMediaRouterCallback.onRouteAdded(mediaRouter, createRoute("route", new Bundle()));
+        Assert.assertNotNull(provider.foundServices.get("uuid"));
+
+        provider.addDeviceFilter(new DiscoveryFilter("Chromecast", "Chromecast Audio"));
+
+        Assert.assertTrue(provider.foundServices.isEmpty());
+    }
+
+    @Test
+    public void testSetDeviceMatcherRemovesServices() {
+        // Test desc.: services which don't match the new matcher should be removed
+        ServiceDescription service = new ServiceDescription("Chromecast", "uuid", "192.168.1.2");
+        service.setFriendlyName("Kitchen");
+        dp.foundServices.put("uuid", service);
+
+        dp.setDeviceMatcher(new CastDeviceMatcher.Builder()
+                .setFriendlyNamePattern("Living Room")
+                .build());
+
+        Assert.assertTrue(dp.foundServices.isEmpty());
+    }
+
     @Test
     public void testRemoveListener() {
         // Test desc.: there is no listeners by default, addListener should save listener
@@ -123,5 +346,79 @@ public class CastDiscoveryProviderTest {
         Assert.assertTrue(dp.serviceListeners.isEmpty());
     }
 
+    @Test
+    public void testUnchangedRouteDecodesOnce() throws Exception {
+        // Test desc.: callbacks for a route whose extras didn't change should reuse the
+        // decoded device and shouldn't create new objects for the found service
+        DecodingCastDiscoveryProvider provider = createDecodingProvider();
+        MediaRouter.RouteInfo route = createRoute("route", new Bundle());
+
+        provider.mMediaRouterCallback.onRouteAdded(mediaRouter, route);
+        ServiceDescription service = provider.foundServices.get("uuid");
+
+        provider.mMediaRouterCallback.onRouteChanged(mediaRouter, route);
+        provider.mMediaRouterCallback.onRouteChanged(mediaRouter, route);
+
+        Assert.assertEquals(1, provider.decodeCount);
+        Assert.assertSame(service, provider.foundServices.get("uuid"));
+        Assert.assertEquals("192.168.1.2", service.getIpAddress());
+    }
 
+    @Test
+    public void testRouteWithNewExtrasIsDecoded() throws Exception {
+        // Test desc.: every new extras bundle means a new route descriptor and has to be
+        // decoded again
+        DecodingCastDiscoveryProvider provider = createDecodingProvider();
+        MediaRouter.RouteInfo route = createRoute("route", new Bundle());
+
+        provider.mMediaRouterCallback.onRouteAdded(mediaRouter, route);
+        ServiceDescription service = provider.foundServices.get("uuid");
+
+        when(route.getExtras()).thenReturn(new Bundle());
+        provider.mMediaRouterCallback.onRouteChanged(mediaRouter, route);
+        provider.mMediaRouterCallback.onRouteChanged(mediaRouter, route);
+        Assert.assertEquals(2, provider.decodeCount);
+
+        when(route.getExtras()).thenReturn(new Bundle());
+        provider.mMediaRouterCallback.onRouteChanged(mediaRouter, route);
+        Assert.assertEquals(3, provider.decodeCount);
+        // the device didn't change, so the found service is updated in place
+        Assert.assertSame(service, provider.foundServices.get("uuid"));
+    }
+
+    @Test
+    public void testLastDetectionIsWallClockTime() throws Exception {
+        // Test desc.: detection time comes from monotonic clock but should stay comparable
+        // with System.currentTimeMillis
+        DecodingCastDiscoveryProvider provider = createDecodingProvider();
+        long before = System.currentTimeMillis();
+
+        provider.mMediaRouterCallback.onRouteAdded(mediaRouter, createRoute("route", new Bundle()));
+
+        long lastDetection = provider.foundServices.get("uuid").getLastDetection();
+        Assert.assertTrue(Math.abs(lastDetection - before) < 1000);
+    }
+
+    private DecodingCastDiscoveryProvider createDecodingProvider() throws UnknownHostException {
+        CastDevice castDevice = mock(CastDevice.class, withSettings().stubOnly());
+        when(castDevice.getDeviceId()).thenReturn("uuid");
+        when(castDevice.getFriendlyName()).thenReturn("Living Room");
+        when(castDevice.getModelName()).thenReturn("Chromecast");
+        when(castDevice.getIpAddress()).thenReturn(
+                (Inet4Address) InetAddress.getByName("192.168.1.2"));
+
+        DecodingCastDiscoveryProvider provider =
+                new DecodingCastDiscoveryProvider(Robolectric.application, castDevice);
+        provider.setDeviceCacheEnabled(false);
+        return provider;
+    }
+
+    private MediaRouter.RouteInfo createRoute(String id, Bundle extras) {
+        // stub only mocks don't record invocations, so route floods stay cheap
+        MediaRouter.RouteInfo route = mock(MediaRouter.RouteInfo.class, withSettings().stubOnly());
+        when(route.getId()).thenReturn(id);
+        when(route.getName()).thenReturn("Living Room");
+        when(route.getExtras()).thenReturn(extras);
+        return route;
+    }
 }
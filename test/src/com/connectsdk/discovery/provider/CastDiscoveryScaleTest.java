@@ -0,0 +1,126 @@
+package com.connectsdk.discovery.provider;
+
+import androidx.mediarouter.media.MediaRouter;
+
+import com.connectsdk.discovery.DiscoveryProvider;
+import com.connectsdk.discovery.DiscoveryProviderListener;
+import com.connectsdk.service.command.ServiceCommandError;
+import com.connectsdk.service.config.ServiceDescription;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Random;
+
+/**
+ * Feeds CastDiscoveryProvider with route events of many simulated devices and checks found
+ * services and removal timing. Removals run on a manual timer, so the tests don't wait for
+ * the wall clock. Throughput and latency are measured by CastDiscoveryScaleBenchmark.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+@PrepareForTest({MediaRouter.class})
+public class CastDiscoveryScaleTest {
+
+    private static final int DEVICE_COUNT = 2000;
+
+    private static final long REMOVE_INTERVAL = 200;
+
+    private SimulatedMediaRouter router;
+
+    private ManualTimer timer;
+
+    private CastDiscoveryProvider provider;
+
+    private CountingListener listener;
+
+    class CountingListener implements DiscoveryProviderListener {
+        int addedCount;
+
+        @Override
+        public void onServiceAdded(DiscoveryProvider provider, ServiceDescription serviceDescription) {
+            addedCount++;
+        }
+
+        @Override
+        public void onServiceRemoved(DiscoveryProvider provider, ServiceDescription serviceDescription) {
+        }
+
+        @Override
+        public void onServiceDiscoveryFailed(DiscoveryProvider provider, ServiceCommandError error) {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        router = new SimulatedMediaRouter();
+        timer = new ManualTimer();
+        provider = router.createProvider(Robolectric.application, timer);
+        provider.routeRemoveInterval = REMOVE_INTERVAL;
+
+        listener = new CountingListener();
+        provider.addListener(listener);
+
+        provider.start();
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        Assert.assertTrue(router.hasCallback());
+    }
+
+    @Test
+    public void testThousandsOfDevicesAreFound() {
+        // Test desc.: every simulated device should be found and reported once
+        for (int i = 0; i < DEVICE_COUNT; i++) {
+            router.addDevice();
+        }
+
+        Assert.assertEquals(DEVICE_COUNT, provider.foundServices.size());
+        Assert.assertEquals(DEVICE_COUNT, listener.addedCount);
+    }
+
+    @Test
+    public void testRandomizedStreamMatchesOnlineDevices() {
+        // Test desc.: after random add, change and remove events found services should be
+        // exactly the devices which are online once pending removals are done
+        router.runRandomScript(new Random(42), 20000, 500);
+
+        timer.advance(REMOVE_INTERVAL);
+
+        Assert.assertEquals(router.getOnlineDeviceIds(), provider.foundServices.keySet());
+    }
+
+    @Test
+    public void testRemovalTiming() {
+        // Test desc.: removed device should stay found for the removal interval and be removed
+        // right after it
+        String id = router.addDevice();
+        router.removeDevice(id);
+
+        timer.advance(REMOVE_INTERVAL - 1);
+        Assert.assertTrue(provider.foundServices.containsKey(id));
+
+        timer.advance(1);
+        Assert.assertFalse(provider.foundServices.containsKey(id));
+    }
+
+    @Test
+    public void testFlappingDeviceIsKept() {
+        // Test desc.: device which comes back within the removal interval shouldn't be removed
+        String id = router.addDevice();
+
+        router.removeDevice(id);
+        router.restoreDevice(id);
+
+        timer.advance(REMOVE_INTERVAL * 3);
+
+        Assert.assertTrue(provider.foundServices.containsKey(id));
+        Assert.assertEquals(1, provider.getMetrics().gracePeriodHits);
+        Assert.assertEquals(1, listener.addedCount);
+        Assert.assertEquals(0, timer.getPendingCount());
+    }
+}
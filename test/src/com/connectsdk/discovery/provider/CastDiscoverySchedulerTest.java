@@ -0,0 +1,98 @@
+package com.connectsdk.discovery.provider;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CastDiscoverySchedulerTest {
+
+    private List<String> executed;
+
+    private ManualTimer timer;
+
+    private CastDiscoveryScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        executed = new ArrayList<String>();
+        timer = new ManualTimer();
+        scheduler = new CastDiscoveryScheduler(new CastDiscoveryScheduler.Action() {
+            @Override
+            public void run(String key) {
+                executed.add(key);
+            }
+        }, timer);
+    }
+
+    @Test
+    public void testScheduledActionRuns() {
+        // Test desc.: action should be invoked for the key once its deadline is reached
+        scheduler.schedule("uuid", 10);
+        Assert.assertTrue(scheduler.isScheduled("uuid"));
+
+        timer.advance(9);
+        Assert.assertTrue(executed.isEmpty());
+
+        timer.advance(1);
+        Assert.assertEquals(1, executed.size());
+        Assert.assertEquals("uuid", executed.get(0));
+        Assert.assertFalse(scheduler.isScheduled("uuid"));
+    }
+
+    @Test
+    public void testCancel() {
+        // Test desc.: cancelled key should not be executed, cancel reports whether it was pending
+        scheduler.schedule("uuid", 50);
+
+        Assert.assertTrue(scheduler.cancel("uuid"));
+        Assert.assertFalse(scheduler.cancel("uuid"));
+        Assert.assertEquals(0, timer.getPendingCount());
+
+        timer.advance(100);
+        Assert.assertTrue(executed.isEmpty());
+    }
+
+    @Test
+    public void testRescheduleReplacesDeadline() {
+        // Test desc.: scheduling the same key again should replace the previous deadline
+        scheduler.schedule("uuid", 10);
+        scheduler.schedule("uuid", 300);
+        Assert.assertEquals(1, timer.getPendingCount());
+
+        timer.advance(150);
+        Assert.assertTrue(executed.isEmpty());
+
+        timer.advance(150);
+        Assert.assertEquals(1, executed.size());
+    }
+
+    @Test
+    public void testKeysHaveOwnDeadlines() {
+        // Test desc.: every key is removed at its own time, not together with others
+        scheduler.schedule("first", 10);
+        scheduler.schedule("second", 400);
+
+        timer.advance(200);
+        Assert.assertEquals(1, executed.size());
+        Assert.assertEquals("first", executed.get(0));
+
+        timer.advance(200);
+        Assert.assertEquals(2, executed.size());
+    }
+
+    @Test
+    public void testCancelAll() {
+        // Test desc.: cancelAll should drop every pending key
+        scheduler.schedule("first", 10);
+        scheduler.schedule("second", 20);
+
+        scheduler.cancelAll();
+        timer.advance(100);
+
+        Assert.assertTrue(executed.isEmpty());
+        Assert.assertFalse(scheduler.isScheduled("first"));
+    }
+}
@@ -0,0 +1,73 @@
+package com.connectsdk.discovery.provider;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timer for CastDiscoveryScheduler which runs tasks only when the test advances its time.
+ */
+class ManualTimer implements CastDiscoveryScheduler.Timer {
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    private long now;
+
+    private static class Entry {
+        final Runnable task;
+        final long deadline;
+        boolean cancelled;
+
+        Entry(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+    }
+
+    @Override
+    public synchronized Runnable schedule(Runnable task, long delayMillis) {
+        final Entry entry = new Entry(task, now + delayMillis);
+        entries.add(entry);
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized (ManualTimer.this) {
+                    entry.cancelled = true;
+                    entries.remove(entry);
+                }
+            }
+        };
+    }
+
+    /**
+     * Moves the time forward and runs the tasks which are due, in the order of their deadlines.
+     */
+    void advance(long millis) {
+        long target;
+        synchronized (this) {
+            target = now + millis;
+        }
+
+        while (true) {
+            Entry next = null;
+            synchronized (this) {
+                for (Entry entry : entries) {
+                    if (entry.deadline <= target && (next == null || entry.deadline < next.deadline)) {
+                        next = entry;
+                    }
+                }
+                if (next == null) {
+                    now = target;
+                    return;
+                }
+                entries.remove(next);
+                now = next.deadline;
+            }
+            next.task.run();
+        }
+    }
+
+    synchronized int getPendingCount() {
+        return entries.size();
+    }
+}
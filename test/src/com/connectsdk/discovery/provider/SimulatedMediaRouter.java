@@ -0,0 +1,315 @@
+package com.connectsdk.discovery.provider;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import android.content.Context;
+import android.os.Bundle;
+import androidx.mediarouter.media.MediaRouteSelector;
+import androidx.mediarouter.media.MediaRouter;
+
+import com.google.android.gms.cast.CastDevice;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * MediaRouter with simulated Cast devices. The provider registers its callback as usual and the
+ * harness feeds route add, change and remove events to it. Use {@link #decode(Bundle)} from
+ * CastDiscoveryProvider.decodeCastDevice to resolve route extras to simulated devices.
+ */
+class SimulatedMediaRouter {
+
+    static final String DEVICE_ID_KEY = "deviceId";
+
+    private final MediaRouter mediaRouter = PowerMockito.mock(MediaRouter.class);
+
+    private final Map<String, SimulatedDevice> devices = new LinkedHashMap<String, SimulatedDevice>();
+
+    private MediaRouter.Callback callback;
+
+    private long lastEventTime;
+
+    private int eventCount;
+
+    private int deviceCounter;
+
+    static class SimulatedDevice {
+        final String id;
+        final MediaRouter.RouteInfo route;
+        CastDevice castDevice;
+        Bundle extras;
+        boolean online;
+
+        SimulatedDevice(String id, MediaRouter.RouteInfo route) {
+            this.id = id;
+            this.route = route;
+        }
+    }
+
+    SimulatedMediaRouter() {
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                callback = (MediaRouter.Callback) invocation.getArguments()[1];
+                return null;
+            }
+        }).when(mediaRouter).addCallback(any(MediaRouteSelector.class),
+                any(MediaRouter.Callback.class), anyInt());
+
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                callback = null;
+                return null;
+            }
+        }).when(mediaRouter).removeCallback(any(MediaRouter.Callback.class));
+
+        when(mediaRouter.getRoutes()).thenAnswer(new Answer<List<MediaRouter.RouteInfo>>() {
+
+            @Override
+            public List<MediaRouter.RouteInfo> answer(InvocationOnMock invocation) {
+                List<MediaRouter.RouteInfo> routes = new ArrayList<MediaRouter.RouteInfo>();
+                for (SimulatedDevice device : devices.values()) {
+                    if (device.online) {
+                        routes.add(device.route);
+                    }
+                }
+                return routes;
+            }
+        });
+    }
+
+    MediaRouter getMediaRouter() {
+        return mediaRouter;
+    }
+
+    boolean hasCallback() {
+        return callback != null;
+    }
+
+    /**
+     * Creates a provider which listens to this router and decodes its simulated devices. The
+     * device cache is disabled.
+     */
+    CastDiscoveryProvider createProvider(Context context) {
+        return createProvider(context, CastDiscoveryScheduler.SHARED_TIMER);
+    }
+
+    /**
+     * Creates a provider whose delayed removals run on the given timer.
+     */
+    CastDiscoveryProvider createProvider(Context context, final CastDiscoveryScheduler.Timer timer) {
+        CastDiscoveryProvider provider = new CastDiscoveryProvider(context) {
+
+            @Override
+            protected MediaRouter createMediaRouter(Context context) {
+                return mediaRouter;
+            }
+
+            @Override
+            protected CastDevice decodeCastDevice(Bundle extras) {
+                return decode(extras);
+            }
+
+            @Override
+            CastDiscoveryScheduler createScheduler(CastDiscoveryScheduler.Action action) {
+                return new CastDiscoveryScheduler(action, timer);
+            }
+        };
+        provider.setDeviceCacheEnabled(false);
+        return provider;
+    }
+
+    CastDevice decode(Bundle extras) {
+        SimulatedDevice device = devices.get(extras.getString(DEVICE_ID_KEY));
+        return device == null ? null : device.castDevice;
+    }
+
+    /**
+     * Adds a new device and reports its route.
+     *
+     * @return id of the device
+     */
+    String addDevice() {
+        int index = deviceCounter++;
+        String id = "device-" + index;
+
+        // stub only mocks don't record invocations, so thousands of callbacks stay cheap
+        MediaRouter.RouteInfo route = mock(MediaRouter.RouteInfo.class, withSettings().stubOnly());
+        when(route.getId()).thenReturn("route-" + index);
+        when(route.getName()).thenReturn("Cast " + index);
+
+        final SimulatedDevice device = new SimulatedDevice(id, route);
+        when(route.getExtras()).thenAnswer(new Answer<Bundle>() {
+
+            @Override
+            public Bundle answer(InvocationOnMock invocation) {
+                return device.extras;
+            }
+        });
+        devices.put(id, device);
+        updateDescriptor(device, index);
+
+        device.online = true;
+        fireRouteAdded(device);
+        return id;
+    }
+
+    /**
+     * Changes the route descriptor of the device, as when it gets a new IP address.
+     */
+    void changeDevice(String id) {
+        SimulatedDevice device = devices.get(id);
+        updateDescriptor(device, deviceCounter++);
+
+        fireRouteChanged(device);
+    }
+
+    /**
+     * Reports the route of the device again without any change, as MediaRouter does when it
+     * refreshes its routes.
+     */
+    void reportUnchangedRoute(String id) {
+        SimulatedDevice device = devices.get(id);
+        fireRouteChanged(device);
+    }
+
+    /**
+     * Reports the route of the device with new extras describing the same device, so the
+     * provider has to decode them again.
+     */
+    void reportNewExtras(String id) {
+        SimulatedDevice device = devices.get(id);
+        device.extras = new Bundle(device.extras);
+        fireRouteChanged(device);
+    }
+
+    void removeDevice(String id) {
+        SimulatedDevice device = devices.get(id);
+        device.online = false;
+
+        if (callback != null) {
+            lastEventTime = System.nanoTime();
+            eventCount++;
+            callback.onRouteRemoved(mediaRouter, device.route);
+        }
+    }
+
+    /**
+     * Reports the route of a removed device again.
+     */
+    void restoreDevice(String id) {
+        SimulatedDevice device = devices.get(id);
+        device.online = true;
+        fireRouteAdded(device);
+    }
+
+    /**
+     * Runs random add, change, remove and restore events.
+     */
+    void runRandomScript(Random random, int steps, int maxDevices) {
+        List<String> ids = new ArrayList<String>();
+
+        for (int i = 0; i < steps; i++) {
+            ids.clear();
+            ids.addAll(devices.keySet());
+
+            int operation = random.nextInt(4);
+            if (ids.isEmpty() || (operation == 0 && devices.size() < maxDevices)) {
+                addDevice();
+                continue;
+            }
+
+            SimulatedDevice device = devices.get(ids.get(random.nextInt(ids.size())));
+            if (!device.online) {
+                restoreDevice(device.id);
+            } else if (operation == 1) {
+                changeDevice(device.id);
+            } else {
+                removeDevice(device.id);
+            }
+        }
+    }
+
+    Set<String> getOnlineDeviceIds() {
+        Set<String> ids = new LinkedHashSet<String>();
+        for (SimulatedDevice device : devices.values()) {
+            if (device.online) {
+                ids.add(device.id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns System.nanoTime() of the last event passed to the provider.
+     */
+    long getLastEventTime() {
+        return lastEventTime;
+    }
+
+    int getEventCount() {
+        return eventCount;
+    }
+
+    private void fireRouteChanged(SimulatedDevice device) {
+        if (device.online && callback != null) {
+            lastEventTime = System.nanoTime();
+            eventCount++;
+            callback.onRouteChanged(mediaRouter, device.route);
+        }
+    }
+
+    private void fireRouteAdded(SimulatedDevice device) {
+        if (callback != null) {
+            lastEventTime = System.nanoTime();
+            eventCount++;
+            callback.onRouteAdded(mediaRouter, device.route);
+        }
+    }
+
+    private void updateDescriptor(SimulatedDevice device, int address) {
+        String friendlyName = device.route.getName();
+
+        CastDevice castDevice = mock(CastDevice.class, withSettings().stubOnly());
+        when(castDevice.getDeviceId()).thenReturn(device.id);
+        when(castDevice.getFriendlyName()).thenReturn(friendlyName);
+        when(castDevice.getModelName()).thenReturn("Chromecast");
+        when(castDevice.getServicePort()).thenReturn(8009);
+        when(castDevice.getIpAddress()).thenReturn(createAddress(address));
+
+        Bundle extras = new Bundle();
+        extras.putString(DEVICE_ID_KEY, device.id);
+
+        device.castDevice = castDevice;
+        device.extras = extras;
+    }
+
+    private static Inet4Address createAddress(int address) {
+        try {
+            return (Inet4Address) InetAddress.getByAddress(new byte[] {
+                    10, (byte) (address >> 16), (byte) (address >> 8), (byte) address });
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
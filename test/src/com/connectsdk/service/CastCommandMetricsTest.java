@@ -0,0 +1,116 @@
+package com.connectsdk.service;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastCommandMetricsTest {
+
+    private CastCommandMetrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new CastCommandMetrics();
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        // Test desc.: nothing should be recorded until recording is enabled
+        CastCommandMetrics.Timer timer = metrics.start(CastCommandMetrics.Command.PLAY);
+        timer.onConnected();
+        timer.onResponse(true);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Assert.assertFalse(metrics.isEnabled());
+        Assert.assertSame(timer, metrics.start(CastCommandMetrics.Command.PAUSE));
+        CastCommandMetrics.CommandSnapshot play = metrics.snapshot().get(CastCommandMetrics.Command.PLAY);
+        Assert.assertEquals(0, play.successes);
+        Assert.assertEquals(0, play.roundTrip.count);
+    }
+
+    @Test
+    public void testPhasesAreRecorded() throws InterruptedException {
+        // Test desc.: queue, round trip and delivery should be recorded separately
+        metrics.setEnabled(true);
+        CastCommandMetrics.Timer timer = metrics.start(CastCommandMetrics.Command.SEEK);
+        Thread.sleep(20);
+        timer.onConnected();
+        timer.onResponse(true);
+
+        CastCommandMetrics.CommandSnapshot seek = metrics.snapshot().get(CastCommandMetrics.Command.SEEK);
+        Assert.assertEquals(1, seek.successes);
+        Assert.assertEquals(1, seek.queue.count);
+        Assert.assertTrue(seek.queue.maxTime >= 20000);
+        Assert.assertEquals(1, seek.roundTrip.count);
+        Assert.assertTrue(seek.roundTrip.maxTime < seek.queue.maxTime);
+        Assert.assertEquals(0, seek.delivery.count);
+
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        seek = metrics.snapshot().get(CastCommandMetrics.Command.SEEK);
+        Assert.assertEquals(1, seek.delivery.count);
+        Assert.assertEquals(0, metrics.snapshot().get(CastCommandMetrics.Command.PLAY).queue.count);
+    }
+
+    @Test
+    public void testTimerRecordsOnce() {
+        // Test desc.: the first response should be recorded only
+        metrics.setEnabled(true);
+        CastCommandMetrics.Timer timer = metrics.start(CastCommandMetrics.Command.PLAY_MEDIA);
+        timer.onConnected();
+        timer.onResponse(false);
+        timer.onResponse(true);
+
+        CastCommandMetrics.CommandSnapshot playMedia = metrics.snapshot().get(CastCommandMetrics.Command.PLAY_MEDIA);
+        Assert.assertEquals(1, playMedia.failures);
+        Assert.assertEquals(0, playMedia.successes);
+        Assert.assertEquals(1, playMedia.roundTrip.count);
+    }
+
+    @Test
+    public void testPercentile() {
+        // Test desc.: percentile should be the upper bound of its bucket
+        CastCommandMetrics.Histogram histogram = new CastCommandMetrics.Histogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(800);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(40000);
+        }
+
+        CastCommandMetrics.HistogramSnapshot snapshot = new CastCommandMetrics.HistogramSnapshot(histogram);
+        Assert.assertEquals(100, snapshot.count);
+        Assert.assertEquals(1000, snapshot.getPercentile(50));
+        Assert.assertEquals(1000, snapshot.getPercentile(90));
+        Assert.assertEquals(40000, snapshot.getPercentile(99));
+        Assert.assertEquals(40000, snapshot.maxTime);
+        Assert.assertEquals((90 * 800 + 10 * 40000) / 100, snapshot.getMean());
+    }
+
+    @Test
+    public void testResetAndJSON() throws JSONException {
+        // Test desc.: reset should clear all commands, snapshot should be exported to JSON
+        metrics.setEnabled(true);
+        CastCommandMetrics.Timer timer = metrics.start(CastCommandMetrics.Command.SET_VOLUME);
+        timer.onResponse(true);
+
+        JSONObject json = metrics.snapshot().toJSONObject();
+        Assert.assertEquals(CastCommandMetrics.Command.values().length,
+                json.getJSONArray("commands").length());
+        JSONObject volume = json.getJSONArray("commands")
+                .getJSONObject(CastCommandMetrics.Command.SET_VOLUME.ordinal());
+        Assert.assertEquals("SET_VOLUME", volume.getString("command"));
+        Assert.assertEquals(1, volume.getLong("successes"));
+
+        metrics.reset();
+        Assert.assertEquals(0, metrics.snapshot().get(CastCommandMetrics.Command.SET_VOLUME).successes);
+    }
+}
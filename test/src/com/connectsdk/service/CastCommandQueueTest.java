@@ -0,0 +1,175 @@
+package com.connectsdk.service;
+
+import com.connectsdk.service.capability.listeners.ResponseListener;
+import com.connectsdk.service.command.ServiceCommandError;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastCommandQueueTest {
+
+    private long time;
+
+    private List<String> executed;
+
+    private CastCommandQueue queue;
+
+    @Before
+    public void setUp() {
+        time = 1000;
+        executed = new ArrayList<String>();
+        queue = new CastCommandQueue() {
+
+            @Override
+            long currentTime() {
+                return time;
+            }
+        };
+    }
+
+    @Test
+    public void testCommandsRunInOrder() {
+        // Test desc.: queued commands should run in the order they were added
+        queue.add(createCommand("first"), null);
+        queue.add(createCommand("second"), null);
+        queue.add(createCommand("third"), null);
+
+        queue.runAll();
+
+        Assert.assertEquals(3, executed.size());
+        Assert.assertEquals("first", executed.get(0));
+        Assert.assertEquals("third", executed.get(2));
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(3, queue.getExecutedCount());
+    }
+
+    @Test
+    public void testFullQueueDropsOldestCommand() {
+        // Test desc.: when the queue is full the oldest command should fail and be dropped
+        queue.setCapacity(2);
+        ResponseListener<Object> listener = Mockito.mock(ResponseListener.class);
+
+        queue.add(createCommand("first"), listener);
+        queue.add(createCommand("second"), null);
+        queue.add(createCommand("third"), null);
+        Robolectric.runUiThreadTasks();
+
+        queue.runAll();
+
+        Assert.assertEquals(2, executed.size());
+        Assert.assertEquals("second", executed.get(0));
+        Assert.assertEquals(1, queue.getDroppedCount());
+        Assert.assertEquals(2, queue.getMaxDepth());
+        verifyError(listener, CastCommandQueue.DROPPED_ERROR_CODE);
+    }
+
+    @Test
+    public void testExpiredCommandsFail() {
+        // Test desc.: commands past their deadline should fail with timeout instead of running
+        queue.setTimeout(100);
+        ResponseListener<Object> listener = Mockito.mock(ResponseListener.class);
+
+        queue.add(createCommand("stale"), listener);
+        time += 150;
+        queue.add(createCommand("fresh"), null);
+
+        queue.expire();
+        Robolectric.runUiThreadTasks();
+
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals(1, queue.getExpiredCount());
+        verifyError(listener, CastCommandQueue.TIMEOUT_ERROR_CODE);
+
+        queue.runAll();
+        Assert.assertEquals(1, executed.size());
+        Assert.assertEquals("fresh", executed.get(0));
+    }
+
+    @Test
+    public void testExpiredCommandDoesNotRunOnConnect() {
+        // Test desc.: command which expired before the connection shouldn't run
+        queue.setTimeout(100);
+
+        queue.add(createCommand("stale"), null);
+        time += 100;
+        queue.runAll();
+
+        Assert.assertTrue(executed.isEmpty());
+        Assert.assertEquals(1, queue.getExpiredCount());
+    }
+
+    @Test
+    public void testShorterTimeoutExpiresNewCommand() {
+        // Test desc.: command added after the timeout was shortened should expire at its own
+        // deadline, not at the deadline of the older commands
+        ResponseListener<Object> listener = Mockito.mock(ResponseListener.class);
+        queue.add(createCommand("first"), null);
+
+        queue.setTimeout(100);
+        queue.add(createCommand("second"), listener);
+
+        time += 100;
+        Robolectric.getUiThreadScheduler().advanceBy(100);
+        Robolectric.runUiThreadTasks();
+
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals(1, queue.getExpiredCount());
+        verifyError(listener, CastCommandQueue.TIMEOUT_ERROR_CODE);
+    }
+
+    @Test
+    public void testWaitTime() {
+        // Test desc.: wait time of executed commands should be measured
+        queue.add(createCommand("first"), null);
+        time += 40;
+        queue.add(createCommand("second"), null);
+        time += 20;
+
+        queue.runAll();
+
+        Assert.assertEquals(60, queue.getMaxWaitTime());
+        Assert.assertEquals(40, queue.getAverageWaitTime());
+    }
+
+    @Test
+    public void testCancelAll() {
+        // Test desc.: cancelled commands should not run and their listeners should get the error
+        ResponseListener<Object> listener = Mockito.mock(ResponseListener.class);
+        queue.add(createCommand("first"), listener);
+
+        queue.cancelAll(new ServiceCommandError(0, "disconnected", null));
+        Robolectric.runUiThreadTasks();
+        queue.runAll();
+
+        Assert.assertTrue(executed.isEmpty());
+        verifyError(listener, 0);
+    }
+
+    private void verifyError(ResponseListener<Object> listener, int code) {
+        ArgumentCaptor<ServiceCommandError> error = ArgumentCaptor.forClass(ServiceCommandError.class);
+        Mockito.verify(listener).onError(error.capture());
+        Assert.assertEquals(code, error.getValue().getCode());
+    }
+
+    private CastService.ConnectionListener createCommand(final String name) {
+        return new CastService.ConnectionListener() {
+
+            @Override
+            public void onConnected() {
+                executed.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,100 @@
+package com.connectsdk.service;
+
+import com.connectsdk.core.MediaInfo;
+import com.connectsdk.service.capability.MediaPlayer.MediaInfoListener;
+import com.connectsdk.service.capability.VolumeControl.MuteListener;
+import com.connectsdk.service.capability.VolumeControl.VolumeListener;
+import com.connectsdk.service.command.ServiceCommandError;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastEventDispatcherTest {
+
+    private CastEventDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        dispatcher = new CastEventDispatcher();
+    }
+
+    @Test
+    public void testBatchIsDeliveredByOneTaskInOrder() {
+        // Test desc.: all listeners of an event should be called by one UI task in the added order
+        VolumeListener first = Mockito.mock(VolumeListener.class);
+        VolumeListener second = Mockito.mock(VolumeListener.class);
+        MuteListener third = Mockito.mock(MuteListener.class);
+
+        Robolectric.getUiThreadScheduler().pause();
+        CastEventDispatcher.Batch batch = dispatcher.batch(CastEventDispatcher.Event.VOLUME);
+        batch.addSuccess(first, 0.5f);
+        batch.addSuccess(second, 0.5f);
+        batch.addSuccess(third, Boolean.TRUE);
+        batch.post();
+
+        Assert.assertEquals(1, Robolectric.getUiThreadScheduler().size());
+        Mockito.verifyZeroInteractions(first, second, third);
+
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        InOrder inOrder = Mockito.inOrder(first, second, third);
+        inOrder.verify(first).onSuccess(0.5f);
+        inOrder.verify(second).onSuccess(0.5f);
+        inOrder.verify(third).onSuccess(Boolean.TRUE);
+
+        Assert.assertEquals(1, dispatcher.getPostCount());
+        Assert.assertEquals(1, dispatcher.getEventCount(CastEventDispatcher.Event.VOLUME));
+        Assert.assertEquals(3, dispatcher.getDeliveryCount(CastEventDispatcher.Event.VOLUME));
+        Assert.assertTrue(dispatcher.getMainThreadTime(CastEventDispatcher.Event.VOLUME)
+                >= dispatcher.getMaxMainThreadTime(CastEventDispatcher.Event.VOLUME));
+        Assert.assertEquals(0, dispatcher.getEventCount(CastEventDispatcher.Event.PLAY_STATE));
+    }
+
+    @Test
+    public void testErrorIsDelivered() {
+        // Test desc.: errors should be passed to onError in the same batch
+        MediaInfoListener listener = Mockito.mock(MediaInfoListener.class);
+        ServiceCommandError error = new ServiceCommandError(0, "Media Info is null", null);
+
+        CastEventDispatcher.Batch batch = dispatcher.batch(CastEventDispatcher.Event.MEDIA_INFO);
+        batch.addError(listener, error);
+        batch.post();
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Mockito.verify(listener).onError(error);
+        Mockito.verify(listener, Mockito.never()).onSuccess(Mockito.any(MediaInfo.class));
+    }
+
+    @Test
+    public void testEmptyBatchIsNotPosted() {
+        // Test desc.: an event without listeners shouldn't post anything to the UI thread
+        dispatcher.batch(CastEventDispatcher.Event.PLAY_STATE).post();
+
+        Assert.assertEquals(0, dispatcher.getPostCount());
+        Assert.assertEquals(0, dispatcher.getEventCount(CastEventDispatcher.Event.PLAY_STATE));
+    }
+
+    @Test
+    public void testResetStats() {
+        // Test desc.: reset should clear all counters
+        CastEventDispatcher.Batch batch = dispatcher.batch(CastEventDispatcher.Event.PLAY_STATE);
+        batch.addSuccess(Mockito.mock(VolumeListener.class), 1.0f);
+        batch.post();
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        dispatcher.resetStats();
+
+        Assert.assertEquals(0, dispatcher.getPostCount());
+        Assert.assertEquals(0, dispatcher.getDeliveryCount(CastEventDispatcher.Event.PLAY_STATE));
+        Assert.assertEquals(0, dispatcher.getMainThreadTime(CastEventDispatcher.Event.PLAY_STATE));
+    }
+}
@@ -0,0 +1,227 @@
+package com.connectsdk.service;
+
+import com.connectsdk.service.capability.listeners.ResponseListener;
+import com.connectsdk.service.command.ServiceCommandError;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastFutureTest {
+
+    @Test
+    public void testThenChainsSteps() throws Exception {
+        // Test desc.: the next step should start with the result of the previous one
+        CastFuture<Integer> first = new CastFuture<Integer>();
+        final CastFuture<String> second = new CastFuture<String>();
+
+        CastFuture<String> result = first.then(new CastFuture.AsyncFunction<Integer, String>() {
+            @Override
+            public CastFuture<String> apply(Integer value) {
+                Assert.assertEquals(Integer.valueOf(1), value);
+                return second;
+            }
+        });
+
+        first.complete(1);
+        Assert.assertFalse(result.isDone());
+
+        second.complete("done");
+        Assert.assertEquals("done", result.get());
+    }
+
+    @Test
+    public void testFailureSkipsSteps() {
+        // Test desc.: a failed step should fail the chain without calling the next steps
+        ServiceCommandError error = new ServiceCommandError(0, "failed", null);
+        final AtomicBoolean called = new AtomicBoolean();
+
+        CastFuture<String> result = CastFuture.<Integer>failed(error).map(new CastFuture.Function<Integer, String>() {
+            @Override
+            public String apply(Integer value) {
+                called.set(true);
+                return value.toString();
+            }
+        });
+
+        Assert.assertFalse(called.get());
+        Assert.assertSame(error, result.getError());
+    }
+
+    @Test
+    public void testThrowingStepFailsChain() {
+        // Test desc.: an exception thrown by a step should fail the derived future
+        final IllegalStateException exception = new IllegalStateException("broken step");
+
+        CastFuture<String> mapped = CastFuture.succeeded(1).map(new CastFuture.Function<Integer, String>() {
+            @Override
+            public String apply(Integer value) {
+                throw exception;
+            }
+        });
+        CastFuture<String> chained = CastFuture.succeeded(1).then(new CastFuture.AsyncFunction<Integer, String>() {
+            @Override
+            public CastFuture<String> apply(Integer value) {
+                throw exception;
+            }
+        });
+        CastFuture<String> recovered = CastFuture.<String>failed(new ServiceCommandError(0, "failed", null))
+                .recover(new CastFuture.AsyncFunction<ServiceCommandError, String>() {
+                    @Override
+                    public CastFuture<String> apply(ServiceCommandError error) {
+                        throw exception;
+                    }
+                });
+
+        for (CastFuture<String> result : Arrays.asList(mapped, chained, recovered)) {
+            Assert.assertTrue(result.isDone());
+            Assert.assertEquals("broken step", result.getError().getMessage());
+            Assert.assertSame(exception, result.getError().getPayload());
+        }
+    }
+
+    @Test
+    public void testRecover() throws Exception {
+        // Test desc.: recover should replace a failure with the result of another step
+        CastFuture<String> result = CastFuture.<String>failed(new ServiceCommandError(0, "failed", null))
+                .recover(new CastFuture.AsyncFunction<ServiceCommandError, String>() {
+                    @Override
+                    public CastFuture<String> apply(ServiceCommandError error) {
+                        return CastFuture.succeeded("fallback");
+                    }
+                });
+
+        Assert.assertEquals("fallback", result.get());
+    }
+
+    @Test
+    public void testCancelPropagatesToPendingStep() {
+        // Test desc.: cancelling a chain should cancel the step it waits for and run its cancel action
+        CastFuture<Integer> first = new CastFuture<Integer>();
+        final AtomicBoolean requestCancelled = new AtomicBoolean();
+        first.onCancel(new Runnable() {
+            @Override
+            public void run() {
+                requestCancelled.set(true);
+            }
+        });
+
+        CastFuture<String> result = first.map(new CastFuture.Function<Integer, String>() {
+            @Override
+            public String apply(Integer value) {
+                return value.toString();
+            }
+        });
+
+        Assert.assertTrue(result.cancel(false));
+        Assert.assertTrue(first.isCancelled());
+        Assert.assertTrue(requestCancelled.get());
+        Assert.assertEquals(CastFuture.CANCELLED_ERROR_CODE, result.getError().getCode());
+        Assert.assertFalse(first.complete(1));
+    }
+
+    @Test
+    public void testTimeout() throws InterruptedException {
+        // Test desc.: a future which isn't done in time should fail with a timeout error
+        CastFuture<String> future = new CastFuture<String>();
+        final AtomicBoolean requestCancelled = new AtomicBoolean();
+        future.onCancel(new Runnable() {
+            @Override
+            public void run() {
+                requestCancelled.set(true);
+            }
+        });
+
+        CastFuture<String> result = future.withTimeout(10);
+        Thread.sleep(200);
+
+        Assert.assertNotSame(future, result);
+        Assert.assertEquals(CastFuture.TIMEOUT_ERROR_CODE, result.getError().getCode());
+        Assert.assertTrue(future.isCancelled());
+        Assert.assertTrue(requestCancelled.get());
+    }
+
+    @Test
+    public void testTimeoutKeepsResult() throws Exception {
+        // Test desc.: a future which is done in time should pass its result through
+        CastFuture<String> future = new CastFuture<String>();
+
+        CastFuture<String> result = future.withTimeout(1000);
+        future.complete("done");
+
+        Assert.assertEquals("done", result.get());
+    }
+
+    @Test
+    public void testAllKeepsOrder() throws Exception {
+        // Test desc.: all should complete with the results in the order of the futures
+        CastFuture<String> first = new CastFuture<String>();
+        CastFuture<String> second = new CastFuture<String>();
+
+        CastFuture<List<String>> result = CastFuture.all(Arrays.asList(first, second));
+        second.complete("second");
+        Assert.assertFalse(result.isDone());
+        first.complete("first");
+
+        Assert.assertEquals(Arrays.asList("first", "second"), result.get());
+    }
+
+    @Test
+    public void testAllCancelsOthersOnFailure() {
+        // Test desc.: the first failure should fail the result and cancel the pending futures
+        CastFuture<String> first = new CastFuture<String>();
+        CastFuture<String> second = new CastFuture<String>();
+
+        CastFuture<List<String>> result = CastFuture.all(Arrays.asList(first, second));
+        first.fail(new ServiceCommandError(0, "failed", null));
+
+        Assert.assertTrue(result.isDone());
+        Assert.assertTrue(second.isCancelled());
+    }
+
+    @Test
+    public void testCallbackExecutor() {
+        // Test desc.: callbacks should run on the given executor
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        CastFuture.Callback<String> callback = Mockito.mock(CastFuture.Callback.class);
+
+        CastFuture<String> future = new CastFuture<String>();
+        future.addCallback(callback, executor);
+        future.complete("value");
+
+        Mockito.verifyZeroInteractions(callback);
+        Assert.assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        Mockito.verify(callback).onSuccess("value");
+    }
+
+    @Test
+    public void testAddListenerPostsOnUiThread() {
+        // Test desc.: listeners should get the result like other Connect SDK commands
+        ResponseListener<Object> listener = Mockito.mock(ResponseListener.class);
+        ServiceCommandError error = new ServiceCommandError(0, "failed", null);
+
+        CastFuture.failed(error).addListener(listener);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Mockito.verify(listener).onError(error);
+    }
+}
@@ -0,0 +1,145 @@
+package com.connectsdk.service;
+
+import com.connectsdk.service.capability.MediaControl.PlayStateListener;
+import com.connectsdk.service.capability.MediaControl.PlayStateStatus;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastPlayStateSubscriptionTest {
+
+    private long time;
+
+    private PlayStateListener listener;
+
+    private CastEventDispatcher dispatcher;
+
+    private DeviceService service;
+
+    private CastPlayStateSubscription subscription;
+
+    @Before
+    public void setUp() {
+        time = 1000;
+        listener = Mockito.mock(PlayStateListener.class);
+        dispatcher = new CastEventDispatcher();
+        service = Mockito.mock(DeviceService.class);
+        subscription = new CastPlayStateSubscription(service, dispatcher, 500) {
+            @Override
+            long currentTime() {
+                return time;
+            }
+        };
+        subscription.addListener(listener);
+    }
+
+    @Test
+    public void testFirstStateIsDeliveredImmediately() {
+        // Test desc.: the first state shouldn't wait for the interval
+        subscription.deliver(PlayStateStatus.Playing);
+        Robolectric.runUiThreadTasks();
+
+        Mockito.verify(listener).onSuccess(PlayStateStatus.Playing);
+    }
+
+    @Test
+    public void testStateIsDeliveredByOneTask() {
+        // Test desc.: all listeners should get the state from one dispatcher batch
+        PlayStateListener second = Mockito.mock(PlayStateListener.class);
+        subscription.addListener(second);
+
+        subscription.deliver(PlayStateStatus.Playing);
+        Robolectric.runUiThreadTasks();
+
+        Mockito.verify(listener).onSuccess(PlayStateStatus.Playing);
+        Mockito.verify(second).onSuccess(PlayStateStatus.Playing);
+        Assert.assertEquals(1, dispatcher.getPostCount());
+        Assert.assertEquals(2, dispatcher.getDeliveryCount(CastEventDispatcher.Event.PLAY_STATE));
+    }
+
+    @Test
+    public void testSameStateIsNotDeliveredAgain() {
+        // Test desc.: repeated state shouldn't be delivered even after the interval
+        subscription.deliver(PlayStateStatus.Playing);
+        time += 1000;
+        subscription.deliver(PlayStateStatus.Playing);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Mockito.verify(listener, Mockito.times(1)).onSuccess(PlayStateStatus.Playing);
+    }
+
+    @Test
+    public void testRapidChangesAreThrottled() {
+        // Test desc.: changes within the interval should be merged into the last state
+        subscription.deliver(PlayStateStatus.Playing);
+        time += 100;
+        subscription.deliver(PlayStateStatus.Buffering);
+        time += 100;
+        subscription.deliver(PlayStateStatus.Paused);
+        Robolectric.runUiThreadTasks();
+
+        Mockito.verify(listener).onSuccess(PlayStateStatus.Playing);
+        Mockito.verifyNoMoreInteractions(listener);
+
+        time += 300;
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        InOrder inOrder = Mockito.inOrder(listener);
+        inOrder.verify(listener).onSuccess(PlayStateStatus.Playing);
+        inOrder.verify(listener).onSuccess(PlayStateStatus.Paused);
+        Mockito.verify(listener, Mockito.never()).onSuccess(PlayStateStatus.Buffering);
+    }
+
+    @Test
+    public void testChangeBackWithinIntervalIsDropped() {
+        // Test desc.: state which returns to the delivered one during the interval isn't sent
+        subscription.deliver(PlayStateStatus.Playing);
+        time += 100;
+        subscription.deliver(PlayStateStatus.Buffering);
+        time += 100;
+        subscription.deliver(PlayStateStatus.Playing);
+        time += 300;
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Mockito.verify(listener, Mockito.times(1)).onSuccess(PlayStateStatus.Playing);
+        Mockito.verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void testUnsubscribeCancelsWaitingState() {
+        // Test desc.: state waiting for the interval shouldn't reach listeners after unsubscribe
+        subscription.deliver(PlayStateStatus.Playing);
+        time += 100;
+        subscription.deliver(PlayStateStatus.Paused);
+        Robolectric.runUiThreadTasks();
+
+        subscription.unsubscribe();
+        time += 400;
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Mockito.verify(listener).onSuccess(PlayStateStatus.Playing);
+        Mockito.verify(listener, Mockito.never()).onSuccess(PlayStateStatus.Paused);
+        Mockito.verify(service).unsubscribe(subscription);
+    }
+
+    @Test
+    public void testResetDeliversSameStateAgain() {
+        // Test desc.: after reset the state should be delivered even if it's the same
+        subscription.deliver(PlayStateStatus.Playing);
+        subscription.reset();
+        time += 1000;
+        subscription.deliver(PlayStateStatus.Playing);
+        Robolectric.runUiThreadTasks();
+
+        Mockito.verify(listener, Mockito.times(2)).onSuccess(PlayStateStatus.Playing);
+    }
+}
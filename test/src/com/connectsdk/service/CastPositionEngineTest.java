@@ -0,0 +1,92 @@
+package com.connectsdk.service;
+
+import com.google.android.gms.cast.MediaStatus;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastPositionEngineTest {
+
+    private long time;
+
+    private CastPositionEngine engine;
+
+    @Before
+    public void setUp() {
+        time = 10000;
+        engine = new CastPositionEngine() {
+            @Override
+            long currentTime() {
+                return time;
+            }
+        };
+    }
+
+    @Test
+    public void testUnknownPosition() {
+        // Test desc.: there is no position before the first status update
+        Assert.assertFalse(engine.hasPosition());
+        Assert.assertFalse(engine.isPlaying());
+        Assert.assertEquals(0, engine.getPosition());
+    }
+
+    @Test
+    public void testPositionMovesWhilePlaying() {
+        // Test desc.: position should move from the anchor at the playback rate
+        engine.update(5000, 1.0, MediaStatus.PLAYER_STATE_PLAYING, 60000);
+        time += 1500;
+        Assert.assertEquals(6500, engine.getPosition());
+
+        engine.update(6500, 2.0, MediaStatus.PLAYER_STATE_PLAYING, 60000);
+        time += 1000;
+        Assert.assertEquals(8500, engine.getPosition());
+    }
+
+    @Test
+    public void testPositionStopsWhenNotPlaying() {
+        // Test desc.: paused or buffering player should keep the reported position
+        engine.update(5000, 1.0, MediaStatus.PLAYER_STATE_PAUSED, 60000);
+        time += 1500;
+        Assert.assertEquals(5000, engine.getPosition());
+
+        engine.update(5000, 1.0, MediaStatus.PLAYER_STATE_BUFFERING, 60000);
+        time += 1500;
+        Assert.assertEquals(5000, engine.getPosition());
+        Assert.assertFalse(engine.isPlaying());
+    }
+
+    @Test
+    public void testPositionDoesNotPassDuration() {
+        // Test desc.: estimate shouldn't go beyond the end of the stream
+        engine.update(59000, 1.0, MediaStatus.PLAYER_STATE_PLAYING, 60000);
+        time += 5000;
+        Assert.assertEquals(60000, engine.getPosition());
+    }
+
+    @Test
+    public void testDriftIsCorrected() {
+        // Test desc.: new status should replace the estimate and report how far it was
+        engine.update(5000, 1.0, MediaStatus.PLAYER_STATE_PLAYING, 0);
+        time += 1000;
+        engine.update(5800, 1.0, MediaStatus.PLAYER_STATE_PLAYING, 0);
+
+        Assert.assertEquals(200, engine.getLastDrift());
+        Assert.assertEquals(5800, engine.getPosition());
+    }
+
+    @Test
+    public void testReset() {
+        // Test desc.: reset should forget the anchor
+        engine.update(5000, 1.0, MediaStatus.PLAYER_STATE_PLAYING, 0);
+        engine.reset();
+
+        Assert.assertFalse(engine.hasPosition());
+        Assert.assertFalse(engine.isPlaying());
+    }
+}
@@ -0,0 +1,118 @@
+package com.connectsdk.service;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Random;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastReconnectEngineTest {
+
+    private int reconnectCount;
+
+    private int giveUpCount;
+
+    private long time;
+
+    private CastReconnectEngine engine;
+
+    @Before
+    public void setUp() {
+        time = 1000;
+        engine = new CastReconnectEngine(new CastReconnectEngine.Callback() {
+
+            @Override
+            public void reconnect() {
+                reconnectCount++;
+            }
+
+            @Override
+            public void onGiveUp() {
+                giveUpCount++;
+            }
+        }, new Random(1)) {
+
+            @Override
+            long currentTime() {
+                return time;
+            }
+        };
+    }
+
+    @Test
+    public void testFirstAttemptIsImmediate() {
+        // Test desc.: reconnect should start right after the connection is lost
+        Assert.assertTrue(engine.start());
+        Robolectric.runUiThreadTasks();
+
+        Assert.assertEquals(1, reconnectCount);
+        Assert.assertTrue(engine.isReconnecting());
+    }
+
+    @Test
+    public void testBackoffIsJitteredAndBounded() {
+        // Test desc.: delay should be between half and full backoff, which doubles up to max
+        for (int attempt = 0; attempt < 30; attempt++) {
+            long backoff = Math.min(CastReconnectEngine.MAX_BACKOFF,
+                    CastReconnectEngine.INITIAL_BACKOFF << Math.min(attempt, 20));
+            long delay = engine.getDelay(attempt);
+
+            Assert.assertTrue(delay >= backoff / 2);
+            Assert.assertTrue(delay <= backoff);
+        }
+    }
+
+    @Test
+    public void testGiveUpAfterMaxAttempts() {
+        // Test desc.: engine should stop after the maximum number of attempts
+        engine.setMaxAttempts(3);
+
+        engine.start();
+        runAllAttempts();
+
+        Assert.assertEquals(3, reconnectCount);
+        Assert.assertEquals(1, giveUpCount);
+        Assert.assertFalse(engine.isReconnecting());
+    }
+
+    @Test
+    public void testReconnectLatency() {
+        // Test desc.: latency from the lost connection to reconnect should be reported and no
+        // more attempts should be made
+        engine.start();
+        Robolectric.runUiThreadTasks();
+
+        time += 400;
+        engine.onReconnected();
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Assert.assertEquals(1, reconnectCount);
+        Assert.assertEquals(400, engine.getLastReconnectLatency());
+        Assert.assertEquals(1, engine.getReconnectCount());
+        Assert.assertFalse(engine.isReconnecting());
+    }
+
+    @Test
+    public void testDisabledEngineDoesNotStart() {
+        // Test desc.: disabled engine shouldn't reconnect
+        engine.setEnabled(false);
+
+        Assert.assertFalse(engine.start());
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Assert.assertEquals(0, reconnectCount);
+    }
+
+    private void runAllAttempts() {
+        // every attempt posts the next one, so run the scheduler until nothing is left
+        for (int i = 0; i < 10; i++) {
+            Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        }
+    }
+}
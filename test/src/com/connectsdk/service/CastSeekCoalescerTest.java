@@ -0,0 +1,116 @@
+package com.connectsdk.service;
+
+import com.connectsdk.service.capability.listeners.ResponseListener;
+import com.connectsdk.service.command.ServiceCommandError;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastSeekCoalescerTest {
+
+    private List<Long> positions;
+
+    private List<ResponseListener<Object>> results;
+
+    private CastSeekCoalescer coalescer;
+
+    @Before
+    public void setUp() {
+        positions = new ArrayList<Long>();
+        results = new ArrayList<ResponseListener<Object>>();
+        coalescer = new CastSeekCoalescer(new CastSeekCoalescer.Sender() {
+
+            @Override
+            public void send(long position, ResponseListener<Object> listener) {
+                positions.add(position);
+                results.add(listener);
+            }
+        });
+    }
+
+    @Test
+    public void testOnlyOneSeekInFlight() {
+        // Test desc.: seeks requested while one is in flight should wait and only the newest
+        // one should be sent
+        coalescer.seek(1000, null);
+        coalescer.seek(2000, null);
+        coalescer.seek(3000, null);
+
+        Assert.assertEquals(1, positions.size());
+
+        results.get(0).onSuccess(null);
+
+        Assert.assertEquals(2, positions.size());
+        Assert.assertEquals(3000, (long) positions.get(1));
+
+        results.get(1).onSuccess(null);
+        Assert.assertEquals(2, positions.size());
+        Assert.assertEquals(3, coalescer.getRequestCount());
+        Assert.assertEquals(2, coalescer.getSentCount());
+    }
+
+    @Test
+    public void testSupersededListenerGetsError() {
+        // Test desc.: listener of a replaced seek should get superseded error, the others
+        // their real results
+        ResponseListener<Object> first = Mockito.mock(ResponseListener.class);
+        ResponseListener<Object> replaced = Mockito.mock(ResponseListener.class);
+        ResponseListener<Object> last = Mockito.mock(ResponseListener.class);
+
+        coalescer.seek(1000, first);
+        coalescer.seek(2000, replaced);
+        coalescer.seek(3000, last);
+        Robolectric.runUiThreadTasks();
+
+        ArgumentCaptor<ServiceCommandError> error = ArgumentCaptor.forClass(ServiceCommandError.class);
+        Mockito.verify(replaced).onError(error.capture());
+        Assert.assertEquals(CastService.SEEK_SUPERSEDED_ERROR_CODE, error.getValue().getCode());
+
+        results.get(0).onSuccess(null);
+        results.get(1).onSuccess(null);
+
+        Mockito.verify(first).onSuccess(null);
+        Mockito.verify(last).onSuccess(null);
+        Mockito.verify(replaced, Mockito.never()).onSuccess(Mockito.any());
+    }
+
+    @Test
+    public void testFailedSeekSendsPending() {
+        // Test desc.: failure of the seek in flight shouldn't block the pending position
+        coalescer.seek(1000, null);
+        coalescer.seek(2000, null);
+
+        results.get(0).onError(new ServiceCommandError(0, "failed", null));
+
+        Assert.assertEquals(2, positions.size());
+        Assert.assertEquals(2000, (long) positions.get(1));
+    }
+
+    @Test
+    public void testResetFailsPendingSeek() {
+        // Test desc.: reset should fail the pending seek and allow a new seek right away
+        ResponseListener<Object> pending = Mockito.mock(ResponseListener.class);
+        coalescer.seek(1000, null);
+        coalescer.seek(2000, pending);
+
+        coalescer.reset(new ServiceCommandError(0, "disconnected", null));
+        Robolectric.runUiThreadTasks();
+        coalescer.seek(3000, null);
+
+        Mockito.verify(pending).onError(Mockito.any(ServiceCommandError.class));
+        Assert.assertEquals(2, positions.size());
+        Assert.assertEquals(3000, (long) positions.get(1));
+    }
+}
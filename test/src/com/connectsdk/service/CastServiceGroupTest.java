@@ -0,0 +1,236 @@
+package com.connectsdk.service;
+
+import com.connectsdk.service.capability.listeners.ResponseListener;
+import com.connectsdk.service.command.ServiceCommandError;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastServiceGroupTest {
+
+    private List<CastService> services;
+
+    private CastServiceGroup group;
+
+    private CastServiceGroup.Result result;
+
+    @Before
+    public void setUp() {
+        services = new ArrayList<CastService>();
+        for (int i = 0; i < 20; i++) {
+            services.add(Mockito.mock(CastService.class));
+        }
+        group = new CastServiceGroup(services);
+    }
+
+    @Test
+    public void testPlayIsSentToAllServices() {
+        // Test desc.: play should be sent to every service and reported as one result
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((ResponseListener<Object>) invocation.getArguments()[0]).onSuccess(null);
+                return null;
+            }
+        }).when(services.get(0)).play(Mockito.any(ResponseListener.class));
+
+        group = new CastServiceGroup(services.get(0));
+        group.play(createListener());
+        awaitResult();
+
+        Mockito.verify(services.get(0)).play(Mockito.any(ResponseListener.class));
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertEquals(1, result.getResults().size());
+        Assert.assertSame(services.get(0), result.getResults().get(0).getService());
+    }
+
+    @Test
+    public void testResultContainsErrorsOfFailedDevices() {
+        // Test desc.: failures of some devices shouldn't stop the others and should be reported
+        group.execute(new CastServiceGroup.Command() {
+            @Override
+            public void execute(CastService service, ResponseListener<Object> listener) {
+                if (services.indexOf(service) % 2 == 0) {
+                    listener.onSuccess(null);
+                } else {
+                    listener.onError(new ServiceCommandError(500, "failed", null));
+                }
+            }
+        }, createListener());
+        awaitResult();
+
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertEquals(services.size(), result.getResults().size());
+        Assert.assertEquals(services.size() / 2, result.getFailures().size());
+        for (int i = 0; i < services.size(); i++) {
+            CastServiceGroup.DeviceResult deviceResult = result.getResults().get(i);
+            Assert.assertSame(services.get(i), deviceResult.getService());
+            Assert.assertEquals(i % 2 == 0, deviceResult.isSuccess());
+            Assert.assertTrue(deviceResult.getLatency() >= 0);
+        }
+    }
+
+    @Test
+    public void testParallelismIsBounded() {
+        // Test desc.: no more than maxParallel commands should wait for a response at the same
+        // time, the next one should be sent when one completes
+        final List<ResponseListener<Object>> pending = new ArrayList<ResponseListener<Object>>();
+        group.setMaxParallel(4);
+
+        group.execute(new CastServiceGroup.Command() {
+            @Override
+            public void execute(CastService service, ResponseListener<Object> listener) {
+                pending.add(listener);
+            }
+        }, createListener());
+        Robolectric.runUiThreadTasks();
+
+        Assert.assertEquals(4, pending.size());
+
+        pending.get(0).onSuccess(null);
+        Robolectric.runUiThreadTasks();
+
+        Assert.assertEquals(5, pending.size());
+
+        for (int i = 1; i < services.size(); i++) {
+            pending.get(i).onSuccess(null);
+            Robolectric.runUiThreadTasks();
+        }
+        awaitResult();
+
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertEquals(services.size(), pending.size());
+    }
+
+    @Test
+    public void testCommandsStartTogether() {
+        // Test desc.: slow device shouldn't delay the commands of the other devices
+        final List<ResponseListener<Object>> pending = new ArrayList<ResponseListener<Object>>();
+        group.setMaxParallel(services.size());
+
+        group.execute(new CastServiceGroup.Command() {
+            @Override
+            public void execute(CastService service, ResponseListener<Object> listener) {
+                pending.add(listener);
+            }
+        }, createListener());
+        Robolectric.runUiThreadTasks();
+
+        Assert.assertEquals(services.size(), pending.size());
+
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            pending.get(i).onSuccess(null);
+        }
+        awaitResult();
+
+        Assert.assertTrue(result.isSuccess());
+    }
+
+    @Test
+    public void testTimeout() {
+        // Test desc.: device which never responds should be reported with the timeout error
+        group.setTimeout(50);
+
+        group.execute(new CastServiceGroup.Command() {
+            @Override
+            public void execute(CastService service, ResponseListener<Object> listener) {
+                if (service != services.get(0)) {
+                    listener.onSuccess(null);
+                }
+            }
+        }, createListener());
+        awaitResult();
+
+        Assert.assertEquals(1, result.getFailures().size());
+        Assert.assertSame(services.get(0), result.getFailures().get(0).getService());
+        Assert.assertEquals(CastServiceGroup.TIMEOUT_ERROR_CODE,
+                result.getFailures().get(0).getError().getCode());
+    }
+
+    @Test
+    public void testExceptionIsReportedAsError() {
+        // Test desc.: exception thrown by the command should be reported for that device only
+        group = new CastServiceGroup(services.get(0));
+
+        group.execute(new CastServiceGroup.Command() {
+            @Override
+            public void execute(CastService service, ResponseListener<Object> listener) {
+                throw new IllegalStateException();
+            }
+        }, createListener());
+        awaitResult();
+
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertTrue(result.getFailures().get(0).getError().getPayload()
+                instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testEmptyGroup() {
+        // Test desc.: empty group should report an empty successful result
+        group = new CastServiceGroup(new ArrayList<CastService>());
+
+        group.play(createListener());
+        awaitResult();
+
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertTrue(result.getResults().isEmpty());
+    }
+
+    @Test
+    public void testSetMaxParallelWhileRunning() {
+        // Test desc.: changing the parallelism during a command should apply to the next one
+        final List<ResponseListener<Object>> pending = new ArrayList<ResponseListener<Object>>();
+        CastServiceGroup.Command command = new CastServiceGroup.Command() {
+            @Override
+            public void execute(CastService service, ResponseListener<Object> listener) {
+                pending.add(listener);
+            }
+        };
+        group.setMaxParallel(2);
+
+        group.execute(command, createListener());
+        Robolectric.runUiThreadTasks();
+        group.setMaxParallel(4);
+        group.execute(command, null);
+        Robolectric.runUiThreadTasks();
+
+        Assert.assertEquals(6, pending.size());
+
+        for (int i = 0; i < pending.size(); i++) {
+            pending.get(i).onSuccess(null);
+            Robolectric.runUiThreadTasks();
+        }
+        awaitResult();
+
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertEquals(4, group.getMaxParallel());
+    }
+
+    private CastServiceGroup.ResultListener createListener() {
+        return new CastServiceGroup.ResultListener() {
+            @Override
+            public void onResult(CastServiceGroup.Result result) {
+                CastServiceGroupTest.this.result = result;
+            }
+        };
+    }
+
+    private void awaitResult() {
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        Assert.assertNotNull(result);
+    }
+}
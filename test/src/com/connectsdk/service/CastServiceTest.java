@@ -3,8 +3,10 @@ package com.connectsdk.service;
 import com.google.android.gms.cast.ApplicationMetadata;
 import com.google.android.gms.cast.Cast;
 import com.google.android.gms.cast.CastDevice;
+import com.google.android.gms.cast.CastMediaControlIntent;
 import com.google.android.gms.cast.LaunchOptions;
 import com.google.android.gms.cast.MediaMetadata;
+import com.google.android.gms.cast.MediaQueueItem;
 import com.google.android.gms.cast.MediaStatus;
 import com.google.android.gms.cast.MediaTrack;
 import com.google.android.gms.cast.RemoteMediaPlayer;
@@ -15,6 +17,7 @@ import com.google.android.gms.common.api.Status;
 
 import com.connectsdk.core.MediaInfo;
 import com.connectsdk.core.SubtitleInfo;
+import com.connectsdk.discovery.provider.CastServiceDescription;
 import com.connectsdk.service.capability.MediaControl;
 import com.connectsdk.service.capability.MediaControl.DurationListener;
 import com.connectsdk.service.capability.MediaControl.PositionListener;
@@ -23,11 +26,17 @@ import com.connectsdk.service.capability.VolumeControl;
 import com.connectsdk.service.capability.WebAppLauncher;
 import com.connectsdk.service.capability.listeners.ResponseListener;
 import com.connectsdk.service.command.ServiceCommandError;
+import com.connectsdk.service.command.ServiceSubscription;
 import com.connectsdk.service.config.ServiceConfig;
 import com.connectsdk.service.config.ServiceDescription;
+import com.connectsdk.service.sessions.CastWebAppSession;
+import com.connectsdk.service.sessions.LaunchSession;
+import com.connectsdk.service.sessions.WebAppSession;
 
 import junit.framework.Assert;
 
+import org.json.JSONObject;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -75,15 +84,25 @@ public class CastServiceTest {
             return googleApiClient;
         }
 
+        protected RemoteMediaPlayer createMediaPlayer() {
+            return mediaPlayer;
+        }
+
     }
 
     @Before
     public void setUp() {
         serviceDescription = mock(ServiceDescription.class);
+        Mockito.when(serviceDescription.getDevice()).thenReturn(Mockito.mock(CastDevice.class));
         service = new StubCastService(serviceDescription, mock(ServiceConfig.class));
         Assert.assertNotNull(service);
     }
 
+    @After
+    public void tearDown() {
+        CastService.setApplicationID(CastMediaControlIntent.DEFAULT_MEDIA_RECEIVER_APPLICATION_ID);
+    }
+
     @Test
     public void testConnect() {
         // Test desc.: connect creates mApiClient and invokes google api connect
@@ -97,6 +116,21 @@ public class CastServiceTest {
         verify(googleApiClient).connect();
     }
 
+    @Test
+    public void testConnectWithoutCastDevice() {
+        // Test desc.: service restored from the discovery cache has no CastDevice yet, connect
+        // should report a connection failure instead of creating the api client
+        Mockito.when(serviceDescription.getDevice()).thenReturn(null);
+        DeviceService.DeviceServiceListener listener = Mockito.mock(DeviceService.DeviceServiceListener.class);
+        service.setListener(listener);
+
+        service.connect();
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Assert.assertNull(service.mApiClient);
+        verify(listener).onConnectionFailure(Mockito.same(service), Mockito.any(ServiceCommandError.class));
+    }
+
     @Test
     public void testConnectShouldBeInvokedIfNotConnecting() {
         Mockito.when(googleApiClient.isConnecting()).thenReturn(Boolean.FALSE);
@@ -122,6 +156,24 @@ public class CastServiceTest {
         verify(googleApiClient, Mockito.times(0)).connect();
     }
 
+    @Test
+    public void testReceiverEventsAreNotQueued() throws CastService.CastClientException {
+        // Test desc.: receiver events while disconnected should be skipped, so they can't drop
+        // queued user commands
+        ResponseListener<Object> listener = Mockito.mock(ResponseListener.class);
+        service.play(listener);
+
+        for (int i = 0; i < 2 * CastCommandQueue.DEFAULT_CAPACITY; i++) {
+            service.mCastClientListener.onVolumeChanged();
+            service.mCastClientListener.onApplicationStatusChanged();
+        }
+
+        Assert.assertEquals(1, service.commandQueue.size());
+        Assert.assertEquals(0, service.commandQueue.getDroppedCount());
+        Mockito.verify(listener, Mockito.never()).onError(Mockito.any(ServiceCommandError.class));
+        Mockito.verify(castClient, Mockito.never()).getVolume(Mockito.any(GoogleApiClient.class));
+    }
+
     @Test
     public void testDisconnect() {
         // Test desc.: disconnect invokes google api disconnect
@@ -161,6 +213,36 @@ public class CastServiceTest {
         verify(mediaPlayer).play(googleApiClient);
     }
 
+    @Test
+    public void testPlayMetricsUseDeviceStatus() {
+        // Test desc.: play should be measured until the device answers and count a failed
+        // status as a failure
+        setServiceConnected();
+        service.getCommandMetrics().setEnabled(true);
+        PendingResult<RemoteMediaPlayer.MediaChannelResult> pendingResult = Mockito.mock(PendingResult.class);
+        Mockito.when(mediaPlayer.play(googleApiClient)).thenReturn(pendingResult);
+        ResponseListener<Object> listener = mock(ResponseListener.class);
+
+        service.play(listener);
+        CastCommandMetrics.CommandSnapshot play = service.getCommandMetrics().snapshot()
+                .get(CastCommandMetrics.Command.PLAY);
+        Assert.assertEquals(0, play.successes + play.failures);
+
+        ArgumentCaptor<ResultCallback> argResultCallback = ArgumentCaptor.forClass(ResultCallback.class);
+        Mockito.verify(pendingResult).setResultCallback(argResultCallback.capture());
+        RemoteMediaPlayer.MediaChannelResult result = Mockito.mock(RemoteMediaPlayer.MediaChannelResult.class);
+        Status status = Mockito.mock(Status.class);
+        Mockito.when(status.isSuccess()).thenReturn(Boolean.FALSE);
+        Mockito.when(result.getStatus()).thenReturn(status);
+        argResultCallback.getValue().onResult(result);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        play = service.getCommandMetrics().snapshot().get(CastCommandMetrics.Command.PLAY);
+        Assert.assertEquals(0, play.successes);
+        Assert.assertEquals(1, play.failures);
+        Mockito.verify(listener).onError(Mockito.any(ServiceCommandError.class));
+    }
+
     @Test
     public void testPause() {
         // Test desc.: should invoke player pause
@@ -434,16 +516,322 @@ public class CastServiceTest {
 
     @Test
     public void testPlayMediaShouldNotCrashWhenCastThrowsException() throws CastService.CastClientException {
+        // Test desc.: a failed launch request should be reported to the listener
         verifyPlayMediaWhenCastThrowsException(CastService.CastClientException.class);
     }
 
+    @Test
+    public void testPlayMediaShouldNotCrashWhenCastThrowsRuntimeException() throws CastService.CastClientException {
+        // Test desc.: a runtime exception from the launch request should be reported to the listener
+        verifyPlayMediaWhenCastThrowsException(IllegalStateException.class);
+    }
+
+    @Test
+    public void testPlayMediaSkipsLaunchWhenJoined() throws CastService.CastClientException {
+        // Test desc.: media should be loaded without launch if the receiver is running and joined
+        setServiceConnected();
+        String appId = CastMediaControlIntent.DEFAULT_MEDIA_RECEIVER_APPLICATION_ID;
+        LaunchSession launchSession = LaunchSession.launchSessionForAppId(appId);
+        launchSession.setSessionId("session");
+        service.sessions.put(appId, new CastWebAppSession(launchSession, service));
+        service.currentAppId = appId;
+        service.currentSessionId = "session";
+
+        MediaInfo mediaInfo = new MediaInfo.Builder("http://media/", "video/mp4").build();
+        service.playMedia(mediaInfo, false, Mockito.mock(MediaPlayer.LaunchListener.class));
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Mockito.verify(castClient, Mockito.never()).launchApplication(
+                Mockito.any(GoogleApiClient.class), Mockito.anyString(),
+                Mockito.any(LaunchOptions.class));
+        Mockito.verify(mediaPlayer).load(Mockito.same(googleApiClient),
+                Mockito.any(com.google.android.gms.cast.MediaInfo.class), Mockito.eq(true));
+        Assert.assertEquals(1, service.getAvoidedLaunchCount());
+    }
+
+    @Test
+    public void testPlayMediaLaunchesWhenSessionIsOver() throws CastService.CastClientException {
+        // Test desc.: receiver should be launched again when other application took it over
+        String appId = CastMediaControlIntent.DEFAULT_MEDIA_RECEIVER_APPLICATION_ID;
+        LaunchSession launchSession = LaunchSession.launchSessionForAppId(appId);
+        launchSession.setSessionId("session");
+        service.sessions.put(appId, new CastWebAppSession(launchSession, service));
+        service.currentAppId = appId;
+        service.currentSessionId = null;
+
+        MediaInfo mediaInfo = new MediaInfo.Builder("http://media/", "video/mp4").build();
+        verifyPlayMedia(mediaInfo);
+
+        Assert.assertEquals(0, service.getAvoidedLaunchCount());
+    }
+
+    @Test
+    public void testPlayMediaLaunchesWhenRejoinFails() throws CastService.CastClientException {
+        // Test desc.: if the session can't be joined after a reconnect, the receiver should be
+        // launched again for the next media
+        String appId = CastMediaControlIntent.DEFAULT_MEDIA_RECEIVER_APPLICATION_ID;
+        LaunchSession launchSession = LaunchSession.launchSessionForAppId(appId);
+        launchSession.setSessionId("session");
+        service.sessions.put(appId, new CastWebAppSession(launchSession, service));
+        service.currentAppId = appId;
+        service.currentSessionId = "session";
+        service.mWaitingForReconnect = true;
+        PendingResult<Cast.ApplicationConnectionResult> joinResult = Mockito.mock(PendingResult.class);
+        Mockito.when(castClient.joinApplication(googleApiClient, appId, "session")).thenReturn(joinResult);
+        Mockito.when(googleApiClient.isConnected()).thenReturn(true);
+
+        service.connect();
+        service.mConnectionCallbacks.onConnected(null);
+        ArgumentCaptor<ResultCallback> argJoinCallback = ArgumentCaptor.forClass(ResultCallback.class);
+        Mockito.verify(joinResult).setResultCallback(argJoinCallback.capture());
+        Cast.ApplicationConnectionResult result = Mockito.mock(Cast.ApplicationConnectionResult.class);
+        Status status = Mockito.mock(Status.class);
+        Mockito.when(status.isSuccess()).thenReturn(Boolean.FALSE);
+        Mockito.when(result.getStatus()).thenReturn(status);
+        argJoinCallback.getValue().onResult(result);
+
+        Assert.assertNull(service.currentAppId);
+        Assert.assertNull(service.currentSessionId);
+
+        MediaInfo mediaInfo = new MediaInfo.Builder("http://media/", "video/mp4").build();
+        verifyPlayMedia(mediaInfo);
+
+        Assert.assertEquals(0, service.getAvoidedLaunchCount());
+    }
+
+    @Test
+    public void testNextWithQueue() {
+        // Test desc.: next and previous should use the receiver queue when it's active
+        setServiceConnected();
+        service.queueActive = true;
+        PendingResult<RemoteMediaPlayer.MediaChannelResult> pendingResult = Mockito.mock(PendingResult.class);
+        Mockito.when(mediaPlayer.queueNext(googleApiClient, null)).thenReturn(pendingResult);
+        Mockito.when(mediaPlayer.queuePrev(googleApiClient, null)).thenReturn(pendingResult);
+
+        service.next(Mockito.mock(ResponseListener.class));
+        service.previous(Mockito.mock(ResponseListener.class));
+
+        Mockito.verify(mediaPlayer).queueNext(googleApiClient, null);
+        Mockito.verify(mediaPlayer).queuePrev(googleApiClient, null);
+        Mockito.verify(pendingResult, times(2)).setResultCallback(Mockito.any(ResultCallback.class));
+    }
+
+    @Test
+    public void testPlayQueue() throws CastService.CastClientException {
+        // Test desc.: playQueue should launch the receiver and load all items as one queue
+        setServiceConnected();
+        service.setQueuePreloadTime(5);
+        MediaPlayer.LaunchListener listener = Mockito.mock(MediaPlayer.LaunchListener.class);
+        PendingResult<Cast.ApplicationConnectionResult> pendingResult
+                = Mockito.mock(PendingResult.class);
+        Mockito.when(castClient.launchApplication(Mockito.any(GoogleApiClient.class),
+                        Mockito.anyString(), Mockito.any(LaunchOptions.class)))
+                .thenReturn(pendingResult);
+
+        service.playQueue(Arrays.asList(
+                new MediaInfo.Builder("http://media/1", "video/mp4").build(),
+                new MediaInfo.Builder("http://media/2", "video/mp4").build(),
+                new MediaInfo.Builder("http://media/3", "video/mp4").build()), 1, true, listener);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        ArgumentCaptor<ResultCallback> argResultCallback =
+                ArgumentCaptor.forClass(ResultCallback.class);
+        Mockito.verify(pendingResult).setResultCallback(argResultCallback.capture());
+        Cast.ApplicationConnectionResult result = Mockito.mock(Cast.ApplicationConnectionResult.class);
+        Status status = Mockito.mock(Status.class);
+        Mockito.when(status.isSuccess()).thenReturn(Boolean.TRUE);
+        Mockito.when(result.getStatus()).thenReturn(status);
+        Mockito.when(result.getApplicationMetadata()).thenReturn(Mockito.mock(ApplicationMetadata.class));
+        argResultCallback.getValue().onResult(result);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        ArgumentCaptor<MediaQueueItem[]> argItems = ArgumentCaptor.forClass(MediaQueueItem[].class);
+        Mockito.verify(mediaPlayer).queueLoad(Mockito.same(googleApiClient), argItems.capture(),
+                Mockito.eq(1), Mockito.eq(MediaStatus.REPEAT_MODE_REPEAT_ALL), Mockito.any(JSONObject.class));
+        Assert.assertEquals(3, argItems.getValue().length);
+        Assert.assertEquals("http://media/2", argItems.getValue()[1].getMedia().getContentId());
+        Assert.assertEquals(5.0, argItems.getValue()[1].getPreloadTime(), 0.0);
+        Mockito.verify(mediaPlayer, Mockito.never()).load(Mockito.any(GoogleApiClient.class),
+                Mockito.any(com.google.android.gms.cast.MediaInfo.class), Mockito.anyBoolean());
+    }
+
+    @Test
+    public void testPlayQueueWithInvalidStartIndex() {
+        // Test desc.: start index outside of the items should invoke error without launch
+        MediaPlayer.LaunchListener listener = Mockito.mock(MediaPlayer.LaunchListener.class);
+
+        service.playQueue(Arrays.asList(new MediaInfo.Builder("http://media/", "video/mp4").build()),
+                1, false, listener);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Mockito.verify(listener).onError(Mockito.any(ServiceCommandError.class));
+        Mockito.verifyZeroInteractions(castClient);
+    }
+
+    @Test
+    public void testPlayStateIsSentOnChangesOnly() {
+        // Test desc.: status updates which don't change the play state shouldn't be delivered
+        RemoteMediaPlayer.OnStatusUpdatedListener statusListener = attachMediaPlayer();
+        MediaStatus mediaStatus = mock(MediaStatus.class);
+        when(mediaPlayer.getMediaStatus()).thenReturn(mediaStatus);
+        MediaControl.PlayStateListener listener = mock(MediaControl.PlayStateListener.class);
+        service.subscribePlayState(listener);
+
+        when(mediaStatus.getPlayerState()).thenReturn(MediaStatus.PLAYER_STATE_PLAYING);
+        statusListener.onStatusUpdated();
+        statusListener.onStatusUpdated();
+        when(mediaStatus.getPlayerState()).thenReturn(MediaStatus.PLAYER_STATE_PAUSED);
+        statusListener.onStatusUpdated();
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        verify(listener, times(1)).onSuccess(MediaControl.PlayStateStatus.Playing);
+        verify(listener, times(1)).onSuccess(MediaControl.PlayStateStatus.Paused);
+    }
+
+    @Test
+    public void testNewPlayStateListenerGetsCurrentState() {
+        // Test desc.: listener subscribed after a change should get the current state
+        RemoteMediaPlayer.OnStatusUpdatedListener statusListener = attachMediaPlayer();
+        MediaStatus mediaStatus = mock(MediaStatus.class);
+        when(mediaPlayer.getMediaStatus()).thenReturn(mediaStatus);
+        when(mediaStatus.getPlayerState()).thenReturn(MediaStatus.PLAYER_STATE_PLAYING);
+        statusListener.onStatusUpdated();
+
+        MediaControl.PlayStateListener listener = mock(MediaControl.PlayStateListener.class);
+        service.subscribePlayState(listener);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        verify(listener).onSuccess(MediaControl.PlayStateStatus.Playing);
+    }
+
+    @Test
+    public void testSubscribePositionWhilePaused() {
+        // Test desc.: paused media should get the position once per status update, no ticks
+        RemoteMediaPlayer.OnStatusUpdatedListener statusListener = attachMediaPlayer();
+        MediaStatus mediaStatus = mock(MediaStatus.class);
+        when(mediaPlayer.getMediaStatus()).thenReturn(mediaStatus);
+        when(mediaStatus.getPlayerState()).thenReturn(MediaStatus.PLAYER_STATE_PAUSED);
+        when(mediaStatus.getStreamPosition()).thenReturn(1000L);
+        statusListener.onStatusUpdated();
+
+        MediaControl.PositionListener listener = mock(MediaControl.PositionListener.class);
+        service.subscribePosition(100, listener);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        when(mediaStatus.getStreamPosition()).thenReturn(3000L);
+        statusListener.onStatusUpdated();
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        verify(listener).onSuccess(1000L);
+        verify(listener).onSuccess(3000L);
+        Mockito.verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void testSubscribePositionTicksWhilePlaying() {
+        // Test desc.: playing media should push positions at the interval without requests
+        RemoteMediaPlayer.OnStatusUpdatedListener statusListener = attachMediaPlayer();
+        MediaStatus mediaStatus = mock(MediaStatus.class);
+        when(mediaPlayer.getMediaStatus()).thenReturn(mediaStatus);
+        when(mediaStatus.getPlayerState()).thenReturn(MediaStatus.PLAYER_STATE_PLAYING);
+        when(mediaStatus.getPlaybackRate()).thenReturn(1.0);
+        statusListener.onStatusUpdated();
+
+        MediaControl.PositionListener listener = mock(MediaControl.PositionListener.class);
+        ServiceSubscription<MediaControl.PositionListener> subscription =
+                service.subscribePosition(100, listener);
+        Robolectric.getUiThreadScheduler().advanceBy(450);
+
+        verify(listener, Mockito.atLeast(4)).onSuccess(Mockito.anyLong());
+        verify(mediaPlayer, Mockito.never()).getApproximateStreamPosition();
+
+        subscription.unsubscribe();
+        Mockito.reset(listener);
+        Robolectric.getUiThreadScheduler().advanceBy(500);
+        Mockito.verifyZeroInteractions(listener);
+    }
+
+    @Test
+    public void testMediaInfoIsConvertedOnce() {
+        // Test desc.: the same receiver media info should be converted once and shared
+        service.mMediaPlayer = mediaPlayer;
+        com.google.android.gms.cast.MediaInfo castInfo = createCastMediaInfo("http://media/1");
+        when(mediaPlayer.getMediaInfo()).thenReturn(castInfo);
+        MediaControl.MediaInfoListener first = mock(MediaControl.MediaInfoListener.class);
+        MediaControl.MediaInfoListener second = mock(MediaControl.MediaInfoListener.class);
+
+        service.getMediaInfo(first);
+        service.getMediaInfo(second);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        ArgumentCaptor<MediaInfo> firstInfo = ArgumentCaptor.forClass(MediaInfo.class);
+        ArgumentCaptor<MediaInfo> secondInfo = ArgumentCaptor.forClass(MediaInfo.class);
+        verify(first).onSuccess(firstInfo.capture());
+        verify(second).onSuccess(secondInfo.capture());
+        Assert.assertSame(firstInfo.getValue(), secondInfo.getValue());
+        Assert.assertEquals("http://media/1", firstInfo.getValue().getUrl());
+    }
+
+    @Test
+    public void testMediaInfoIsConvertedAgainForOtherMedia() {
+        // Test desc.: new media info of the receiver should be converted again
+        com.google.android.gms.cast.MediaInfo firstMedia = createCastMediaInfo("http://media/1");
+        com.google.android.gms.cast.MediaInfo secondMedia = createCastMediaInfo("http://media/2");
+
+        MediaInfo first = service.convertMediaInfo(firstMedia);
+        MediaInfo second = service.convertMediaInfo(secondMedia);
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals("http://media/2", second.getUrl());
+        Assert.assertSame(second, service.convertMediaInfo(secondMedia));
+        Assert.assertNull(service.convertMediaInfo(null));
+    }
+
+    @Test
+    public void testSetApplicationIDs() {
+        // Test desc.: the first of several application IDs is the primary application ID
+        CastService.setApplicationIDs("first", "second");
+
+        Assert.assertEquals("first", CastService.getApplicationID());
+        Assert.assertEquals(Arrays.asList("first", "second"), CastService.getApplicationIDs());
+
+        CastService.setApplicationID("single");
+        Assert.assertEquals(Arrays.asList("single"), CastService.getApplicationIDs());
+    }
+
+    @Test
+    public void testMediaApplicationIDWithoutSupportedApplications() {
+        // Test desc.: primary application ID is used when the device support is unknown
+        CastService.setApplicationIDs("first", "second");
+
+        Assert.assertEquals("first", service.getMediaApplicationID());
+    }
+
+    @Test
+    public void testMediaApplicationIDFromSupportedApplications() {
+        // Test desc.: device which can't run the primary application should get the first
+        // application it supports
+        CastService.setApplicationIDs("first", "second", "third");
+        CastServiceDescription description = mock(CastServiceDescription.class);
+        when(description.getApplicationIDs()).thenReturn(Arrays.asList("second", "third"));
+        CastService castService = new StubCastService(description, mock(ServiceConfig.class));
+
+        Assert.assertEquals("second", castService.getMediaApplicationID());
+    }
+
     private void verifyPlayMediaWhenCastThrowsException(Class<? extends Throwable> exception) throws CastService.CastClientException {
+        setServiceConnected();
         MediaInfo mediaInfo = new MediaInfo.Builder("http://host.com/", "video/mp4").build();
         MediaPlayer.LaunchListener listener = Mockito.mock(MediaPlayer.LaunchListener.class);
-        Mockito.when(castClient.getApplicationStatus(Mockito.any(GoogleApiClient.class)))
+        Mockito.when(castClient.launchApplication(Mockito.any(GoogleApiClient.class),
+                        Mockito.anyString(), Mockito.any(LaunchOptions.class)))
                 .thenThrow(exception);
 
         service.playMedia(mediaInfo, true, listener);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Mockito.verify(listener).onError(Mockito.any(ServiceCommandError.class));
+        Mockito.verify(listener, Mockito.never()).onSuccess(Mockito.any(MediaPlayer.MediaLaunchObject.class));
     }
 
     private com.google.android.gms.cast.MediaInfo verifyPlayMedia(MediaInfo mediaInfo) throws CastService.CastClientException {
@@ -468,7 +856,7 @@ public class CastServiceTest {
                 ArgumentCaptor.forClass(ResultCallback.class);
         Mockito.verify(pendingResult).setResultCallback(argResultCallback.capture());
 
-        // ApplicationConnectionResultCallback.onResult
+        // launch ResultCallback.onResult
         ResultCallback resultCallback = argResultCallback.getValue();
         Cast.ApplicationConnectionResult result = Mockito.mock(Cast.ApplicationConnectionResult.class);
         Status status = Mockito.mock(Status.class);
@@ -487,6 +875,130 @@ public class CastServiceTest {
     }
 
 
+    private com.google.android.gms.cast.MediaInfo createCastMediaInfo(String url) {
+        return new com.google.android.gms.cast.MediaInfo.Builder(url)
+                .setContentType("video/mp4")
+                .setStreamType(com.google.android.gms.cast.MediaInfo.STREAM_TYPE_BUFFERED)
+                .build();
+    }
+
+    private RemoteMediaPlayer.OnStatusUpdatedListener attachMediaPlayer() {
+        service.connect();
+        GoogleApiClient.ConnectionCallbacks connectionCallbacks = service.mConnectionCallbacks;
+        connectionCallbacks.onConnected(null);
+
+        ArgumentCaptor<RemoteMediaPlayer.OnStatusUpdatedListener> argListener =
+                ArgumentCaptor.forClass(RemoteMediaPlayer.OnStatusUpdatedListener.class);
+        verify(mediaPlayer).setOnStatusUpdatedListener(argListener.capture());
+        return argListener.getValue();
+    }
+
+    @Test
+    public void testLaunchWebAppLaunchesWhenAnotherAppIsRunning() throws CastService.CastClientException {
+        // Test desc.: without relaunch the running app is joined first, another app is replaced
+        setServiceConnected();
+        WebAppSession.LaunchListener listener = Mockito.mock(WebAppSession.LaunchListener.class);
+        PendingResult<Cast.ApplicationConnectionResult> joinResult = Mockito.mock(PendingResult.class);
+        PendingResult<Cast.ApplicationConnectionResult> launchResult = Mockito.mock(PendingResult.class);
+        Mockito.when(castClient.joinApplication(googleApiClient)).thenReturn(joinResult);
+        Mockito.when(castClient.launchApplication(Mockito.same(googleApiClient), Mockito.eq("webAppId"),
+                Mockito.any(LaunchOptions.class))).thenReturn(launchResult);
+
+        service.launchWebApp("webAppId", false, listener);
+
+        ArgumentCaptor<ResultCallback> argJoinCallback = ArgumentCaptor.forClass(ResultCallback.class);
+        Mockito.verify(joinResult).setResultCallback(argJoinCallback.capture());
+        argJoinCallback.getValue().onResult(createApplicationConnectionResult("otherAppId"));
+
+        ArgumentCaptor<ResultCallback> argLaunchCallback = ArgumentCaptor.forClass(ResultCallback.class);
+        Mockito.verify(launchResult).setResultCallback(argLaunchCallback.capture());
+        argLaunchCallback.getValue().onResult(createApplicationConnectionResult("webAppId"));
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        ArgumentCaptor<WebAppSession> argSession = ArgumentCaptor.forClass(WebAppSession.class);
+        Mockito.verify(listener).onSuccess(argSession.capture());
+        Assert.assertEquals("webAppId", argSession.getValue().getLaunchSession().getAppId());
+        Assert.assertEquals("webAppId", service.currentAppId);
+    }
+
+    @Test
+    public void testCancelLaunchWebApp() throws CastService.CastClientException {
+        // Test desc.: cancelling the future should cancel the pending launch request
+        setServiceConnected();
+        PendingResult<Cast.ApplicationConnectionResult> launchResult = Mockito.mock(PendingResult.class);
+        Mockito.when(castClient.launchApplication(Mockito.same(googleApiClient), Mockito.eq("webAppId"),
+                Mockito.any(LaunchOptions.class))).thenReturn(launchResult);
+
+        CastFuture<WebAppSession> future = service.launchWebAppAsync("webAppId", true);
+        Assert.assertTrue(future.cancel(false));
+
+        Mockito.verify(launchResult).cancel();
+        Assert.assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void testCloseMedia() throws CastService.CastClientException {
+        // Test desc.: closeMedia should stop the session and report the status of the device
+        setServiceConnected();
+        service.getCommandMetrics().setEnabled(true);
+        PendingResult<Status> stopResult = Mockito.mock(PendingResult.class);
+        Mockito.when(castClient.stopApplication(googleApiClient, "session")).thenReturn(stopResult);
+        LaunchSession launchSession = LaunchSession.launchSessionForAppId("appId");
+        launchSession.setSessionId("session");
+        ResponseListener<Object> listener = Mockito.mock(ResponseListener.class);
+
+        service.closeMedia(launchSession, listener);
+
+        ArgumentCaptor<ResultCallback> argCallback = ArgumentCaptor.forClass(ResultCallback.class);
+        Mockito.verify(stopResult).setResultCallback(argCallback.capture());
+        Status status = Mockito.mock(Status.class);
+        Mockito.when(status.isSuccess()).thenReturn(Boolean.TRUE);
+        Mockito.when(status.getStatus()).thenReturn(status);
+        argCallback.getValue().onResult(status);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Mockito.verify(listener).onSuccess(status);
+        Assert.assertEquals(1, service.getCommandMetrics().snapshot()
+                .get(CastCommandMetrics.Command.CLOSE_MEDIA).successes);
+    }
+
+    @Test
+    public void testCloseWebAppFailure() throws CastService.CastClientException {
+        // Test desc.: closeWebApp should report the error status of the device
+        setServiceConnected();
+        PendingResult<Status> stopResult = Mockito.mock(PendingResult.class);
+        Mockito.when(castClient.stopApplication(googleApiClient)).thenReturn(stopResult);
+        ResponseListener<Object> listener = Mockito.mock(ResponseListener.class);
+
+        service.closeWebApp(LaunchSession.launchSessionForAppId("webAppId"), listener);
+
+        ArgumentCaptor<ResultCallback> argCallback = ArgumentCaptor.forClass(ResultCallback.class);
+        Mockito.verify(stopResult).setResultCallback(argCallback.capture());
+        Status status = Mockito.mock(Status.class);
+        Mockito.when(status.isSuccess()).thenReturn(Boolean.FALSE);
+        Mockito.when(status.getStatusCode()).thenReturn(2005);
+        Mockito.when(status.getStatus()).thenReturn(status);
+        argCallback.getValue().onResult(status);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        ArgumentCaptor<ServiceCommandError> argError = ArgumentCaptor.forClass(ServiceCommandError.class);
+        Mockito.verify(listener).onError(argError.capture());
+        Assert.assertEquals(2005, argError.getValue().getCode());
+    }
+
+    private Cast.ApplicationConnectionResult createApplicationConnectionResult(String appId) {
+        Cast.ApplicationConnectionResult result = Mockito.mock(Cast.ApplicationConnectionResult.class);
+        Status status = Mockito.mock(Status.class);
+        Mockito.when(status.isSuccess()).thenReturn(Boolean.TRUE);
+        Mockito.when(result.getStatus()).thenReturn(status);
+        Mockito.when(result.getSessionId()).thenReturn("sessionId");
+        ApplicationMetadata applicationMetadata = Mockito.mock(ApplicationMetadata.class);
+        Mockito.when(applicationMetadata.getApplicationId()).thenReturn(appId);
+        Mockito.when(applicationMetadata.getName()).thenReturn("name");
+        Mockito.when(result.getApplicationMetadata()).thenReturn(applicationMetadata);
+        return result;
+    }
+
     private void setServiceConnected() {
         service.connect();
         service.connected = true;
@@ -0,0 +1,132 @@
+package com.connectsdk.service;
+
+import com.connectsdk.service.command.URLServiceSubscription;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastSubscriptionRegistryTest {
+
+    private CastSubscriptionRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new CastSubscriptionRegistry();
+    }
+
+    @Test
+    public void testSubscriptionsAreGroupedByTarget() {
+        // Test desc.: every target should return its own subscriptions in the order of adding
+        URLServiceSubscription<?> playState1 = createSubscription(CastService.PLAY_STATE);
+        URLServiceSubscription<?> volume = createSubscription(CastService.CAST_SERVICE_VOLUME_SUBSCRIPTION_NAME);
+        URLServiceSubscription<?> playState2 = createSubscription("playstate");
+
+        registry.add(playState1);
+        registry.add(volume);
+        registry.add(playState2);
+
+        Assert.assertArrayEquals(new Object[] {playState1, playState2},
+                registry.get(CastSubscriptionRegistry.Target.PLAY_STATE));
+        Assert.assertArrayEquals(new Object[] {volume},
+                registry.get(CastSubscriptionRegistry.Target.VOLUME));
+        Assert.assertEquals(0, registry.get(CastSubscriptionRegistry.Target.MUTE).length);
+        Assert.assertEquals(3, registry.getAll().size());
+    }
+
+    @Test
+    public void testUnknownTarget() {
+        // Test desc.: subscription with other target should be kept but not dispatched
+        URLServiceSubscription<?> other = createSubscription("custom");
+
+        registry.add(other);
+
+        Assert.assertArrayEquals(new Object[] {other},
+                registry.get(CastSubscriptionRegistry.Target.OTHER));
+        Assert.assertTrue(registry.getAll().contains(other));
+    }
+
+    @Test
+    public void testRemove() {
+        // Test desc.: removed subscription shouldn't be returned, other ones keep the order
+        URLServiceSubscription<?> first = createSubscription("info");
+        URLServiceSubscription<?> second = createSubscription("info");
+        URLServiceSubscription<?> third = createSubscription("info");
+        registry.add(first);
+        registry.add(second);
+        registry.add(third);
+
+        Assert.assertTrue(registry.remove(second));
+        Assert.assertFalse(registry.remove(second));
+
+        Assert.assertArrayEquals(new Object[] {first, third},
+                registry.get(CastSubscriptionRegistry.Target.INFO));
+
+        registry.remove(first);
+        registry.remove(third);
+        Assert.assertTrue(registry.isEmpty());
+    }
+
+    @Test
+    public void testSnapshotIsNotChangedByUpdates() {
+        // Test desc.: array returned for dispatch shouldn't change when subscriptions change
+        URLServiceSubscription<?> first = createSubscription(CastService.CAST_SERVICE_MUTE_SUBSCRIPTION_NAME);
+        registry.add(first);
+        URLServiceSubscription<?>[] snapshot = registry.get(CastSubscriptionRegistry.Target.MUTE);
+
+        registry.add(createSubscription(CastService.CAST_SERVICE_MUTE_SUBSCRIPTION_NAME));
+        registry.remove(first);
+
+        Assert.assertEquals(1, snapshot.length);
+        Assert.assertSame(first, snapshot[0]);
+    }
+
+    @Test
+    public void testConcurrentDispatchAndUpdates() throws InterruptedException {
+        // Test desc.: dispatch on one thread while other thread subscribes and unsubscribes
+        final URLServiceSubscription<?> subscription = createSubscription(CastService.PLAY_STATE);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Thread dispatcher = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (running.get()) {
+                        for (URLServiceSubscription<?> item : registry.get(CastSubscriptionRegistry.Target.PLAY_STATE)) {
+                            Assert.assertNotNull(item);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        };
+        dispatcher.start();
+
+        for (int i = 0; i < 10000; i++) {
+            registry.add(subscription);
+            registry.remove(subscription);
+        }
+        running.set(false);
+        dispatcher.join();
+
+        Assert.assertNull(failure.get());
+        Assert.assertTrue(registry.isEmpty());
+    }
+
+    private URLServiceSubscription<?> createSubscription(String target) {
+        URLServiceSubscription<?> subscription = Mockito.mock(URLServiceSubscription.class);
+        Mockito.when(subscription.getTarget()).thenReturn(target);
+        return subscription;
+    }
+}
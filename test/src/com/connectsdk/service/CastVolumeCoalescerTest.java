@@ -0,0 +1,193 @@
+package com.connectsdk.service;
+
+import com.connectsdk.service.capability.listeners.ResponseListener;
+import com.connectsdk.service.command.ServiceCommandError;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CastVolumeCoalescerTest {
+
+    private List<Float> sent;
+
+    private List<ResponseListener<Object>> sentListeners;
+
+    private CastVolumeCoalescer coalescer;
+
+    @Before
+    public void setUp() {
+        sent = new ArrayList<Float>();
+        sentListeners = new ArrayList<ResponseListener<Object>>();
+        coalescer = new CastVolumeCoalescer(new CastVolumeCoalescer.Sender() {
+
+            @Override
+            public void send(float level, ResponseListener<Object> listener) {
+                sent.add(level);
+                sentListeners.add(listener);
+            }
+        });
+    }
+
+    @Test
+    public void testFirstLevelIsSentRightAway() {
+        // Test desc.: without a command in flight the level should be sent immediately
+        coalescer.setVolume(0.5f, null);
+
+        Assert.assertEquals(1, sent.size());
+        Assert.assertEquals(0.5f, sent.get(0), 0.0001f);
+    }
+
+    @Test
+    public void testLevelsAreMergedWhileInFlight() {
+        // Test desc.: levels set before confirmation should be merged into the latest one
+        coalescer.setVolume(0.5f, null);
+        coalescer.setVolume(0.6f, null);
+        coalescer.setVolume(0.7f, null);
+
+        Assert.assertEquals(1, sent.size());
+
+        coalescer.onVolumeChanged(0.5f);
+
+        Assert.assertEquals(2, sent.size());
+        Assert.assertEquals(0.7f, sent.get(1), 0.0001f);
+
+        coalescer.onVolumeChanged(0.7f);
+        Assert.assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void testOtherLevelDoesNotConfirm() {
+        // Test desc.: a reported level which isn't the one in flight shouldn't send the pending
+        // level, only the level in flight or the timeout should
+        coalescer.setVolume(0.5f, null);
+        coalescer.setVolume(0.6f, null);
+
+        coalescer.onVolumeChanged(0.2f);
+        Assert.assertEquals(1, sent.size());
+
+        coalescer.onVolumeChanged(0.5f);
+        Assert.assertEquals(2, sent.size());
+        Assert.assertEquals(0.6f, sent.get(1), 0.0001f);
+    }
+
+    @Test
+    public void testHeldVolumeKey() {
+        // Test desc.: many volume up steps should produce an order of magnitude less commands
+        // and end at the sum of the steps
+        float level = 0.2f;
+        for (int i = 0; i < 50; i++) {
+            coalescer.adjustVolume(0.01f, level, null);
+
+            if (i % 10 == 9) {
+                // device confirms the level sent before
+                level = sent.get(sent.size() - 1);
+                coalescer.onVolumeChanged(level);
+            }
+        }
+        coalescer.onVolumeChanged(sent.get(sent.size() - 1));
+
+        Assert.assertEquals(50, coalescer.getRequestCount());
+        Assert.assertTrue(coalescer.getSentCount() <= 6);
+        Assert.assertEquals(0.7f, sent.get(sent.size() - 1), 0.0001f);
+    }
+
+    @Test
+    public void testLevelIsClamped() {
+        // Test desc.: level shouldn't go above maximum and a step at maximum sends nothing
+        coalescer.setVolume(1.5f, null);
+        Assert.assertEquals(1.0f, sent.get(0), 0.0001f);
+        coalescer.onVolumeChanged(1.0f);
+
+        coalescer.adjustVolume(0.01f, 1.0f, null);
+        Assert.assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void testPendingLevelIsSentAfterTimeout() {
+        // Test desc.: lost confirmation shouldn't block the pending level forever
+        coalescer.setVolume(0.5f, null);
+        coalescer.setVolume(0.6f, null);
+
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        Assert.assertEquals(2, sent.size());
+        Assert.assertEquals(0.6f, sent.get(1), 0.0001f);
+    }
+
+    @Test
+    public void testExternalChangeResetsTarget() {
+        // Test desc.: volume changed by another sender should be the base of the next step
+        coalescer.setVolume(0.5f, null);
+        coalescer.onVolumeChanged(0.5f);
+        coalescer.onVolumeChanged(0.3f);
+
+        coalescer.adjustVolume(0.01f, 0.3f, null);
+
+        Assert.assertEquals(0.31f, sent.get(1), 0.0001f);
+    }
+
+    @Test
+    public void testMergedListenersGetResultOfCoveringLevel() {
+        // Test desc.: listeners of merged levels should succeed only when the level replacing
+        // theirs is sent successfully
+        ResponseListener<Object> first = Mockito.mock(ResponseListener.class);
+        ResponseListener<Object> second = Mockito.mock(ResponseListener.class);
+        ResponseListener<Object> third = Mockito.mock(ResponseListener.class);
+        coalescer.setVolume(0.5f, first);
+        coalescer.setVolume(0.6f, second);
+        coalescer.setVolume(0.7f, third);
+        Robolectric.runUiThreadTasks();
+
+        Mockito.verify(second, Mockito.never()).onSuccess(Mockito.any());
+        Mockito.verify(third, Mockito.never()).onSuccess(Mockito.any());
+        Assert.assertSame(first, sentListeners.get(0));
+
+        coalescer.onVolumeChanged(0.5f);
+        sentListeners.get(1).onSuccess(null);
+
+        Mockito.verify(second).onSuccess(null);
+        Mockito.verify(third).onSuccess(null);
+    }
+
+    @Test
+    public void testMergedListenersGetSendError() {
+        // Test desc.: listeners merged into the level in flight should get its error
+        ResponseListener<Object> listener = Mockito.mock(ResponseListener.class);
+        coalescer.setVolume(0.5f, null);
+        coalescer.setVolume(0.6f, listener);
+        coalescer.setVolume(0.5f, listener);
+
+        coalescer.onSendFailed();
+        Robolectric.runUiThreadTasks();
+
+        Assert.assertEquals(1, sent.size());
+        Mockito.verify(listener, Mockito.times(2)).onError(Mockito.any(ServiceCommandError.class));
+        Mockito.verify(listener, Mockito.never()).onSuccess(Mockito.any());
+    }
+
+    @Test
+    public void testResetFailsMergedListeners() {
+        // Test desc.: merged levels dropped by reset should report the error
+        ResponseListener<Object> listener = Mockito.mock(ResponseListener.class);
+        ServiceCommandError error = new ServiceCommandError(0, "disconnected", null);
+        coalescer.setVolume(0.5f, null);
+        coalescer.setVolume(0.6f, listener);
+
+        coalescer.reset(error);
+        Robolectric.runUiThreadTasks();
+
+        Mockito.verify(listener).onError(error);
+        Assert.assertEquals(1, sent.size());
+    }
+}